@@ -4,6 +4,11 @@ import com.fasterxml.jackson.annotation.JacksonInject;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.EnumMap;
+import java.util.Map;
 
 /**
  * A MetaTrader 4 account.
@@ -12,6 +17,33 @@ public class Account {
 
     private static final String PROPERTY_ID = "property_id";
     private static final String TRADE_MODE = "trade_mode";
+    private static final Map<AccountInfoInteger, RequestTemplate> INFO_INTEGER_REQUESTS =
+            new EnumMap<>(AccountInfoInteger.class);
+    private static final Map<AccountInfoDouble, RequestTemplate> INFO_DOUBLE_REQUESTS =
+            new EnumMap<>(AccountInfoDouble.class);
+    private static final RequestTemplate SNAPSHOT_REQUEST;
+
+    static {
+        // account properties don't depend on the account, so their requests are shared
+        for (AccountInfoInteger prop : AccountInfoInteger.values()) {
+            INFO_INTEGER_REQUESTS.put(prop, new RequestTemplate(Request.GET_ACCOUNT_INFO_INTEGER.build()
+                    .put(PROPERTY_ID, prop.id)));
+        }
+        for (AccountInfoDouble prop : AccountInfoDouble.values()) {
+            INFO_DOUBLE_REQUESTS.put(prop, new RequestTemplate(Request.GET_ACCOUNT_INFO_DOUBLE.build()
+                    .put(PROPERTY_ID, prop.id)));
+        }
+        ObjectNode snapshotRequest = Request.GET_ACCOUNT_INFO_SNAPSHOT.build();
+        ArrayNode integerIds = snapshotRequest.putArray(PropertyValues.INTEGER_PROPERTY_IDS);
+        for (AccountInfoInteger prop : AccountInfoInteger.values()) {
+            integerIds.add(prop.id);
+        }
+        ArrayNode doubleIds = snapshotRequest.putArray(PropertyValues.DOUBLE_PROPERTY_IDS);
+        for (AccountInfoDouble prop : AccountInfoDouble.values()) {
+            doubleIds.add(prop.id);
+        }
+        SNAPSHOT_REQUEST = new RequestTemplate(snapshotRequest);
+    }
 
     private final MT4Client mt4;
     private final long login;
@@ -260,14 +292,41 @@ public class Account {
         return getAccountInfoDouble(AccountInfoDouble.ACCOUNT_MARGIN_SO_SO);
     }
 
+    /**
+     * Get the values of every integer and double property in a single request.  Unlike calling the getters one by one,
+     * the values are read by the server at the same moment, so they are consistent with each other.  If the client
+     * has an {@link MT4Client#setAccountCache(AccountCache) account cache}, the cached snapshot is returned.
+     *
+     * @return The property values.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    public AccountSnapshot snapshot() throws JsonProcessingException, MT4Exception {
+        AccountCache cache = mt4.getAccountCache();
+        if (cache != null) {
+            return cache.getSnapshot(this::fetchSnapshot);
+        }
+        return fetchSnapshot();
+    }
+
+    private AccountSnapshot fetchSnapshot() throws JsonProcessingException, MT4Exception {
+        return new AccountSnapshot(mt4.getResponse(SNAPSHOT_REQUEST, PropertyValues.class));
+    }
+
     private long getAccountInfoInteger(AccountInfoInteger prop) throws JsonProcessingException, MT4Exception {
-        return mt4.getResponse(Request.GET_ACCOUNT_INFO_INTEGER.build()
-                .put(PROPERTY_ID, prop.id), long.class);
+        AccountCache cache = mt4.getAccountCache();
+        if (cache != null) {
+            return cache.getSnapshot(this::fetchSnapshot).getInteger(prop);
+        }
+        return mt4.getResponse(INFO_INTEGER_REQUESTS.get(prop), long.class);
     }
 
     private double getAccountInfoDouble(AccountInfoDouble prop) throws JsonProcessingException, MT4Exception {
-        return mt4.getResponse(Request.GET_ACCOUNT_INFO_DOUBLE.build()
-                .put(PROPERTY_ID, prop.id), double.class);
+        AccountCache cache = mt4.getAccountCache();
+        if (cache != null) {
+            return cache.getSnapshot(this::fetchSnapshot).getDouble(prop);
+        }
+        return mt4.getResponse(INFO_DOUBLE_REQUESTS.get(prop), double.class);
     }
 
     @Override
@@ -0,0 +1,251 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A cache of the account's property values, so that the balance, margin and equity are fetched only when they may
+ * have changed rather than every time they are queried.
+ * <p>
+ * The values are fetched together in a single {@link Account#snapshot() snapshot}, which is served until one of these
+ * happens:
+ * <ul>
+ *     <li>The client which set this cache sends, modifies, closes or deletes an order, whether or not it succeeds.</li>
+ *     <li>The client receives a tick whose bid or ask moved, for a symbol with an open position.</li>
+ *     <li>The snapshot becomes older than the {@link Builder#setMaxAge(long, TimeUnit) maximum age}, which bounds the
+ *     staleness caused by anything else, e.g. trades made by other clients or in the terminal.</li>
+ * </ul>
+ * The open positions are learned from the {@link Order Orders} returned to the client, i.e. by {@link
+ * MT4Client#getOrders()}, {@link MT4Client#getOrder(int)} and the order operations.  Ticks read by other clients, and
+ * positions opened elsewhere until the orders are next queried, don't invalidate the snapshot.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @see MT4Client#setAccountCache(AccountCache)
+ */
+public class AccountCache {
+
+    static final long DEFAULT_MAX_AGE_SECONDS = 5;
+
+    public static class Builder {
+        private long maxAgeNanos = TimeUnit.SECONDS.toNanos(DEFAULT_MAX_AGE_SECONDS);
+        private boolean refreshOnTicks = true;
+        private LongSupplier clock = System::nanoTime;
+
+        private Builder() {}
+
+        /**
+         * Construct an account cache builder.
+         *
+         * @return The account cache builder instance.
+         */
+        public static Builder newInstance() {
+            return new Builder();
+        }
+
+        /**
+         * Build the account cache instance.
+         *
+         * @return The account cache.
+         */
+        public AccountCache build() {
+            return new AccountCache(this);
+        }
+
+        /**
+         * @param maxAge How long a snapshot is served if nothing invalidates it.  Must be positive.
+         * @param unit   The time unit of the maximum age.
+         * @return This Builder.
+         */
+        public Builder setMaxAge(long maxAge, TimeUnit unit) {
+            this.maxAgeNanos = unit.toNanos(maxAge);
+            return this;
+        }
+
+        /**
+         * @param refreshOnTicks Whether a tick which moved the price of a symbol with an open position invalidates the
+         *                       snapshot.  Enabled by default.
+         * @return This Builder.
+         */
+        public Builder setRefreshOnTicks(boolean refreshOnTicks) {
+            this.refreshOnTicks = refreshOnTicks;
+            return this;
+        }
+
+        /**
+         * @param clock The current time in nanoseconds, as given by {@link System#nanoTime()}.
+         * @return This Builder.
+         */
+        Builder setClock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+    }
+
+    private final long maxAgeNanos;
+    private final boolean refreshOnTicks;
+    private final LongSupplier clock;
+    private final Map<Integer, String> positions = new HashMap<>();
+    private final Map<String, double[]> prices = new HashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private AccountSnapshot snapshot;
+    private long fetchedNanos;
+    private long generation;
+
+    private AccountCache(Builder builder) {
+        // do some parameter validation
+        if (builder.maxAgeNanos <= 0) {
+            throw new IllegalArgumentException("Max age must be positive: " + builder.maxAgeNanos + "ns");
+        }
+        this.maxAgeNanos = builder.maxAgeNanos;
+        this.refreshOnTicks = builder.refreshOnTicks;
+        this.clock = builder.clock;
+    }
+
+    /**
+     * Get the cached snapshot, or fetch it if there is none or it is stale.  A snapshot which is invalidated while
+     * being fetched is returned, but not cached.
+     *
+     * @param loader Fetches the snapshot from the server.
+     * @return The snapshot.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    AccountSnapshot getSnapshot(SymbolInfoCache.Loader<AccountSnapshot> loader) throws JsonProcessingException,
+            MT4Exception {
+        long started = clock.getAsLong();
+        long fetchGeneration;
+        synchronized (this) {
+            if (snapshot != null && started - fetchedNanos < maxAgeNanos) {
+                hits.increment();
+                return snapshot;
+            }
+            fetchGeneration = generation;
+        }
+        misses.increment();
+        AccountSnapshot fetched = loader.load();
+        synchronized (this) {
+            if (fetchGeneration == generation) {
+                snapshot = fetched;
+                fetchedNanos = started;
+            }
+        }
+        return fetched;
+    }
+
+    /**
+     * Discard the cached snapshot, so that the next query fetches the values again.
+     */
+    public synchronized void invalidate() {
+        snapshot = null;
+        generation++;
+        invalidations.increment();
+    }
+
+    /**
+     * Replace the known positions with the open market orders of the account.
+     *
+     * @param orders The open and pending orders.
+     */
+    synchronized void setPositions(Collection<Order> orders) {
+        positions.clear();
+        for (Order order : orders) {
+            updatePosition(order);
+        }
+        prices.keySet().retainAll(positions.values());
+    }
+
+    /**
+     * Track or forget an order as a position, depending on whether it is an open market order.
+     *
+     * @param order An order returned by the server.
+     */
+    synchronized void updatePosition(Order order) {
+        if (order.getOrderType().isMarket() && order.getCloseTimeSeconds() == 0) {
+            positions.put(order.getTicket(), order.getSymbol());
+        }
+        else {
+            positions.remove(order.getTicket());
+        }
+    }
+
+    /**
+     * Forget a position which was closed or deleted.
+     *
+     * @param ticket The ticket number.
+     */
+    synchronized void removePosition(int ticket) {
+        positions.remove(ticket);
+    }
+
+    /**
+     * Invalidate the cached snapshot if the price of a symbol with an open position moved.
+     *
+     * @param symbol The name of the symbol.
+     * @param bid    The latest bid price.
+     * @param ask    The latest ask price.
+     */
+    synchronized void onTick(String symbol, double bid, double ask) {
+        if (!refreshOnTicks || !positions.containsValue(symbol)) {
+            return;
+        }
+        double[] last = prices.get(symbol);
+        if (last == null) {
+            prices.put(symbol, new double[]{bid, ask});
+        }
+        else if (last[0] != bid || last[1] != ask) {
+            last[0] = bid;
+            last[1] = ask;
+        }
+        else {
+            return;
+        }
+        invalidate();
+    }
+
+    /**
+     * @return The number of open positions known to this cache.
+     */
+    public synchronized int getPositionCount() {
+        return positions.size();
+    }
+
+    /**
+     * @return The number of queries served from the cached snapshot.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of times the snapshot was fetched from the server.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of times the snapshot was invalidated.
+     */
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "AccountCache{" +
+                "positions=" + getPositionCount() +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", invalidations=" + getInvalidations() +
+                '}';
+    }
+}
@@ -0,0 +1,187 @@
+package human.coejoder.mt4client;
+
+/**
+ * The values of every integer and double property of the account, fetched together in a single request so that they
+ * are consistent with each other.  Immutable.
+ *
+ * @see Account#snapshot()
+ */
+public final class AccountSnapshot {
+
+    private final long[] integers;
+    private final double[] doubles;
+
+    /**
+     * Package-private constructor.
+     *
+     * @param values The property values, in the order of {@link AccountInfoInteger#values()} and {@link
+     *               AccountInfoDouble#values()}.
+     */
+    AccountSnapshot(PropertyValues values) {
+        values.checkCounts(AccountInfoInteger.values().length, AccountInfoDouble.values().length);
+        this.integers = values.integers;
+        this.doubles = values.doubles;
+    }
+
+    /**
+     * Get the value of an integer property.
+     *
+     * @param prop The property.
+     * @return <code>AccountInfoInteger(:prop)</code>
+     */
+    public long getInteger(AccountInfoInteger prop) {
+        return integers[prop.ordinal()];
+    }
+
+    /**
+     * Get the value of a double property.
+     *
+     * @param prop The property.
+     * @return <code>AccountInfoDouble(:prop)</code>
+     */
+    public double getDouble(AccountInfoDouble prop) {
+        return doubles[prop.ordinal()];
+    }
+
+    /**
+     * Account leverage.
+     *
+     * @return <code>AccountInfoInteger(ACCOUNT_LEVERAGE)</code>
+     */
+    public long getLeverage() {
+        return getInteger(AccountInfoInteger.ACCOUNT_LEVERAGE);
+    }
+
+    /**
+     * Maximum allowed number of open positions and active pending orders (in total), 0 = unlimited.
+     *
+     * @return <code>AccountInfoInteger(ACCOUNT_LIMIT_ORDERS)</code>
+     */
+    public int getLimitOrders() {
+        return (int) getInteger(AccountInfoInteger.ACCOUNT_LIMIT_ORDERS);
+    }
+
+    /**
+     * Mode for setting the minimal allowed margin.
+     *
+     * @return <code>AccountInfoInteger(ACCOUNT_MARGIN_SO_MODE)</code>
+     */
+    public AccountStopoutMode getMarginStopOutMode() {
+        return AccountStopoutMode.fromId((int) getInteger(AccountInfoInteger.ACCOUNT_MARGIN_SO_MODE)).orElseThrow();
+    }
+
+    /**
+     * Allowed trade for the current account.
+     *
+     * @return <code>AccountInfoInteger(ACCOUNT_TRADE_ALLOWED)</code>
+     */
+    public boolean isTradeAllowed() {
+        return getInteger(AccountInfoInteger.ACCOUNT_TRADE_ALLOWED) == 1;
+    }
+
+    /**
+     * Allowed trade for an Expert Advisor.
+     *
+     * @return <code>AccountInfoInteger(ACCOUNT_TRADE_EXPERT)</code>
+     */
+    public int isTradeForExpertAdvisorAllowed() {
+        return (int) getInteger(AccountInfoInteger.ACCOUNT_TRADE_EXPERT);
+    }
+
+    /**
+     * Account balance in the deposit currency.
+     *
+     * @return <code>AccountInfoDouble(ACCOUNT_BALANCE)</code>
+     */
+    public double getBalance() {
+        return getDouble(AccountInfoDouble.ACCOUNT_BALANCE);
+    }
+
+    /**
+     * Account credit in the deposit currency.
+     *
+     * @return <code>AccountInfoDouble(ACCOUNT_CREDIT)</code>
+     */
+    public double getCredit() {
+        return getDouble(AccountInfoDouble.ACCOUNT_CREDIT);
+    }
+
+    /**
+     * Current profit of an account in the deposit currency.
+     *
+     * @return <code>AccountInfoDouble(ACCOUNT_PROFIT)</code>
+     */
+    public double getProfit() {
+        return getDouble(AccountInfoDouble.ACCOUNT_PROFIT);
+    }
+
+    /**
+     * Account equity in the deposit currency.
+     *
+     * @return <code>AccountInfoDouble(ACCOUNT_EQUITY)</code>
+     */
+    public double getEquity() {
+        return getDouble(AccountInfoDouble.ACCOUNT_EQUITY);
+    }
+
+    /**
+     * Account margin used in the deposit currency.
+     *
+     * @return <code>AccountInfoDouble(ACCOUNT_MARGIN)</code>
+     */
+    public double getMargin() {
+        return getDouble(AccountInfoDouble.ACCOUNT_MARGIN);
+    }
+
+    /**
+     * Free margin of an account in the deposit currency.
+     *
+     * @return <code>AccountInfoDouble(ACCOUNT_MARGIN_FREE)</code>
+     */
+    public double getMarginFree() {
+        return getDouble(AccountInfoDouble.ACCOUNT_MARGIN_FREE);
+    }
+
+    /**
+     * Account margin level in percents.
+     *
+     * @return <code>AccountInfoDouble(ACCOUNT_MARGIN_LEVEL)</code>
+     */
+    public double getMarginLevel() {
+        return getDouble(AccountInfoDouble.ACCOUNT_MARGIN_LEVEL);
+    }
+
+    /**
+     * Margin call level. Depending on {@link #getMarginStopOutMode() margin stop-out mode}, this is expressed in
+     * percents or in the deposit currency.
+     *
+     * @return <code>AccountInfoDouble(ACCOUNT_MARGIN_SO_CALL)</code>
+     */
+    public double getMarginCallLevel() {
+        return getDouble(AccountInfoDouble.ACCOUNT_MARGIN_SO_CALL);
+    }
+
+    /**
+     * Margin stop-out level. Depending on the {@link #getMarginStopOutMode() margin stop-out mode}, this is expressed
+     * in percents or in the deposit currency.
+     *
+     * @return <code>AccountInfoDouble(ACCOUNT_MARGIN_SO_SO)</code>
+     */
+    public double getMarginStopOutLevel() {
+        return getDouble(AccountInfoDouble.ACCOUNT_MARGIN_SO_SO);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("AccountSnapshot{");
+        String separator = "";
+        for (AccountInfoInteger prop : AccountInfoInteger.values()) {
+            builder.append(separator).append(prop).append('=').append(integers[prop.ordinal()]);
+            separator = ", ";
+        }
+        for (AccountInfoDouble prop : AccountInfoDouble.values()) {
+            builder.append(separator).append(prop).append('=').append(doubles[prop.ordinal()]);
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,365 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces the requests of an {@link MT4Client} into {@link Request#BATCH} requests.
+ * <p>
+ * Requests are collected by a dedicated thread: the first request to arrive opens a window, and every request which
+ * arrives before the window closes, up to the maximum batch size, is sent with it in a single round trip.  Each
+ * caller blocks until its own response arrives, and receives its own result or {@link MT4Exception}.  A window which
+ * closes with a single request sends it as is.  If the server doesn't support batches, every request is sent on its
+ * own from then on.
+ * <p>
+ * Since only the batching thread uses the client's connection, the client may be shared by any number of threads while
+ * batching is enabled.  Query interfaces obtained from the client (e.g. {@link Account}, {@link Symbol}) are batched
+ * too.
+ *
+ * @see MT4Client#enableAutoBatching(long, TimeUnit, int)
+ */
+public class AutoBatcher implements AutoCloseable {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final int HISTOGRAM_BUCKETS = Integer.SIZE;
+
+    private final MT4Client mt4;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final JavaType listOfNodes;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder[] batchSizes = new LongAdder[HISTOGRAM_BUCKETS];
+    private final LongAdder totalQueueNanos = new LongAdder();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * Package-private constructor.  Start the batching thread.
+     *
+     * @param mt4          The client whose requests are batched.
+     * @param windowNanos  How long the first request of a batch waits for others to join it, in nanoseconds.
+     * @param maxBatchSize The number of requests which sends a batch before its window closes.
+     */
+    AutoBatcher(MT4Client mt4, long windowNanos, int maxBatchSize) {
+        if (windowNanos < 0) {
+            throw new IllegalArgumentException("Window must not be negative: " + windowNanos);
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be positive: " + maxBatchSize);
+        }
+        this.mt4 = mt4;
+        this.windowNanos = windowNanos;
+        this.maxBatchSize = maxBatchSize;
+        this.listOfNodes = mt4.constructType(MT4Client.LIST_OF_NODES);
+        Arrays.setAll(batchSizes, i -> new LongAdder());
+        this.thread = new Thread(this::run, "mt4-auto-batcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queue a request to be sent in the next batch and wait for its response.  Once the batcher is closed, the request
+     * is sent on its own.
+     *
+     * @param request      The request to send.  Must have an `action` property.
+     * @param responseType The response type.
+     * @param <T>          The response type.
+     * @return The server response.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T submit(ObjectNode request, JavaType responseType) throws JsonProcessingException, MT4Exception {
+        Pending pending = new Pending(request, responseType);
+        queue.add(pending);
+
+        // the batching thread may have stopped before it could see this request
+        if (!running && queue.remove(pending)) {
+            return mt4.exchange(request, responseType);
+        }
+        try {
+            return (T) pending.future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a batched response.", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof MT4Exception) {
+                throw (MT4Exception) cause;
+            }
+            else if (cause instanceof JsonProcessingException) {
+                throw (JsonProcessingException) cause;
+            }
+            else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * @return The batching window, in nanoseconds.
+     */
+    public long getWindowNanos() {
+        return windowNanos;
+    }
+
+    /**
+     * @return The maximum number of requests in a batch.
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * @return Whether the server accepts batches.  False once it has rejected one.
+     */
+    public boolean isBatchSupported() {
+        return mt4.isBatchSupported();
+    }
+
+    /**
+     * Get a snapshot of the batcher's metrics.
+     *
+     * @return The metrics.
+     */
+    public Metrics getMetrics() {
+        return new Metrics(this);
+    }
+
+    /**
+     * Send the requests already queued, stop the batching thread, and send any later requests on their own.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                Pending first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = first.queuedNanos + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    // once the window has closed, only take requests which are already waiting
+                    long remainingNanos = deadline - System.nanoTime();
+                    Pending next = remainingNanos > 0 ? queue.poll(remainingNanos, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                send(batch);
+                batch.clear();
+            }
+        }
+        catch (InterruptedException e) {
+            running = false;
+            IllegalStateException exc = new IllegalStateException("Auto-batcher was interrupted.", e);
+            batch.forEach(pending -> pending.future.completeExceptionally(exc));
+            queue.forEach(pending -> pending.future.completeExceptionally(exc));
+        }
+    }
+
+    private void send(List<Pending> batch) {
+        long sentNanos = System.nanoTime();
+        for (Pending pending : batch) {
+            long queueNanos = sentNanos - pending.queuedNanos;
+            totalQueueNanos.add(queueNanos);
+            maxQueueNanos.accumulateAndGet(queueNanos, Math::max);
+        }
+        batches.increment();
+        requests.add(batch.size());
+        batchSizes[bucketOf(batch.size())].increment();
+
+        // batches are not nested
+        for (Iterator<Pending> it = batch.iterator(); it.hasNext(); ) {
+            Pending pending = it.next();
+            if (Request.BATCH.isTypeOf(pending.request)) {
+                it.remove();
+                sendAlone(pending);
+            }
+        }
+        if (batch.size() <= 1 || !mt4.isBatchSupported()) {
+            batch.forEach(this::sendAlone);
+            return;
+        }
+        List<ObjectNode> requests = new ArrayList<>(batch.size());
+        batch.forEach(pending -> requests.add(pending.request));
+        List<JsonNode> items;
+        try {
+            items = mt4.exchange(MT4Client.buildBatchRequest(requests), listOfNodes);
+        }
+        catch (MT4Exception e) {
+            if (e.errorCode == MT4Exception.Code.ERR_UNKNOWN_COMMAND) {
+                mt4.markBatchUnsupported();
+                batch.forEach(this::sendAlone);
+            }
+            else {
+                batch.forEach(pending -> pending.future.completeExceptionally(e));
+            }
+            return;
+        }
+        catch (JsonProcessingException | RuntimeException e) {
+            batch.forEach(pending -> pending.future.completeExceptionally(e));
+            return;
+        }
+        if (items == null || items.size() != batch.size()) {
+            IllegalStateException exc = new IllegalStateException(String.format(
+                    "Expected %d batched responses but received %d.", batch.size(), items == null ? 0 : items.size()));
+            batch.forEach(pending -> pending.future.completeExceptionally(exc));
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Pending pending = batch.get(i);
+            try {
+                pending.future.complete(mt4.parseResponse(items.get(i), pending.responseType));
+            }
+            catch (JsonProcessingException | MT4Exception | RuntimeException e) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void sendAlone(Pending pending) {
+        try {
+            pending.future.complete(mt4.exchange(pending.request, pending.responseType));
+        }
+        catch (JsonProcessingException | MT4Exception | RuntimeException e) {
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @param size A batch size.
+     * @return The histogram bucket of the size: the smallest k such that the size is at most 2<sup>k</sup>.
+     */
+    private static int bucketOf(int size) {
+        return size <= 1 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * A request waiting to be sent.
+     */
+    private static class Pending {
+        final ObjectNode request;
+        final JavaType responseType;
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final long queuedNanos = System.nanoTime();
+
+        Pending(ObjectNode request, JavaType responseType) {
+            this.request = request;
+            this.responseType = responseType;
+        }
+    }
+
+    /**
+     * A snapshot of an {@link AutoBatcher auto-batcher's} metrics, for tuning its window.
+     */
+    public static class Metrics {
+
+        private final long batches;
+        private final long requests;
+        private final long[] batchSizes;
+        private final long totalQueueNanos;
+        private final long maxQueueNanos;
+
+        private Metrics(AutoBatcher batcher) {
+            this.batches = batcher.batches.sum();
+            this.requests = batcher.requests.sum();
+            int buckets = Integer.SIZE - Integer.numberOfLeadingZeros(batcher.maxBatchSize - 1) + 1;
+            this.batchSizes = new long[buckets];
+            Arrays.setAll(batchSizes, i -> batcher.batchSizes[i].sum());
+            this.totalQueueNanos = batcher.totalQueueNanos.sum();
+            this.maxQueueNanos = batcher.maxQueueNanos.get();
+        }
+
+        /**
+         * @return The number of batches sent, including those of a single request.
+         */
+        public long getBatches() {
+            return batches;
+        }
+
+        /**
+         * @return The number of requests sent.
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * @return The mean number of requests per batch.
+         */
+        public double getMeanBatchSize() {
+            return batches == 0 ? 0 : (double) requests / batches;
+        }
+
+        /**
+         * Get the distribution of batch sizes, in power-of-two buckets.  Bucket 0 counts the batches of a single
+         * request, and bucket k counts the batches of more than 2<sup>k-1</sup> and at most 2<sup>k</sup> requests.
+         *
+         * @return The number of batches in each bucket, up to the bucket of the maximum batch size.
+         */
+        public long[] getBatchSizeHistogram() {
+            return batchSizes.clone();
+        }
+
+        /**
+         * @return The mean time requests spent waiting for their batch to be sent, in nanoseconds.
+         */
+        public double getMeanQueueNanos() {
+            return requests == 0 ? 0 : (double) totalQueueNanos / requests;
+        }
+
+        /**
+         * @return The longest time a request spent waiting for its batch to be sent, in nanoseconds.
+         */
+        public long getMaxQueueNanos() {
+            return maxQueueNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "Metrics{" +
+                    "batches=" + batches +
+                    ", requests=" + requests +
+                    ", batchSizeHistogram=" + Arrays.toString(batchSizes) +
+                    ", meanQueueNanos=" + getMeanQueueNanos() +
+                    ", maxQueueNanos=" + maxQueueNanos +
+                    '}';
+        }
+    }
+}
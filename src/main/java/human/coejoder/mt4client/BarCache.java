@@ -0,0 +1,197 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A cache of the latest OHLCV bars of several symbols and timeframes, which is refreshed by requesting only the bars
+ * which opened since the last refresh, rather than the whole window.
+ * <p>
+ * The first request for a symbol and timeframe fetches the last {@link #getBarCount() bar count} bars.  Each refresh
+ * after that asks for as many bars as may have opened since the previous one, plus the last bar it received, which
+ * may still have been forming.  The bars received replace the cached bars from the same open time onwards, and the
+ * oldest bars are dropped to keep the window's size.  If the bars received don't overlap the cached bars (e.g.
+ * because the clock jumped), the whole window is fetched again.
+ * <p>
+ * The server returns bars in ascending time order.  This class is thread-safe if its client is, e.g. the {@link
+ * MT4AsyncClient#blocking() blocking client} of an asynchronous client; each symbol and timeframe is refreshed by one
+ * thread at a time.
+ *
+ * @see MT4Client#getOHLCV(String, Timeframe, long, long)
+ */
+public class BarCache {
+
+    private final MT4Client mt4;
+    private final int barCount;
+    private final long timeout;
+    private final LongSupplier clock;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    private final LongAdder fullFetches = new LongAdder();
+    private final LongAdder tailFetches = new LongAdder();
+    private final LongAdder barsReceived = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param mt4      The client.
+     * @param barCount The number of bars to keep for each symbol and timeframe.  Must be positive.
+     * @param timeout  The timeout in milliseconds to wait for the broker's server to return the data.
+     */
+    public BarCache(MT4Client mt4, int barCount, long timeout) {
+        this(mt4, barCount, timeout, System::nanoTime);
+    }
+
+    /**
+     * Package-private constructor.
+     *
+     * @param clock The current time in nanoseconds, as given by {@link System#nanoTime()}.
+     * @see #BarCache(MT4Client, int, long)
+     */
+    BarCache(MT4Client mt4, int barCount, long timeout, LongSupplier clock) {
+        if (barCount < 1) {
+            throw new IllegalArgumentException("Bar count must be positive: " + barCount);
+        }
+        this.mt4 = mt4;
+        this.barCount = barCount;
+        this.timeout = timeout;
+        this.clock = clock;
+    }
+
+    /**
+     * Refresh the bars of a symbol and timeframe, and get them.
+     *
+     * @param symbol    The market symbol.
+     * @param timeframe The width of the bars.
+     * @return The last {@link #getBarCount() bar count} bars at most, in ascending time order.  The last bar may be
+     * still forming.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    public List<OHLCV> getBars(String symbol, Timeframe timeframe) throws JsonProcessingException, MT4Exception {
+        Series bars = series.computeIfAbsent(symbol + '@' + timeframe.getMinutes(), key -> new Series());
+        synchronized (bars) {
+            refresh(bars, symbol, timeframe);
+            return List.copyOf(bars.bars);
+        }
+    }
+
+    private void refresh(Series bars, String symbol, Timeframe timeframe) throws JsonProcessingException,
+            MT4Exception {
+        long now = clock.getAsLong();
+        if (bars.bars.isEmpty()) {
+            replace(bars, fetch(symbol, timeframe, barCount), now);
+            return;
+        }
+
+        // the bars which opened since the last refresh, and the one which was forming then
+        long periodNanos = TimeUnit.MINUTES.toNanos(Math.max(timeframe.getMinutes(), 1));
+        long limit = Math.min(barCount, (now - bars.refreshedNanos) / periodNanos + 2);
+        List<OHLCV> tail = fetch(symbol, timeframe, limit);
+        tailFetches.increment();
+        if (tail.isEmpty()) {
+            bars.refreshedNanos = now;
+            return;
+        }
+        int from = tail.get(0).time;
+        if (from > bars.bars.get(bars.bars.size() - 1).time) {
+            // some bars in between are missing
+            replace(bars, limit == barCount ? tail : fetch(symbol, timeframe, barCount), now);
+            return;
+        }
+        int keep = bars.bars.size();
+        while (keep > 0 && bars.bars.get(keep - 1).time >= from) {
+            keep--;
+        }
+        bars.bars.subList(keep, bars.bars.size()).clear();
+        bars.bars.addAll(tail);
+        if (bars.bars.size() > barCount) {
+            bars.bars.subList(0, bars.bars.size() - barCount).clear();
+        }
+        bars.refreshedNanos = now;
+    }
+
+    private void replace(Series bars, List<OHLCV> window, long now) {
+        fullFetches.increment();
+        bars.bars.clear();
+        bars.bars.addAll(window);
+        bars.refreshedNanos = now;
+    }
+
+    private List<OHLCV> fetch(String symbol, Timeframe timeframe, long limit) throws JsonProcessingException,
+            MT4Exception {
+        List<OHLCV> bars = mt4.getOHLCV(symbol, timeframe, limit, timeout);
+        barsReceived.add(bars.size());
+        return bars;
+    }
+
+    /**
+     * Discard the cached bars of a symbol and timeframe, so that the next request fetches the whole window.
+     *
+     * @param symbol    The market symbol.
+     * @param timeframe The width of the bars.
+     */
+    public void invalidate(String symbol, Timeframe timeframe) {
+        series.remove(symbol + '@' + timeframe.getMinutes());
+    }
+
+    /**
+     * Discard every cached bar.
+     */
+    public void invalidateAll() {
+        series.clear();
+    }
+
+    /**
+     * @return The number of bars kept for each symbol and timeframe.
+     */
+    public int getBarCount() {
+        return barCount;
+    }
+
+    /**
+     * @return The number of times the whole window of a symbol and timeframe was fetched.
+     */
+    public long getFullFetches() {
+        return fullFetches.sum();
+    }
+
+    /**
+     * @return The number of refreshes which fetched only the latest bars.
+     */
+    public long getTailFetches() {
+        return tailFetches.sum();
+    }
+
+    /**
+     * @return The total number of bars received from the server.
+     */
+    public long getBarsReceived() {
+        return barsReceived.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "BarCache{" +
+                "barCount=" + barCount +
+                ", series=" + series.size() +
+                ", fullFetches=" + getFullFetches() +
+                ", tailFetches=" + getTailFetches() +
+                ", barsReceived=" + getBarsReceived() +
+                '}';
+    }
+
+    /**
+     * The cached bars of one symbol and timeframe.
+     */
+    private static final class Series {
+        private final List<OHLCV> bars = new ArrayList<>();
+        private long refreshedNanos;
+    }
+}
@@ -0,0 +1,135 @@
+package human.coejoder.mt4client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * The results of several requests sent together, in request order.  Each request either has a result or failed with
+ * its own error, without failing the others.  Immutable.
+ *
+ * @param <T> The result type.
+ * @see MT4Client#runIndicators(List)
+ * @see MT4Client#orderSendAll(List)
+ * @see MT4Client#orderModifyAll(List)
+ * @see MT4Client#orderCloseAll(java.util.Collection)
+ */
+public final class BatchResults<T> {
+
+    private final List<T> values;
+    private final List<MT4Exception> errors;
+    private final int errorCount;
+
+    /**
+     * Package-private constructor.
+     *
+     * @param values The result of each request, or null where it failed.
+     * @param errors The error of each request, or null where it succeeded.
+     */
+    BatchResults(List<T> values, List<MT4Exception> errors) {
+        if (values.size() != errors.size()) {
+            throw new IllegalArgumentException(String.format(
+                    "Expected %d errors but received %d.", values.size(), errors.size()));
+        }
+        this.values = Collections.unmodifiableList(new ArrayList<>(values));
+        this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+        this.errorCount = (int) errors.stream().filter(Objects::nonNull).count();
+    }
+
+    /**
+     * @return The number of requests.
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * @return Whether any request failed.
+     */
+    public boolean hasErrors() {
+        return errorCount > 0;
+    }
+
+    /**
+     * @return The number of requests which failed.
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Get the result of a request.
+     *
+     * @param index The index of the request.
+     * @return The result.
+     * @throws MT4Exception If the request failed.
+     */
+    public T get(int index) throws MT4Exception {
+        if (errors.get(index) != null) {
+            throw errors.get(index);
+        }
+        return values.get(index);
+    }
+
+    /**
+     * Get the result of a request, without throwing its error.
+     *
+     * @param index The index of the request.
+     * @return The result, or null if the request failed.
+     */
+    T getOrNull(int index) {
+        return values.get(index);
+    }
+
+    /**
+     * Get the result of every request, where the results are numbers, e.g. those of {@link
+     * MT4Client#runIndicators(List)}.
+     *
+     * @return The results in request order, with {@link Double#NaN} in place of any request which failed or had no
+     * value.
+     * @throws ClassCastException If the results are not numbers.
+     */
+    public double[] getValues() {
+        double[] doubles = new double[values.size()];
+        for (int i = 0; i < doubles.length; i++) {
+            Object value = values.get(i);
+            doubles[i] = errors.get(i) == null && value != null ? ((Number) value).doubleValue() : Double.NaN;
+        }
+        return doubles;
+    }
+
+    /**
+     * Get the error of a request.
+     *
+     * @param index The index of the request.
+     * @return The error, or null if the request succeeded.
+     */
+    public MT4Exception getError(int index) {
+        return errors.get(index);
+    }
+
+    /**
+     * Transform the result of every request which succeeded.
+     *
+     * @param mapper The transformation.
+     * @param <R>    The new result type.
+     * @return The transformed results, with the same errors.
+     */
+    <R> BatchResults<R> map(Function<? super T, ? extends R> mapper) {
+        List<R> mapped = new ArrayList<>(values.size());
+        for (int i = 0; i < values.size(); i++) {
+            mapped.add(errors.get(i) == null ? mapper.apply(values.get(i)) : null);
+        }
+        return new BatchResults<>(mapped, errors);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResults{" +
+                "values=" + values +
+                ", errors=" + errors +
+                '}';
+    }
+}
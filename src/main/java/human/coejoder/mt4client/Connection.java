@@ -0,0 +1,43 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A connection to the MT4 server, over which requests are exchanged for encoded responses.
+ */
+interface Connection extends AutoCloseable {
+
+    /**
+     * Send a request to the server and wait for the response.
+     *
+     * @param request The request.  Must have an `action` property.
+     * @return The encoded response, or null if none was received before the response timeout.
+     * @throws MT4TimeoutException If none was received before the response timeout, for connections which don't
+     *                             return null.
+     */
+    byte[] exchange(ObjectNode request);
+
+    /**
+     * Send a request template to the server and wait for the response.
+     *
+     * @param request The request template.
+     * @return The encoded response, or null if none was received before the response timeout.
+     * @throws MT4TimeoutException If none was received before the response timeout, for connections which don't
+     *                             return null.
+     */
+    byte[] exchange(RequestTemplate request);
+
+    /**
+     * Set the codec with which later requests are encoded and responses are decoded.  Connections start out using
+     * {@link WireCodec#JSON}.
+     *
+     * @param codec The codec agreed with the server.
+     */
+    void setCodec(WireCodec codec);
+
+    /**
+     * Disconnect from the server and release all resources.
+     */
+    @Override
+    void close();
+}
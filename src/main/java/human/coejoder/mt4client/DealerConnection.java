@@ -0,0 +1,503 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * A {@link Connection} over a DEALER socket, which allows any number of requests to be in flight at once.
+ * <p>
+ * The socket is owned by a dedicated I/O thread; callers hand their requests to it through a queue and are given a
+ * future for the response.  The I/O thread sleeps in a poll until a response arrives, a request is queued (which
+ * signals an inproc PAIR socket), or the nearest deadline passes.  Every request is stamped with a {@link
+ * Request#REQUEST_ID request id}, and a response which echoes one is routed to the request with that id, in whatever
+ * order it arrives.  A response without an id comes from a server which answers strictly in order, so it is matched to
+ * the oldest request in flight; in that case a request which times out keeps its place in that order, so that its late
+ * response (if any) is discarded rather than handed to the next caller.  If no response arrives within a further
+ * response timeout, it was lost, and every later response would be handed to the wrong caller: the requests in flight
+ * are failed and the socket is replaced, so that any responses still due to the old one are never received.
+ * <p>
+ * Identical {@link Request#isReadOnly() read-only} requests submitted while one of them is in flight share its
+ * response rather than each making a round trip, unless this single-flight behaviour is {@link
+ * #setSingleFlight(boolean) disabled}.  Requests which change anything are always sent.
+ */
+class DealerConnection implements Connection {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DealerConnection.class);
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final byte[] DELIMITER = new byte[0];
+    private static final byte[] SIGNAL = new byte[0];
+    private static final long NO_REQUEST_ID = -1;
+    private static final int SOCKET_INDEX = 0;
+    private static final int WAKEUP_INDEX = 1;
+
+    private final ZContext context;
+    private final String address;
+    private final int requestTimeoutMs;
+    private final long responseTimeoutNanos;
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final RequestBuffer buffer = new RequestBuffer();
+    private final Queue<Exchange> outbox = new ConcurrentLinkedQueue<>();
+    private final Map<Long, Exchange> inFlight = new LinkedHashMap<>();
+    private final Map<JsonNode, CompletableFuture<byte[]>> sharedReads = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+    private final ZMQ.Socket wakeupReceiver;
+    private final ZMQ.Socket wakeupSender;
+    private final Thread ioThread;
+    private ZMQ.Socket socket;
+    private ZMQ.Poller poller;
+    private boolean wakeupClosed;
+    private volatile boolean running = true;
+    private volatile WireCodec codec = WireCodec.JSON;
+    private volatile boolean singleFlight = true;
+    private boolean correlated;
+
+    /**
+     * Constructor.  Initialize the DEALER socket, connect to the MT4 server and start the I/O thread.
+     *
+     * @param address           The address of the server's listening socket.
+     * @param requestTimeoutMs  The number of milliseconds to wait for a request to be sent.
+     * @param responseTimeoutMs The number of milliseconds to wait for a response to be received, or a negative value
+     *                          to wait indefinitely.
+     */
+    DealerConnection(String address, int requestTimeoutMs, int responseTimeoutMs) {
+        this.address = address;
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.responseTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(responseTimeoutMs);
+        this.context = new ZContext();
+        this.socket = connect();
+
+        // the I/O thread is woken by a signal from the threads which queue requests
+        int threadNumber = THREAD_COUNT.incrementAndGet();
+        String wakeupAddress = "inproc://mt4-wakeup-" + threadNumber;
+        this.wakeupReceiver = context.createSocket(SocketType.PAIR);
+        this.wakeupReceiver.bind(wakeupAddress);
+        this.wakeupSender = context.createSocket(SocketType.PAIR);
+        this.wakeupSender.connect(wakeupAddress);
+
+        this.ioThread = new Thread(this::run, "mt4-io-" + threadNumber);
+        this.ioThread.setDaemon(true);
+        this.ioThread.start();
+    }
+
+    /**
+     * Queue a request to be sent to the server, or share the response of an identical read-only request in flight.
+     * The request is stamped with a request id when it is sent, without modifying the caller's node.
+     *
+     * @param request The request.  Must have an `action` property.
+     * @return A future which completes with the serialized response, or exceptionally with a {@link TimeoutException}
+     * if the request could not be sent or was not answered in time.
+     */
+    CompletableFuture<byte[]> submit(ObjectNode request) {
+        if (singleFlight && Request.isReadOnly(request)) {
+            return share(request.deepCopy(), () -> enqueue(request));
+        }
+        return enqueue(request);
+    }
+
+    /**
+     * Queue a request template to be sent to the server, or share the response of an identical read-only request in
+     * flight.  The request is stamped with a request id when it is sent.
+     *
+     * @param request The request template.
+     * @return A future which completes with the serialized response, or exceptionally with a {@link TimeoutException}
+     * if the request could not be sent or was not answered in time.
+     */
+    CompletableFuture<byte[]> submit(RequestTemplate request) {
+        if (singleFlight && Request.isReadOnly(request.getRequest())) {
+            return share(request.getRequest(), () -> enqueue(request));
+        }
+        return enqueue(request);
+    }
+
+    /**
+     * Enable or disable sharing the responses of identical read-only requests in flight.  Enabled by default.
+     *
+     * @param singleFlight Whether to share responses.
+     */
+    void setSingleFlight(boolean singleFlight) {
+        this.singleFlight = singleFlight;
+    }
+
+    /**
+     * @return The number of requests which shared the response of an identical request rather than being sent.
+     */
+    long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return The number of times the socket was replaced because a response without a request id was lost.
+     */
+    long getResets() {
+        return resets.sum();
+    }
+
+    private ZMQ.Socket connect() {
+        // create and configure DEALER socket
+        ZMQ.Socket dealer = context.createSocket(SocketType.DEALER);
+        dealer.setSendTimeOut(requestTimeoutMs);
+
+        // connect to server
+        dealer.connect(address);
+        return dealer;
+    }
+
+    private CompletableFuture<byte[]> enqueue(ObjectNode request) {
+        return submit(new Exchange(nextRequestId.getAndIncrement(), request, null));
+    }
+
+    private CompletableFuture<byte[]> enqueue(RequestTemplate request) {
+        return submit(new Exchange(nextRequestId.getAndIncrement(), null, request));
+    }
+
+    /**
+     * Join the identical request in flight, or else send this one and let others join it until it completes.  Each
+     * caller is given its own copy of the shared future, so that one caller cancelling has no effect on the others.
+     *
+     * @param key    The request, without a request id.  Must not be modified.
+     * @param sender Queues the request to be sent.
+     * @return A future which completes with the serialized response.
+     */
+    private CompletableFuture<byte[]> share(JsonNode key, Supplier<CompletableFuture<byte[]>> sender) {
+        CompletableFuture<byte[]> shared = new CompletableFuture<>();
+        CompletableFuture<byte[]> existing = sharedReads.putIfAbsent(key, shared);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.copy();
+        }
+        sender.get().whenComplete((response, e) -> {
+            // later requests are sent anew
+            sharedReads.remove(key, shared);
+            if (e != null) {
+                shared.completeExceptionally(e);
+            }
+            else {
+                shared.complete(response);
+            }
+        });
+        return shared.copy();
+    }
+
+    private CompletableFuture<byte[]> submit(Exchange exchange) {
+        outbox.add(exchange);
+        if (wakeupPending.compareAndSet(false, true)) {
+            wakeup();
+        }
+
+        // the I/O thread may have stopped before it could see this request
+        if (!running && outbox.remove(exchange)) {
+            exchange.future.completeExceptionally(new IllegalStateException("Connection is closed."));
+        }
+        return exchange.future;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws MT4TimeoutException   If the request could not be sent or was not answered in time.
+     * @throws IllegalStateException If the connection is closed, or the calling thread was interrupted.
+     */
+    @Override
+    public byte[] exchange(ObjectNode request) {
+        return await(submit(request));
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @throws MT4TimeoutException   If the request could not be sent or was not answered in time.
+     * @throws IllegalStateException If the connection is closed, or the calling thread was interrupted.
+     */
+    @Override
+    public byte[] exchange(RequestTemplate request) {
+        return await(submit(request));
+    }
+
+    private static byte[] await(CompletableFuture<byte[]> response) {
+        try {
+            return response.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a response.", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof TimeoutException) {
+                throw new MT4TimeoutException((TimeoutException) cause);
+            }
+            else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * {@inheritDoc}  Must not be called while requests are in flight.
+     */
+    @Override
+    public void setCodec(WireCodec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        wakeup();
+        if (Thread.currentThread() != ioThread) {
+            try {
+                ioThread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Signal the I/O thread to wake up.  The signal is dropped once the I/O thread has stopped.
+     */
+    private void wakeup() {
+        synchronized (wakeupSender) {
+            if (!wakeupClosed) {
+                wakeupSender.send(SIGNAL, ZMQ.DONTWAIT);
+            }
+        }
+    }
+
+    private ZMQ.Poller newPoller() {
+        ZMQ.Poller newPoller = context.createPoller(2);
+        newPoller.register(socket, ZMQ.Poller.POLLIN);
+        newPoller.register(wakeupReceiver, ZMQ.Poller.POLLIN);
+        return newPoller;
+    }
+
+    private void run() {
+        try {
+            poller = newPoller();
+            while (running) {
+                for (Exchange next = outbox.poll(); next != null; next = outbox.poll()) {
+                    send(next);
+                }
+                poller.poll(pollTimeoutMillis());
+                if (poller.pollin(WAKEUP_INDEX)) {
+                    // requests queued from now on signal again
+                    wakeupPending.set(false);
+                    while (wakeupReceiver.recv(ZMQ.DONTWAIT) != null) {
+                        // discard the signals
+                    }
+                }
+                if (poller.pollin(SOCKET_INDEX)) {
+                    receive();
+                }
+                expire();
+            }
+        }
+        catch (RuntimeException e) {
+            LOG.error("I/O thread failed.", e);
+        }
+        finally {
+            running = false;
+            IllegalStateException closed = new IllegalStateException("Connection is closed.");
+            inFlight.values().forEach(exchange -> exchange.future.completeExceptionally(closed));
+            inFlight.clear();
+            for (Exchange next = outbox.poll(); next != null; next = outbox.poll()) {
+                next.future.completeExceptionally(closed);
+            }
+            synchronized (wakeupSender) {
+                wakeupClosed = true;
+            }
+            context.destroy();
+        }
+    }
+
+    private void send(Exchange exchange) {
+        // cancelled by the caller before it could be sent
+        if (exchange.future.isDone()) {
+            return;
+        }
+
+        // the empty delimiter frame makes the message look like it came from a REQ socket
+        buffer.setCodec(codec);
+        if (exchange.template != null) {
+            buffer.serialize(exchange.template, exchange.requestId);
+        }
+        else {
+            buffer.serialize(exchange.request, exchange.requestId);
+        }
+        if (socket.sendMore(DELIMITER) && socket.send(buffer.array(), 0, buffer.size(), 0)) {
+            exchange.deadline = System.nanoTime() + responseTimeoutNanos;
+            inFlight.put(exchange.requestId, exchange);
+        }
+        else {
+            exchange.future.completeExceptionally(new TimeoutException("Request could not be sent."));
+        }
+    }
+
+    private void receive() {
+        // each response is preceded by the empty delimiter frame
+        while (socket.recv(ZMQ.DONTWAIT) != null) {
+            byte[] response = socket.recv();
+            Exchange exchange;
+            long requestId = readRequestId(response);
+            if (requestId != NO_REQUEST_ID) {
+                correlated = true;
+                exchange = inFlight.remove(requestId);
+            }
+            else {
+                Iterator<Exchange> oldest = inFlight.values().iterator();
+                exchange = oldest.hasNext() ? oldest.next() : null;
+                if (exchange != null) {
+                    oldest.remove();
+                }
+            }
+            if (exchange == null) {
+                LOG.warn("Discarding unexpected response: " + (response == null ? null : toLogString(response)));
+            }
+            else {
+                exchange.future.complete(response);
+            }
+        }
+    }
+
+    /**
+     * @return The number of milliseconds until the nearest deadline, or -1 to wait indefinitely.
+     */
+    private long pollTimeoutMillis() {
+        if (inFlight.isEmpty() || responseTimeoutNanos < 0) {
+            return -1;
+        }
+        long now = System.nanoTime();
+        Exchange oldest = inFlight.values().iterator().next();
+        long wakeAt = oldest.deadline;
+        if (!correlated) {
+            // an expired exchange stays in flight until it is answered or written off
+            wakeAt = oldest.deadline + responseTimeoutNanos;
+            for (Exchange exchange : inFlight.values()) {
+                if (exchange.deadline - now > 0) {
+                    if (exchange.deadline - wakeAt < 0) {
+                        wakeAt = exchange.deadline;
+                    }
+                    break;
+                }
+            }
+        }
+
+        // round up, so that the deadline has passed on waking
+        return TimeUnit.NANOSECONDS.toMillis(Math.max(wakeAt - now, 0) + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+    }
+
+    private void expire() {
+        if (responseTimeoutNanos < 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        Iterator<Exchange> iterator = inFlight.values().iterator();
+        while (iterator.hasNext()) {
+            Exchange exchange = iterator.next();
+            if (now - exchange.deadline < 0) {
+                break;
+            }
+            exchange.future.completeExceptionally(new TimeoutException("Response was not received in time."));
+
+            // a server which echoes request ids will not misroute a late response
+            if (correlated) {
+                iterator.remove();
+            }
+        }
+
+        // the oldest response is overdue by a whole response timeout, so it was lost
+        if (!correlated && !inFlight.isEmpty()
+                && now - inFlight.values().iterator().next().deadline >= responseTimeoutNanos) {
+            reset();
+        }
+    }
+
+    /**
+     * Fail every request in flight and replace the socket, so that responses to the old socket are never received.
+     */
+    private void reset() {
+        LOG.warn("A response was lost; reconnecting with " + inFlight.size() + " request(s) in flight.");
+        TimeoutException lost = new TimeoutException("Connection was reset after a response was lost.");
+        inFlight.values().forEach(exchange -> exchange.future.completeExceptionally(lost));
+        inFlight.clear();
+        poller.close();
+        context.destroySocket(socket);
+        socket = connect();
+        poller = newPoller();
+        resets.increment();
+    }
+
+    /**
+     * Read the request id echoed by the server.  Only the first property of the response is examined, so that the
+     * I/O thread doesn't parse the whole response.
+     *
+     * @param response The serialized response.
+     * @return The request id, or {@value #NO_REQUEST_ID} if the response doesn't begin with one.
+     */
+    private long readRequestId(byte[] response) {
+        if (response == null) {
+            return NO_REQUEST_ID;
+        }
+        try (JsonParser parser = codec.factory().createParser(response)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT
+                    && parser.nextToken() == JsonToken.FIELD_NAME
+                    && Request.REQUEST_ID.equals(parser.getCurrentName())
+                    && parser.nextToken() == JsonToken.VALUE_NUMBER_INT) {
+                return parser.getLongValue();
+            }
+        }
+        catch (IOException e) {
+            LOG.warn("Response is not an object: " + toLogString(response));
+        }
+        return NO_REQUEST_ID;
+    }
+
+    private String toLogString(byte[] response) {
+        return codec.toLogString(response, 0, response.length);
+    }
+
+    /**
+     * A request or request template, and the future of its response.
+     */
+    private static class Exchange {
+        final long requestId;
+        final ObjectNode request;
+        final RequestTemplate template;
+        final CompletableFuture<byte[]> future = new CompletableFuture<>();
+        long deadline;
+
+        Exchange(long requestId, ObjectNode request, RequestTemplate template) {
+            this.requestId = requestId;
+            this.request = request;
+            this.template = template;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the orders in the Account History tab which match a {@link HistoryQuery}, fetching them a page at a
+ * time in ascending ticket order.  Each page starts after the greatest ticket of the one before, so an order is never
+ * returned twice.  A page which is short is the last.  So is a page which is longer than asked for, as the server
+ * ignored the limit and so sent every order after the last page, and a page which brings no new tickets because the
+ * server ignores paging altogether.
+ * <p>
+ * Failures are thrown as an {@link UncheckedIOException} if a response fails to parse, or an {@link
+ * IllegalStateException} caused by an {@link MT4Exception} if the server had an error.
+ */
+final class HistoryIterator implements Iterator<Order> {
+
+    private final MT4Client mt4;
+    private final HistoryQuery query;
+    private final int pageSize;
+    private Iterator<Order> page;
+    private int received;
+    private Integer lastTicket;
+    private Integer maxTicket;
+    private Order next;
+    private boolean done;
+
+    /**
+     * Package-private constructor.
+     *
+     * @param mt4      The client.
+     * @param query    The filters.  Its limit, if any, is ignored.
+     * @param pageSize The number of orders per request.
+     */
+    HistoryIterator(MT4Client mt4, HistoryQuery query, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        this.mt4 = mt4;
+        this.query = query;
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && !done) {
+            if (page == null) {
+                page = fetch();
+                received = 0;
+            }
+            if (page.hasNext()) {
+                Order order = page.next();
+                received++;
+                maxTicket = maxTicket == null ? order.getTicket() : Math.max(maxTicket, order.getTicket());
+                if ((lastTicket == null || order.getTicket() > lastTicket) && query.matches(order)) {
+                    next = order;
+                }
+            }
+            else {
+                done = received != pageSize || maxTicket == null || maxTicket.equals(lastTicket);
+                lastTicket = maxTicket;
+                page = null;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Order next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Order order = next;
+        next = null;
+        return order;
+    }
+
+    private Iterator<Order> fetch() {
+        HistoryQuery pageQuery = (lastTicket == null ? query : query.after(lastTicket)).withLimit(pageSize);
+        try {
+            return mt4.getResponseElements(mt4.buildHistoricalOrdersRequest(pageQuery), Order.class);
+        }
+        catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        catch (MT4Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
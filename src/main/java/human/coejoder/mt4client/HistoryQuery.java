@@ -0,0 +1,181 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * A filter of the closed and deleted orders in the Account History tab, by close time and ticket number.  Matching
+ * orders are returned in ascending ticket order, at most {@link #limit} at a time.
+ * <p>
+ * A later page is requested by raising {@link #fromTicket} past the last ticket received; see {@link
+ * #after(Order)}.
+ *
+ * @see MT4Client#getOrdersHistorical(HistoryQuery)
+ * @see MT4Client#streamOrdersHistorical(HistoryQuery)
+ */
+public class HistoryQuery {
+
+    public static class Builder {
+        private Long fromTime;
+        private Long toTime;
+        private Integer fromTicket;
+        private Integer toTicket;
+        private Integer limit;
+
+        private Builder() {}
+
+        /**
+         * Construct a history query builder.  Without any filter, the query matches every order in the history.
+         *
+         * @return The history query builder instance.
+         */
+        public static Builder newInstance() {
+            return new Builder();
+        }
+
+        /**
+         * Build the history query instance.
+         *
+         * @return The history query.
+         */
+        public HistoryQuery build() {
+            return new HistoryQuery(this);
+        }
+
+        /**
+         * @param fromTime The earliest close time, in seconds since 1970.01.01.  Optional.
+         * @return This Builder.
+         * @see Order#getCloseTimeSeconds()
+         */
+        public Builder setFromTime(Long fromTime) {
+            this.fromTime = fromTime;
+            return this;
+        }
+
+        /**
+         * @param toTime The latest close time, in seconds since 1970.01.01.  Optional.
+         * @return This Builder.
+         * @see Order#getCloseTimeSeconds()
+         */
+        public Builder setToTime(Long toTime) {
+            this.toTime = toTime;
+            return this;
+        }
+
+        /**
+         * @param fromTicket The lowest ticket number.  Optional.
+         * @return This Builder.
+         */
+        public Builder setFromTicket(Integer fromTicket) {
+            this.fromTicket = fromTicket;
+            return this;
+        }
+
+        /**
+         * @param toTicket The highest ticket number.  Optional.
+         * @return This Builder.
+         */
+        public Builder setToTicket(Integer toTicket) {
+            this.toTicket = toTicket;
+            return this;
+        }
+
+        /**
+         * @param limit The maximum number of orders to return.  Optional; must be positive.
+         * @return This Builder.
+         */
+        public Builder setLimit(Integer limit) {
+            this.limit = limit;
+            return this;
+        }
+    }
+
+    @JsonProperty("from_time")
+    public final Long fromTime;
+    @JsonProperty("to_time")
+    public final Long toTime;
+    @JsonProperty("from_ticket")
+    public final Integer fromTicket;
+    @JsonProperty("to_ticket")
+    public final Integer toTicket;
+    public final Integer limit;
+
+    private HistoryQuery(Builder builder) {
+        // do some parameter validation
+        if (builder.limit != null && builder.limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive: " + builder.limit);
+        }
+        this.fromTime = builder.fromTime;
+        this.toTime = builder.toTime;
+        this.fromTicket = builder.fromTicket;
+        this.toTicket = builder.toTicket;
+        this.limit = builder.limit;
+    }
+
+    /**
+     * Get the query for the page which follows an order.
+     *
+     * @param last The last order received.
+     * @return The same query, limited to tickets greater than the order's.
+     */
+    public HistoryQuery after(Order last) {
+        return after(last.getTicket());
+    }
+
+    /**
+     * @param ticket The last ticket number received.
+     * @return The same query, limited to greater ticket numbers.
+     */
+    HistoryQuery after(int ticket) {
+        return toBuilder()
+                .setFromTicket(fromTicket == null ? ticket + 1 : Math.max(fromTicket, ticket + 1))
+                .build();
+    }
+
+    /**
+     * @param limit The maximum number of orders to return.
+     * @return The same query, with another limit.
+     */
+    HistoryQuery withLimit(Integer limit) {
+        return toBuilder()
+                .setLimit(limit)
+                .build();
+    }
+
+    private Builder toBuilder() {
+        return Builder.newInstance()
+                .setFromTime(fromTime)
+                .setToTime(toTime)
+                .setFromTicket(fromTicket)
+                .setToTicket(toTicket)
+                .setLimit(limit);
+    }
+
+    /**
+     * Check an order against the filters, for servers which ignore them.
+     *
+     * @param order An order from the history.
+     * @return Whether the order matches the time and ticket filters.
+     */
+    boolean matches(Order order) {
+        int ticket = order.getTicket();
+        if ((fromTicket != null && ticket < fromTicket) || (toTicket != null && ticket > toTicket)) {
+            return false;
+        }
+        if (fromTime == null && toTime == null) {
+            return true;
+        }
+        long closeTime = order.getCloseTimeSeconds();
+        return (fromTime == null || closeTime >= fromTime) && (toTime == null || closeTime <= toTime);
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryQuery{" +
+                "fromTime=" + fromTime +
+                ", toTime=" + toTime +
+                ", fromTicket=" + fromTicket +
+                ", toTicket=" + toTicket +
+                ", limit=" + limit +
+                '}';
+    }
+}
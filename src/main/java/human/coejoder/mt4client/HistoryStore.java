@@ -0,0 +1,541 @@
+package human.coejoder.mt4client;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntBinaryOperator;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A local copy of the closed orders in the Account History tab, kept in a compact binary file.
+ * <p>
+ * Each {@link #sync(MT4Client) sync} asks the server only for the orders which closed at or after the latest close
+ * time already stored, and appends those it doesn't already have.  A server which ignores the close time filter is
+ * asked for the orders with a greater ticket number than the latest stored one instead, so an order which was opened
+ * before a sync but closed after it is then missed.  Reads are served from the file, which is memory-mapped once per
+ * sync which added to it, and indexed in memory by ticket number and by close time.
+ * <p>
+ * The file holds a header followed by one variable-length record per order.  The header's record count and data
+ * length are only updated once the records they cover are written to disk, so a sync which is interrupted leaves the
+ * store as it was before.  Times are stored to the second, so the open, close and expiration times of the orders read
+ * back are always formatted as <code>TimeToStr(time, TIME_DATE|TIME_SECONDS)</code>, unless they were missing.
+ * <p>
+ * Java can't unmap a file explicitly, so a mapping is only released once it is garbage collected, after it is
+ * replaced by a larger one and after the store is closed.  Until then, some platforms (e.g. Windows) won't let the
+ * file be deleted or truncated.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @see MT4Client#streamOrdersHistorical(HistoryQuery)
+ */
+public class HistoryStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x4D543448; // "MT4H"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int FIXED_RECORD_SIZE = 4 + 3 * 4 + 11 * 8;
+    private static final int TICKET_OFFSET = 4;
+    private static final int CLOSE_TIME_OFFSET = 48;
+    private static final int NULL_STRING = 0xFFFF;
+    private static final int MAX_STRING_LENGTH = NULL_STRING - 1;
+    private static final long NULL_TIME = Long.MIN_VALUE;
+
+    private final FileChannel channel;
+    private MappedByteBuffer map;
+    private int count;
+    private int end;
+    private int[] offsets = new int[16];
+    private int[] tickets = new int[16];
+    private long[] closeTimes = new long[16];
+    private int[] byTicket = new int[16];
+    private int[] byCloseTime = new int[16];
+    private Boolean fromTimeIgnored;
+
+    /**
+     * Constructor.  Open the store, creating it if the file doesn't exist, and index its records.
+     *
+     * @param file The store file.
+     * @throws IOException If the file can't be opened, or isn't a history store.
+     */
+    public HistoryStore(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            if (channel.size() == 0) {
+                writeHeader(0, HEADER_SIZE);
+                count = 0;
+                end = HEADER_SIZE;
+            }
+            else {
+                readHeader(file);
+            }
+
+            // discard any records left by an interrupted sync
+            if (channel.size() > end) {
+                channel.truncate(end);
+            }
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+            int offset = HEADER_SIZE;
+            int indexed = count;
+            count = 0;
+            for (int i = 0; i < indexed; i++) {
+                index(offset, map.getInt(offset + TICKET_OFFSET), map.getLong(offset + CLOSE_TIME_OFFSET));
+                offset += map.getInt(offset);
+            }
+            sortIndex(0);
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Fetch the orders which were closed since the last sync and append them to the store.
+     *
+     * @param mt4 The client.
+     * @return The number of orders added.
+     * @throws IOException  If a response fails to parse, or the store can't be written.
+     * @throws MT4Exception If server had an error.
+     */
+    public synchronized int sync(MT4Client mt4) throws IOException, MT4Exception {
+        HistoryQuery query = count == 0 ? HistoryQuery.Builder.newInstance().build() : newOrdersQuery(mt4);
+        List<Order> pending = new ArrayList<>();
+        int added = 0;
+        try {
+            Iterator<Order> orders = mt4.streamOrdersHistorical(query).iterator();
+            while (orders.hasNext()) {
+                Order order = orders.next();
+                if (order.getCloseTimeSeconds() != 0 && find(order.getTicket()) < 0) {
+                    pending.add(order);
+                }
+                if (pending.size() == MT4Client.DEFAULT_HISTORY_PAGE_SIZE) {
+                    added += append(pending);
+                    pending.clear();
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            Exception failure = e;
+            if (e instanceof UncheckedIOException) {
+                failure = ((UncheckedIOException) e).getCause();
+            }
+            else if (e instanceof IllegalStateException && e.getCause() instanceof MT4Exception) {
+                failure = (MT4Exception) e.getCause();
+            }
+
+            // keep whatever was fetched before the failure, without masking it
+            try {
+                append(pending);
+            }
+            catch (IOException | RuntimeException appendFailure) {
+                failure.addSuppressed(appendFailure);
+            }
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof MT4Exception) {
+                throw (MT4Exception) failure;
+            }
+            throw e;
+        }
+        return added + append(pending);
+    }
+
+    /**
+     * Build the query for the orders which closed since the last sync, or if the server ignores the close time filter,
+     * for those with a greater ticket number than the latest stored one.  Whether it does is learned from the first
+     * order it returns for the filter, once per store.
+     *
+     * @param mt4 The client.
+     * @return The query.
+     * @throws IOException  If a response fails to parse.
+     * @throws MT4Exception If server had an error.
+     */
+    private HistoryQuery newOrdersQuery(MT4Client mt4) throws IOException, MT4Exception {
+        // orders which closed in the same second as the latest stored one may not all have been seen
+        long fromTime = getLastCloseTime();
+        if (fromTimeIgnored == null) {
+            HistoryQuery probe = HistoryQuery.Builder.newInstance()
+                    .setFromTime(fromTime)
+                    .setLimit(1)
+                    .build();
+            Iterator<Order> orders = mt4.getResponseElements(mt4.buildHistoricalOrdersRequest(probe), Order.class);
+            try {
+                fromTimeIgnored = orders.hasNext() && orders.next().getCloseTimeSeconds() < fromTime;
+            }
+            catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            catch (IllegalStateException e) {
+                if (e.getCause() instanceof MT4Exception) {
+                    throw (MT4Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+        HistoryQuery.Builder query = HistoryQuery.Builder.newInstance();
+        return fromTimeIgnored ? query.setFromTicket(getLastTicket() + 1).build() : query.setFromTime(fromTime).build();
+    }
+
+    /**
+     * Append orders to the store.
+     *
+     * @param orders The closed orders, none of which may already be stored.
+     * @return The number of orders added.
+     * @throws IOException If the store can't be written.
+     */
+    synchronized int append(List<Order> orders) throws IOException {
+        List<byte[]> records = new ArrayList<>(orders.size());
+        long length = 0;
+        for (Order order : orders) {
+            byte[] record = encode(order);
+            records.add(record);
+            length += record.length;
+        }
+        if (records.isEmpty()) {
+            return 0;
+        }
+        if (end + length > Integer.MAX_VALUE) {
+            throw new IOException("History store is full.");
+        }
+
+        // write the records, then commit them by updating the header
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        records.forEach(buffer::put);
+        buffer.flip();
+        int position = end;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        channel.force(false);
+        writeHeader(count + records.size(), position);
+        channel.force(false);
+
+        // the records are mapped when they are first read
+        int sorted = count;
+        int offset = end;
+        for (int i = 0; i < records.size(); i++) {
+            Order order = orders.get(i);
+            index(offset, order.getTicket(), order.getCloseTimeSeconds());
+            offset += records.get(i).length;
+        }
+        end = position;
+        sortIndex(sorted);
+        return records.size();
+    }
+
+    /**
+     * @return The number of orders in the store.
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @return The latest close time in the store, in seconds since 1970.01.01, or 0 if it is empty.
+     */
+    public synchronized long getLastCloseTime() {
+        return count == 0 ? 0 : closeTimes[byCloseTime[count - 1]];
+    }
+
+    /**
+     * @return The greatest ticket number in the store, or 0 if it is empty.
+     */
+    public synchronized int getLastTicket() {
+        return count == 0 ? 0 : tickets[byTicket[count - 1]];
+    }
+
+    /**
+     * Get a stored order.
+     *
+     * @param ticket The order ticket number.
+     * @return The order, or empty if it isn't stored.
+     */
+    public synchronized Optional<Order> get(int ticket) {
+        int i = find(ticket);
+        return i < 0 ? Optional.empty() : Optional.of(decode(offsets[byTicket[i]]));
+    }
+
+    /**
+     * Get the stored orders which were closed within a time range.
+     *
+     * @param fromTime The earliest close time, in seconds since 1970.01.01.
+     * @param toTime   The latest close time, in seconds since 1970.01.01.
+     * @return The orders, in ascending close time order.
+     */
+    public synchronized List<Order> getByCloseTime(long fromTime, long toTime) {
+        List<Order> orders = new ArrayList<>();
+        for (int i = firstClosedAt(fromTime); i < count && closeTimes[byCloseTime[i]] <= toTime; i++) {
+            orders.add(decode(offsets[byCloseTime[i]]));
+        }
+        return orders;
+    }
+
+    /**
+     * Close the store file, and drop the mapping of it so that it can be garbage collected.
+     *
+     * @throws IOException If the file fails to close.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        map = null;
+        channel.close();
+    }
+
+    private void readHeader(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("Not a history store: " + file);
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a history store: " + file);
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported history store version " + version + ": " + file);
+        }
+        count = header.getInt();
+        end = header.getInt();
+        if (count < 0 || end < HEADER_SIZE || end > channel.size()) {
+            throw new IOException("History store is corrupt: " + file);
+        }
+    }
+
+    private void writeHeader(int count, int end) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(count)
+                .putInt(end);
+        header.flip();
+        int position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+
+    /**
+     * Add a record to the index, which must be sorted afterwards.
+     *
+     * @param offset    The offset of the record.
+     * @param ticket    The ticket number of its order.
+     * @param closeTime The close time of its order.
+     */
+    private void index(int offset, int ticket, long closeTime) {
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            tickets = Arrays.copyOf(tickets, count * 2);
+            closeTimes = Arrays.copyOf(closeTimes, count * 2);
+            byTicket = Arrays.copyOf(byTicket, count * 2);
+            byCloseTime = Arrays.copyOf(byCloseTime, count * 2);
+        }
+        offsets[count] = offset;
+        tickets[count] = ticket;
+        closeTimes[count] = closeTime;
+        count++;
+    }
+
+    /**
+     * Sort the records indexed since the last sort, and merge them into the sorted indexes.
+     *
+     * @param sorted The number of records already in the sorted indexes.
+     */
+    private void sortIndex(int sorted) {
+        int[] added = IntStream.range(sorted, count).toArray();
+        int[] buffer = new int[added.length];
+        IntBinaryOperator byTicketOrder = (a, b) -> Integer.compare(tickets[a], tickets[b]);
+        IntBinaryOperator byCloseTimeOrder = (a, b) -> closeTimes[a] != closeTimes[b]
+                ? Long.compare(closeTimes[a], closeTimes[b])
+                : Integer.compare(tickets[a], tickets[b]);
+        sort(added, buffer, 0, added.length, byTicketOrder);
+        merge(byTicket, sorted, added, byTicketOrder);
+        sort(added, buffer, 0, added.length, byCloseTimeOrder);
+        merge(byCloseTime, sorted, added, byCloseTimeOrder);
+    }
+
+    /**
+     * Merge sort a range of record numbers.
+     */
+    private static void sort(int[] records, int[] buffer, int from, int to, IntBinaryOperator order) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        sort(records, buffer, from, mid, order);
+        sort(records, buffer, mid, to, order);
+        System.arraycopy(records, from, buffer, from, to - from);
+        for (int i = from, j = mid, k = from; k < to; k++) {
+            boolean left = j == to || (i < mid && order.applyAsInt(buffer[i], buffer[j]) <= 0);
+            records[k] = left ? buffer[i++] : buffer[j++];
+        }
+    }
+
+    /**
+     * Merge sorted record numbers into a sorted index, in place from the back.
+     *
+     * @param index  The index, with room for the added records after its first <code>sorted</code> elements.
+     * @param sorted The number of records in the index.
+     * @param added  The records to add, sorted in the same order.
+     */
+    private static void merge(int[] index, int sorted, int[] added, IntBinaryOperator order) {
+        int i = sorted - 1;
+        for (int j = added.length - 1, k = sorted + j; j >= 0; k--) {
+            index[k] = i >= 0 && order.applyAsInt(index[i], added[j]) > 0 ? index[i--] : added[j--];
+        }
+    }
+
+    /**
+     * @param ticket An order ticket number.
+     * @return The position of the ticket in {@link #byTicket}, or a negative number if it isn't stored.
+     */
+    private int find(int ticket) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midTicket = tickets[byTicket[mid]];
+            if (midTicket < ticket) {
+                low = mid + 1;
+            }
+            else if (midTicket > ticket) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param time A close time.
+     * @return The position in {@link #byCloseTime} of the first order closed at or after the time.
+     */
+    private int firstClosedAt(long time) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (closeTimes[byCloseTime[mid]] < time) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Encode an order as a record.  The ticket number and close time are at fixed offsets, so that the index can be
+     * built without decoding the rest.
+     */
+    private static byte[] encode(Order order) {
+        byte[] symbol = bytes(order.getSymbol());
+        byte[] comment = bytes(order.getComment());
+        int length = FIXED_RECORD_SIZE + 2 + symbol.length + 2 + comment.length;
+        return ByteBuffer.allocate(length)
+                .putInt(length)
+                .putInt(order.getTicket())
+                .putInt(order.getMagicNumber())
+                .putInt(order.getOrderType().id)
+                .putLong(seconds(order.getOpenTime()))
+                .putLong(seconds(order.getExpiration()))
+                .putDouble(order.getLots())
+                .putDouble(order.getOpenPrice())
+                .putLong(order.getCloseTimeSeconds())
+                .putDouble(order.getClosePrice())
+                .putDouble(order.getSl())
+                .putDouble(order.getTp())
+                .putDouble(order.getProfit())
+                .putDouble(order.getCommission())
+                .putDouble(order.getSwap())
+                .putShort((short) (order.getSymbol() == null ? NULL_STRING : symbol.length))
+                .put(symbol)
+                .putShort((short) (order.getComment() == null ? NULL_STRING : comment.length))
+                .put(comment)
+                .array();
+    }
+
+    private Order decode(int offset) {
+        ByteBuffer record = mapped().duplicate();
+        record.position(offset + TICKET_OFFSET);
+        int ticket = record.getInt();
+        int magicNumber = record.getInt();
+        int orderType = record.getInt();
+        String openTime = time(record.getLong());
+        String expiration = time(record.getLong());
+        double lots = record.getDouble();
+        double openPrice = record.getDouble();
+        String closeTime = Order.toTimeString(record.getLong());
+        double closePrice = record.getDouble();
+        double sl = record.getDouble();
+        double tp = record.getDouble();
+        double profit = record.getDouble();
+        double commission = record.getDouble();
+        double swap = record.getDouble();
+        String symbol = string(record);
+        String comment = string(record);
+        return new Order(ticket, magicNumber, symbol, orderType, lots, openPrice, closePrice, openTime, closeTime,
+                expiration, sl, tp, profit, commission, swap, comment);
+    }
+
+    /**
+     * @return The mapping of the file up to its last record, which is remapped if records were added since.
+     */
+    private MappedByteBuffer mapped() {
+        if (!channel.isOpen()) {
+            throw new IllegalStateException("History store is closed.");
+        }
+        if (map == null || map.capacity() < end) {
+            try {
+                map = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return map;
+    }
+
+    private static long seconds(String time) {
+        return time == null ? NULL_TIME : Order.toSeconds(time);
+    }
+
+    private static String time(long seconds) {
+        return seconds == NULL_TIME ? null : Order.toTimeString(seconds);
+    }
+
+    private static byte[] bytes(String value) {
+        byte[] bytes = value == null ? new byte[0] : value.getBytes(UTF_8);
+        if (bytes.length > MAX_STRING_LENGTH) {
+            throw new IllegalArgumentException("String is too long to store: " + value);
+        }
+        return bytes;
+    }
+
+    private static String string(ByteBuffer record) {
+        int length = Short.toUnsignedInt(record.getShort());
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -1,5 +1,6 @@
 package human.coejoder.mt4client;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 
@@ -725,10 +726,37 @@ public class Indicator {
 
     private final String name;
     private final ArrayNode arguments;
+    private volatile RequestTemplate defaultRequest;
 
+    /**
+     * Constructor.
+     *
+     * @param name      The name of the indicator function.
+     * @param arguments The arguments of the function.  They are copied, so later changes to the given node don't
+     *                  affect this indicator.
+     */
     public Indicator(String name, ArrayNode arguments) {
         this.name = name;
-        this.arguments = arguments;
+        this.arguments = arguments.deepCopy();
+    }
+
+    /**
+     * Get a request to run this indicator.  The request with the {@link MT4Client#DEFAULT_INDICATOR_TIMEOUT default
+     * timeout} is built once and reused.
+     *
+     * @param timeout The maximum milliseconds to wait for the symbol's chart data to load.
+     * @return The request template.
+     */
+    RequestTemplate getRequest(int timeout) {
+        if (timeout != MT4Client.DEFAULT_INDICATOR_TIMEOUT) {
+            return new RequestTemplate(MT4Client.buildIndicatorRequest(this, timeout));
+        }
+        RequestTemplate request = defaultRequest;
+        if (request == null) {
+            request = new RequestTemplate(MT4Client.buildIndicatorRequest(this, timeout));
+            defaultRequest = request;
+        }
+        return request;
     }
 
     String getName() {
@@ -738,4 +766,50 @@ public class Indicator {
     ArrayNode getArguments() {
         return arguments;
     }
+
+    /**
+     * @return The symbol, the first argument of every built-in indicator, or null for the current chart's symbol.
+     */
+    String getSymbol() {
+        JsonNode symbol = arguments.get(0);
+        return symbol != null && symbol.isTextual() ? symbol.asText() : null;
+    }
+
+    /**
+     * @return The timeframe in minutes, the second argument of every built-in indicator, or 0 if it isn't set.
+     */
+    int getTimeframeMinutes() {
+        JsonNode timeframe = arguments.get(1);
+        return timeframe != null && timeframe.canConvertToInt() ? timeframe.asInt() : 0;
+    }
+
+    /**
+     * @return The shift, the last argument of every built-in indicator, or -1 if it isn't set.
+     */
+    long getShift() {
+        JsonNode shift = arguments.size() < 3 ? null : arguments.get(arguments.size() - 1);
+        return shift != null && shift.isIntegralNumber() ? shift.asLong() : -1;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Indicator)) {
+            return false;
+        }
+        Indicator indicator = (Indicator) o;
+        return name.equals(indicator.name) && arguments.equals(indicator.arguments);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * name.hashCode() + arguments.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name + arguments;
+    }
 }
@@ -0,0 +1,416 @@
+package human.coejoder.mt4client;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A cache of the results of built-in indicator functions on closed bars, so that an {@link Indicator} which is run
+ * repeatedly within the same bar is computed by the terminal only once.
+ * <p>
+ * The result of an indicator whose shift is 1 or more is computed from bars which are already closed, so it can't
+ * change until the current bar of its timeframe closes and the shift refers to another bar.  Such results are cached
+ * with the open time of the current bar, and are no longer served once a new bar opens.  Results at shift 0, which
+ * change with every tick, and of indicators on {@link StandardTimeframe#PERIOD_CURRENT the current timeframe} or
+ * symbol, are never cached.  Indicators are equal if their functions and arguments are equal.
+ * <p>
+ * The current bar is predicted from the clock: bars open on multiples of their timeframe in the server's time zone,
+ * with weeks starting on Sunday and months on the first, and the server's {@link Builder#setServerTimeOffset(long,
+ * TimeUnit) offset} from UTC must be set for daily and longer timeframes.  The prediction may be wrong, as the server
+ * forms a new bar only when its first tick arrives, and brokers' offsets change with daylight saving time.  So before
+ * results of a symbol and timeframe are cached in a bar, the client checks that the server's current bar opened at
+ * the predicted time.  Until it has, e.g. early in a bar or on an illiquid symbol, results are run but not cached, and
+ * the check is repeated at most every {@value #BAR_RECHECK_MILLIS} milliseconds.  When the cache is full, the least
+ * recently used result is evicted.
+ * <p>
+ * This class is thread-safe, and may be shared by any number of clients.
+ *
+ * @see MT4Client#setIndicatorCache(IndicatorCache)
+ */
+public class IndicatorCache {
+
+    static final int DEFAULT_MAX_SIZE = 10000;
+    static final long BAR_RECHECK_MILLIS = 60_000;
+
+    private static final long MINUTE_SECONDS = TimeUnit.MINUTES.toSeconds(1);
+    private static final int WEEK_MINUTES = StandardTimeframe.PERIOD_W1.minutes;
+    private static final int MONTH_MINUTES = StandardTimeframe.PERIOD_MN1.minutes;
+    // 1970.01.01 was a Thursday, so the first week starting on Sunday started 3 days later
+    private static final long WEEK_START_OFFSET_SECONDS = TimeUnit.DAYS.toSeconds(3);
+
+    public static class Builder {
+        private int maxSize = DEFAULT_MAX_SIZE;
+        private long serverTimeOffsetSeconds;
+        private LongSupplier clock = System::currentTimeMillis;
+
+        private Builder() {}
+
+        /**
+         * Construct an indicator cache builder.
+         *
+         * @return The indicator cache builder instance.
+         */
+        public static Builder newInstance() {
+            return new Builder();
+        }
+
+        /**
+         * Build the indicator cache instance.
+         *
+         * @return The indicator cache.
+         */
+        public IndicatorCache build() {
+            return new IndicatorCache(this);
+        }
+
+        /**
+         * @param maxSize The maximum number of cached results.  Must be positive.
+         * @return This Builder.
+         */
+        public Builder setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @param offset The server's time minus UTC, e.g. 2 hours for a server on GMT+2.
+         * @param unit   The time unit of the offset.
+         * @return This Builder.
+         */
+        public Builder setServerTimeOffset(long offset, TimeUnit unit) {
+            this.serverTimeOffsetSeconds = unit.toSeconds(offset);
+            return this;
+        }
+
+        /**
+         * @param clock The current time, in milliseconds since 1970.01.01 UTC.
+         * @return This Builder.
+         */
+        Builder setClock(LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+    }
+
+    /**
+     * The cached results of several indicators which are run together, and the indicators which must still be run.
+     */
+    final class Batch {
+        private final List<Double> values;
+        private final int[] missing;
+        private final List<Indicator> misses;
+
+        private Batch(List<Indicator> funcs) {
+            this.values = new ArrayList<>(funcs.size());
+            int[] missing = new int[funcs.size()];
+            this.misses = new ArrayList<>();
+            for (int i = 0; i < funcs.size(); i++) {
+                Double value = get(funcs.get(i));
+                values.add(value);
+                if (value == null) {
+                    missing[misses.size()] = i;
+                    misses.add(funcs.get(i));
+                }
+            }
+            this.missing = missing;
+        }
+
+        /**
+         * @return The indicators without a cached result, which must be run.
+         */
+        List<Indicator> getMisses() {
+            return misses;
+        }
+
+        /**
+         * Cache the results of the indicators which were run, and combine them with the cached results.
+         *
+         * @param fetched The results of {@link #getMisses()}, in the same order.
+         * @return The results of every indicator in the batch.
+         */
+        BatchResults<Double> complete(BatchResults<Double> fetched) {
+            List<MT4Exception> errors = new ArrayList<>(Collections.nCopies(values.size(), null));
+            for (int i = 0; i < misses.size(); i++) {
+                int index = missing[i];
+                errors.set(index, fetched.getError(i));
+                values.set(index, fetched.getOrNull(i));
+                if (errors.get(index) == null) {
+                    put(misses.get(i), values.get(index));
+                }
+            }
+            return new BatchResults<>(values, errors);
+        }
+    }
+
+    private final int maxSize;
+    private final long serverTimeOffsetSeconds;
+    private final LongSupplier clock;
+    private final Map<Key, Double> results;
+    private final Map<String, BarCheck> barChecks = new HashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder unconfirmed = new LongAdder();
+
+    private IndicatorCache(Builder builder) {
+        // do some parameter validation
+        if (builder.maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive: " + builder.maxSize);
+        }
+        this.maxSize = builder.maxSize;
+        this.serverTimeOffsetSeconds = builder.serverTimeOffsetSeconds;
+        this.clock = builder.clock;
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Double> eldest) {
+                if (size() > IndicatorCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param func An indicator.
+     * @return Whether the result of the indicator is cached.
+     */
+    public static boolean isCacheable(Indicator func) {
+        return func.getShift() >= 1 && func.getTimeframeMinutes() > 0 && func.getSymbol() != null;
+    }
+
+    /**
+     * @param func An indicator.
+     * @return Whether the server's current bar of the indicator's symbol and timeframe must be checked before its
+     * result can be cached.
+     * @see #checkedBar(Indicator, long)
+     */
+    boolean needsBarCheck(Indicator func) {
+        if (!isCacheable(func)) {
+            return false;
+        }
+        long barOpenTime = barOpenTime(func.getTimeframeMinutes());
+        synchronized (barChecks) {
+            BarCheck check = barChecks.get(barKey(func));
+            return check == null || check.barOpenTime != barOpenTime
+                    || (!check.confirmed && clock.getAsLong() - check.checkedMillis >= BAR_RECHECK_MILLIS);
+        }
+    }
+
+    /**
+     * Record the server's current bar of an indicator's symbol and timeframe.  The check must be made before the
+     * indicator is run, so that a bar which forms in between can't be mistaken for the one the result was run on.
+     *
+     * @param func              The indicator.
+     * @param serverBarOpenTime The open time of the server's current bar, or -1 if it is unknown.
+     */
+    void checkedBar(Indicator func, long serverBarOpenTime) {
+        long barOpenTime = barOpenTime(func.getTimeframeMinutes());
+        synchronized (barChecks) {
+            barChecks.put(barKey(func), new BarCheck(barOpenTime, serverBarOpenTime == barOpenTime,
+                    clock.getAsLong()));
+        }
+    }
+
+    private boolean isConfirmed(Indicator func) {
+        long barOpenTime = barOpenTime(func.getTimeframeMinutes());
+        synchronized (barChecks) {
+            BarCheck check = barChecks.get(barKey(func));
+            return check != null && check.confirmed && check.barOpenTime == barOpenTime;
+        }
+    }
+
+    private static String barKey(Indicator func) {
+        return func.getSymbol() + '@' + func.getTimeframeMinutes();
+    }
+
+    /**
+     * Get the cached result of an indicator in the current bar.
+     *
+     * @param func The indicator.
+     * @return The result, or null if it isn't cached.
+     */
+    Double get(Indicator func) {
+        if (!isCacheable(func)) {
+            return null;
+        }
+        Key key = new Key(func, barOpenTime(func.getTimeframeMinutes()));
+        Double value;
+        synchronized (results) {
+            value = results.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+        }
+        else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Cache the result of an indicator in the current bar, if it is cacheable and the server's current bar was
+     * confirmed to be the predicted one.
+     *
+     * @param func  The indicator.
+     * @param value The result.
+     */
+    void put(Indicator func, double value) {
+        if (!isCacheable(func)) {
+            return;
+        }
+        if (!isConfirmed(func)) {
+            unconfirmed.increment();
+            return;
+        }
+        Key key = new Key(func, barOpenTime(func.getTimeframeMinutes()));
+        synchronized (results) {
+            results.put(key, value);
+        }
+    }
+
+    /**
+     * Look up the cached results of several indicators.
+     *
+     * @param funcs The indicators.
+     * @return The cached results, and the indicators which must still be run.
+     */
+    Batch batch(List<Indicator> funcs) {
+        return new Batch(funcs);
+    }
+
+    /**
+     * Get the open time of the current bar of a timeframe.
+     *
+     * @param minutes The timeframe in minutes.
+     * @return The bar's open time, in seconds since 1970.01.01 in the server's time zone.
+     */
+    long barOpenTime(int minutes) {
+        long now = Math.floorDiv(clock.getAsLong(), 1000) + serverTimeOffsetSeconds;
+        if (minutes == MONTH_MINUTES) {
+            LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochSecond(now), ZoneOffset.UTC);
+            return time.toLocalDate().withDayOfMonth(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        }
+        long period = minutes * MINUTE_SECONDS;
+        long offset = minutes == WEEK_MINUTES ? WEEK_START_OFFSET_SECONDS : 0;
+        return Math.floorDiv(now - offset, period) * period + offset;
+    }
+
+    /**
+     * Discard every cached result, and every check of the server's current bars.
+     */
+    public void invalidateAll() {
+        synchronized (results) {
+            results.clear();
+        }
+        synchronized (barChecks) {
+            barChecks.clear();
+        }
+    }
+
+    /**
+     * @return The number of cached results, including those of bars which have closed but were not yet evicted.
+     */
+    public int getSize() {
+        synchronized (results) {
+            return results.size();
+        }
+    }
+
+    /**
+     * @return The maximum number of cached results.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The number of results served from the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of cacheable results which were not cached.  Results which are never cached are not counted.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of results evicted to make room for others.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The number of cacheable results which were not cached, because the server's current bar was not yet
+     * the predicted one.
+     */
+    public long getUnconfirmed() {
+        return unconfirmed.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "IndicatorCache{" +
+                "size=" + getSize() +
+                ", maxSize=" + maxSize +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                ", unconfirmed=" + getUnconfirmed() +
+                '}';
+    }
+
+    private static final class BarCheck {
+        private final long barOpenTime;
+        private final boolean confirmed;
+        private final long checkedMillis;
+
+        private BarCheck(long barOpenTime, boolean confirmed, long checkedMillis) {
+            this.barOpenTime = barOpenTime;
+            this.confirmed = confirmed;
+            this.checkedMillis = checkedMillis;
+        }
+    }
+
+    private static final class Key {
+        private final Indicator func;
+        private final long barOpenTime;
+
+        private Key(Indicator func, long barOpenTime) {
+            this.func = func;
+            this.barOpenTime = barOpenTime;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return barOpenTime == key.barOpenTime && func.equals(key.func);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * func.hashCode() + Long.hashCode(barOpenTime);
+        }
+    }
+}
@@ -0,0 +1,680 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import static human.coejoder.mt4client.MT4Client.DEFAULT_CLOSE_IF_OPENED;
+import static human.coejoder.mt4client.MT4Client.DEFAULT_INDICATOR_TIMEOUT;
+import static human.coejoder.mt4client.MT4Client.DEFAULT_REQUEST_TIMEOUT_MILLIS;
+import static human.coejoder.mt4client.MT4Client.DEFAULT_RESPONSE_TIMEOUT_MILLIS;
+import static human.coejoder.mt4client.MT4Client.LIST_OF_OHLCV;
+import static human.coejoder.mt4client.MT4Client.LIST_OF_ORDERS;
+import static human.coejoder.mt4client.MT4Client.LIST_OF_STRINGS;
+import static human.coejoder.mt4client.MT4Client.MAP_OF_SIGNALS;
+import static human.coejoder.mt4client.MT4Client.MAP_OF_SYMBOLS;
+import static human.coejoder.mt4client.MT4Client.MAP_OF_TICKS;
+
+/**
+ * An asynchronous client for the MT4 server.
+ * <p>
+ * Unlike {@link MT4Client}, requests are sent over a DEALER socket without waiting for the previous response, so any
+ * number of requests may be in flight at once.  Responses are matched to requests by {@link Request#REQUEST_ID request
+ * id} if the server echoes it, and otherwise in request order.  Identical {@link Request#isReadOnly() read-only}
+ * requests made while one of them is in flight share its response, whichever thread makes them.
+ * <p>
+ * Every operation returns a {@link CompletableFuture} which completes with the response, or exceptionally with an
+ * {@link MT4Exception} if the server had an error, a {@link JsonProcessingException} if the response fails to parse,
+ * or a {@link java.util.concurrent.TimeoutException} if the request could not be sent or was not answered in time.
+ * <p>
+ * This class is thread-safe.  Query interfaces returned by it (e.g. {@link Account}, {@link Symbol}) make their own
+ * requests over the same connection, and are thread-safe as well.
+ */
+public class MT4AsyncClient implements AutoCloseable {
+
+    private final DealerConnection connection;
+    private final MT4Client mt4;
+    private final Executor executor;
+
+    /**
+     * Constructor.  Initialize the DEALER socket and connect to the MT4 server.
+     *
+     * @param address           The address of the server's listening socket.
+     * @param requestTimeoutMs  The number of milliseconds to wait for a request to be sent.
+     * @param responseTimeoutMs The number of milliseconds to wait for a response to be received.
+     * @param executor          The executor on which responses are parsed and futures are completed.
+     */
+    public MT4AsyncClient(String address, int requestTimeoutMs, int responseTimeoutMs, Executor executor) {
+        this.connection = new DealerConnection(address, requestTimeoutMs, responseTimeoutMs);
+        this.mt4 = new MT4Client(connection);
+        this.executor = executor;
+    }
+
+    /**
+     * Constructor.  Initialize the DEALER socket, connect to the MT4 server and ask it to switch to the given wire
+     * codec.  If the server doesn't support the codec, the client keeps using JSON.
+     *
+     * @param address           The address of the server's listening socket.
+     * @param requestTimeoutMs  The number of milliseconds to wait for a request to be sent.
+     * @param responseTimeoutMs The number of milliseconds to wait for a response to be received.
+     * @param codec             The preferred wire codec.
+     * @param executor          The executor on which responses are parsed and futures are completed.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @see #getCodec()
+     */
+    public MT4AsyncClient(String address, int requestTimeoutMs, int responseTimeoutMs, WireCodec codec,
+                          Executor executor) throws JsonProcessingException {
+        this(address, requestTimeoutMs, responseTimeoutMs, executor);
+        mt4.negotiateCodec(codec);
+    }
+
+    /**
+     * Constructor.  Responses are parsed on the {@link ForkJoinPool#commonPool() common pool}, or on Java 21 and later,
+     * each on its own virtual thread.
+     *
+     * @see #MT4AsyncClient(String, int, int, Executor)
+     */
+    public MT4AsyncClient(String address, int requestTimeoutMs, int responseTimeoutMs) {
+        this(address, requestTimeoutMs, responseTimeoutMs, Threads.defaultExecutor());
+    }
+
+    /**
+     * Constructor.  Uses a default request timeout and a default response timeout.
+     *
+     * @see #MT4AsyncClient(String, int, int)
+     */
+    public MT4AsyncClient(String address) {
+        this(address, DEFAULT_REQUEST_TIMEOUT_MILLIS, DEFAULT_RESPONSE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Get the wire codec agreed with the server.
+     *
+     * @return The wire codec.
+     */
+    public WireCodec getCodec() {
+        return mt4.getCodec();
+    }
+
+    /**
+     * Get a blocking client which shares this client's connection.
+     * <p>
+     * Unlike a standalone {@link MT4Client}, the blocking client may be called from any number of threads at once.
+     * Each call hands its request to the I/O thread and waits on a future for the response, so a virtual thread parks
+     * and frees its carrier rather than blocking inside the socket.  Tens of thousands of virtual threads may thus
+     * share one connection, served by a single I/O thread.
+     * <p>
+     * A call whose request could not be sent or was not answered in time throws an {@link MT4TimeoutException}.
+     * Closing either client closes the connection.
+     *
+     * @return The blocking client.
+     */
+    public MT4Client blocking() {
+        return mt4;
+    }
+
+    /**
+     * Capture a sample of this client's exchanges with the server, and every exchange which fails.  This includes the
+     * exchanges of query interfaces returned by this client.
+     *
+     * @param capture The wire capture, or null to stop capturing.
+     */
+    public void setWireCapture(WireCapture capture) {
+        mt4.setWireCapture(capture);
+    }
+
+    /**
+     * Serve the properties queried through the {@link Symbol Symbols} of this client from a cache, according to its
+     * freshness policies.
+     *
+     * @param cache The symbol info cache, or null to request every property from the server.
+     */
+    public void setSymbolInfoCache(SymbolInfoCache cache) {
+        mt4.setSymbolInfoCache(cache);
+    }
+
+    /**
+     * Serve the results of indicators on closed bars from a cache, until their timeframe's current bar closes.
+     *
+     * @param cache The indicator cache, or null to run every indicator on the server.
+     */
+    public void setIndicatorCache(IndicatorCache cache) {
+        mt4.setIndicatorCache(cache);
+    }
+
+    /**
+     * Serve the property values queried through the {@link Account} of this client from a cache, until this client
+     * trades or the prices of its open positions move.
+     *
+     * @param cache The account cache, or null to request every property from the server.
+     */
+    public void setAccountCache(AccountCache cache) {
+        mt4.setAccountCache(cache);
+    }
+
+    /**
+     * Enable or disable sharing the response of a {@link Request#isReadOnly() read-only} request in flight with
+     * identical requests made before it completes.  Enabled by default.  Requests which change anything, such as
+     * {@link #orderSend(NewOrder)}, are never shared.
+     *
+     * @param singleFlight Whether to share responses.
+     */
+    public void setSingleFlight(boolean singleFlight) {
+        connection.setSingleFlight(singleFlight);
+    }
+
+    /**
+     * @return The number of requests which shared the response of an identical request in flight rather than being
+     * sent.
+     */
+    public long getCoalescedRequests() {
+        return connection.getCoalesced();
+    }
+
+    /**
+     * Disconnect from the server.  Any requests still in flight complete exceptionally.
+     */
+    public void shutdown() {
+        connection.close();
+    }
+
+    @Override
+    public void close() {
+        shutdown();
+    }
+
+    /**
+     * Get a query interface for the account details.
+     *
+     * @return The {@link Account} object.
+     */
+    public CompletableFuture<Account> getAccount() {
+        return submit(Request.GET_ACCOUNT_INFO.build(), Account.class);
+    }
+
+    /**
+     * Get the names of market symbols supported by the broker.
+     *
+     * @return A list of symbol names.
+     */
+    public CompletableFuture<List<String>> getSymbolNames() {
+        return submit(Request.GET_SYMBOLS.build(), LIST_OF_STRINGS);
+    }
+
+    /**
+     * Get query interfaces for market symbols.
+     *
+     * @param names The names of the symbols.
+     * @return A name-to-{@link Symbol} map.
+     */
+    public CompletableFuture<Map<String, Symbol>> getSymbols(String... names) {
+        if (names.length == 0) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+        return submit(MT4Client.buildSymbolsRequest(names), MAP_OF_SYMBOLS)
+                .thenApply(Collections::unmodifiableMap);
+    }
+
+    /**
+     * Get a query interface for a market symbol.
+     *
+     * @param name The name of the symbol.
+     * @return The {@link Symbol}.
+     */
+    public CompletableFuture<Symbol> getSymbol(String name) {
+        return getSymbols(name).thenApply(symbols -> symbols.get(name));
+    }
+
+    /**
+     * Get the latest market prices of a symbol.
+     *
+     * @param symbol The name of the symbol.
+     * @return The latest symbol tick.
+     */
+    public CompletableFuture<SymbolTick> getTick(String symbol) {
+        return submit(MT4Client.buildSymbolTickRequest(symbol), SymbolTick.class).thenApply(tick -> {
+            mt4.observeTick(symbol, tick.bid, tick.ask);
+            return tick;
+        });
+    }
+
+    /**
+     * Get the latest market prices of several symbols in a single request.
+     *
+     * @param symbols The names of the symbols.
+     * @return A name-to-{@link SymbolTick} map.
+     */
+    public CompletableFuture<Map<String, SymbolTick>> getTicks(String... symbols) {
+        if (symbols.length == 0) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+        return submit(MT4Client.buildSymbolTicksRequest(symbols), MAP_OF_TICKS)
+                .thenApply(mt4::observeTicks)
+                .thenApply(Collections::unmodifiableMap);
+    }
+
+    /**
+     * Get the names of all trading signals.
+     *
+     * @return A list of names of the available signals.
+     */
+    public CompletableFuture<List<String>> getSignalNames() {
+        return submit(Request.GET_SIGNALS.build(), LIST_OF_STRINGS);
+    }
+
+    /**
+     * Get the list of last limit OHLCV data.
+     *
+     * @param symbol    The market symbol.
+     * @param timeframe The width of the bars, in minutes. Use a standard timeframe for a better chance of the broker's
+     *                  server responding successfully.
+     * @param limit     The maximum number of bars to return.
+     * @param timeout   The timeout in milliseconds to wait for the broker's server to return the data.
+     * @return A list of OHLCV data objects.
+     */
+    public CompletableFuture<List<OHLCV>> getOHLCV(String symbol, Timeframe timeframe, long limit, long timeout) {
+        return submit(MT4Client.buildOHLCVRequest(symbol, timeframe, limit, timeout), LIST_OF_OHLCV);
+    }
+
+    /**
+     * Get data for multiple trading signals.
+     *
+     * @param names The names of the signals.
+     * @return A name-to-{@link Signal} map.
+     */
+    public CompletableFuture<Map<String, Signal>> getSignals(String... names) {
+        if (names.length == 0) {
+            return CompletableFuture.completedFuture(Collections.emptyMap());
+        }
+        return submit(MT4Client.buildSignalsRequest(names), MAP_OF_SIGNALS)
+                .thenApply(Collections::unmodifiableMap);
+    }
+
+    /**
+     * Get data for a trading signal.
+     *
+     * @param name The name of the signal.
+     * @return The signal object.
+     */
+    public CompletableFuture<Signal> getSignal(String name) {
+        return getSignals(name).thenApply(signals -> signals.get(name));
+    }
+
+    /**
+     * Run a built-in indicator function, waiting at most {@value MT4Client#DEFAULT_INDICATOR_TIMEOUT} milliseconds for
+     * symbol's chart data to load.
+     *
+     * @param func The {@link Indicator} to run.
+     * @return The numeric result.
+     * @see <a href="https://docs.mql4.com/indicators">https://docs.mql4.com/indicators</a>
+     */
+    public CompletableFuture<Double> runIndicator(Indicator func) {
+        return runIndicator(func, DEFAULT_INDICATOR_TIMEOUT);
+    }
+
+    /**
+     * Run a built-in indicator function.
+     *
+     * @param func    The {@link Indicator} to run.
+     * @param timeout The maximum milliseconds to wait for the symbol's chart data to load.
+     * @return The numeric result.
+     * @see <a href="https://docs.mql4.com/indicators">https://docs.mql4.com/indicators</a>
+     */
+    public CompletableFuture<Double> runIndicator(Indicator func, int timeout) {
+        IndicatorCache cache = mt4.getIndicatorCache();
+        if (cache == null) {
+            return submit(func.getRequest(timeout), double.class);
+        }
+        Double cached = cache.get(func);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<Void> barCheck = CompletableFuture.completedFuture(null);
+        if (cache.needsBarCheck(func)) {
+            // a check which fails leaves the result uncached
+            barCheck = this.<List<OHLCV>>submit(MT4Client.buildBarCheckRequest(func, timeout), LIST_OF_OHLCV)
+                    .handle((bars, e) -> {
+                        cache.checkedBar(func, MT4Client.lastBarOpenTime(bars));
+                        return null;
+                    });
+        }
+        return barCheck.thenCompose(checked -> this.<Double>submit(func.getRequest(timeout), double.class))
+                .thenApply(value -> {
+                    cache.put(func, value);
+                    return value;
+                });
+    }
+
+    /**
+     * Run a built-in indicator function over a range of shifts in a single request, waiting at most {@value
+     * MT4Client#DEFAULT_INDICATOR_TIMEOUT} milliseconds for symbol's chart data to load.
+     *
+     * @param template  The {@link Indicator} to run.  Its shift, the last argument, is ignored.
+     * @param fromShift The first shift.
+     * @param count     The number of shifts.
+     * @return The numeric results, where element <code>i</code> is the result at shift <code>fromShift + i</code>.
+     * @see <a href="https://docs.mql4.com/indicators">https://docs.mql4.com/indicators</a>
+     */
+    public CompletableFuture<double[]> runIndicatorSeries(Indicator template, int fromShift, int count) {
+        return runIndicatorSeries(template, fromShift, count, DEFAULT_INDICATOR_TIMEOUT);
+    }
+
+    /**
+     * Run a built-in indicator function over a range of shifts in a single request.
+     *
+     * @param template  The {@link Indicator} to run.  Its shift, the last argument, is ignored.
+     * @param fromShift The first shift.
+     * @param count     The number of shifts.
+     * @param timeout   The maximum milliseconds to wait for the symbol's chart data to load.
+     * @return The numeric results, where element <code>i</code> is the result at shift <code>fromShift + i</code>.
+     * @see <a href="https://docs.mql4.com/indicators">https://docs.mql4.com/indicators</a>
+     */
+    public CompletableFuture<double[]> runIndicatorSeries(Indicator template, int fromShift, int count,
+                                                          int timeout) {
+        ObjectNode request = MT4Client.buildIndicatorSeriesRequest(template, fromShift, count, timeout);
+        if (count == 0) {
+            return CompletableFuture.completedFuture(new double[0]);
+        }
+        return submit(request, double[].class).thenApply(series -> {
+            if (series.length != count) {
+                throw new IllegalStateException(String.format("Expected %d values but received %d.", count,
+                        series.length));
+            }
+            return series;
+        });
+    }
+
+    /**
+     * Run several built-in indicator functions, sending every request before waiting for any response, and waiting at
+     * most {@value MT4Client#DEFAULT_INDICATOR_TIMEOUT} milliseconds for each symbol's chart data to load.
+     *
+     * @param funcs The {@link Indicator Indicators} to run.
+     * @return The result of each indicator, in the same order.  An indicator which fails doesn't fail the others.
+     * @see <a href="https://docs.mql4.com/indicators">https://docs.mql4.com/indicators</a>
+     */
+    public CompletableFuture<BatchResults<Double>> runIndicators(List<Indicator> funcs) {
+        return runIndicators(funcs, DEFAULT_INDICATOR_TIMEOUT);
+    }
+
+    /**
+     * Run several built-in indicator functions, sending every request before waiting for any response.
+     *
+     * @param funcs   The {@link Indicator Indicators} to run.
+     * @param timeout The maximum milliseconds to wait for each symbol's chart data to load.
+     * @return The result of each indicator, in the same order.  An indicator which fails doesn't fail the others.
+     * @see #runIndicator(Indicator, int)
+     * @see <a href="https://docs.mql4.com/indicators">https://docs.mql4.com/indicators</a>
+     */
+    public CompletableFuture<BatchResults<Double>> runIndicators(List<Indicator> funcs, int timeout) {
+        List<CompletableFuture<Double>> futures = new ArrayList<>(funcs.size());
+        for (Indicator func : funcs) {
+            futures.add(runIndicator(func, timeout));
+        }
+        return collect(futures);
+    }
+
+    /**
+     * Get the pending and open orders from the Trades tab.
+     *
+     * @return A list of open or pending {@link Order Orders}.
+     */
+    public CompletableFuture<List<Order>> getOrders() {
+        return submit(Request.GET_ORDERS.build(), LIST_OF_ORDERS)
+                .thenApply(mt4::observeOpenOrders);
+    }
+
+    /**
+     * Get the deleted and closed orders from the Account History tab.
+     *
+     * @return A list of closed {@link Order Orders}.
+     */
+    public CompletableFuture<List<Order>> getOrdersHistorical() {
+        return submit(Request.GET_HISTORICAL_ORDERS.build(), LIST_OF_ORDERS);
+    }
+
+    /**
+     * Get a page of the deleted and closed orders from the Account History tab.
+     *
+     * @param query The filters and the maximum number of orders.  The next page is queried with {@link
+     *              HistoryQuery#after(Order)} the last order of this one.
+     * @return The matching {@link Order Orders} in ascending ticket order, at most {@link HistoryQuery#limit}.
+     */
+    public CompletableFuture<List<Order>> getOrdersHistorical(HistoryQuery query) {
+        return submit(mt4.buildHistoricalOrdersRequest(query), LIST_OF_ORDERS)
+                .thenApply(orders -> MT4Client.applyQuery(query, orders.iterator()));
+    }
+
+    /**
+     * Get an order by ticket number.  May be pending, open, or closed.
+     *
+     * @param ticket The ticket number.
+     * @return The {@link Order} object.
+     */
+    public CompletableFuture<Order> getOrder(int ticket) {
+        return submit(MT4Client.buildOrderRequest(ticket), Order.class)
+                .thenApply(mt4::observeOrder);
+    }
+
+    /**
+     * Create a new order.
+     *
+     * @param newOrder The {@link NewOrder new order request}.
+     * @return The new {@link Order}.
+     * @see <a href="https://docs.mql4.com/trading/ordersend">https://docs.mql4.com/trading/ordersend</a>
+     */
+    public CompletableFuture<Order> orderSend(NewOrder newOrder) {
+        return submit(mt4.buildOrderSendRequest(newOrder), Order.class)
+                .thenApply(mt4::observeOrder)
+                .whenComplete((order, e) -> mt4.observeTrade());
+    }
+
+    /**
+     * Modify a market or pending order.
+     *
+     * @param modifyOrder The {@link ModifyOrder modify-order request}.
+     * @return The modified {@link Order}.
+     * @see <a href="https://book.mql4.com/trading/ordermodify">https://book.mql4.com/trading/ordermodify</a>
+     */
+    public CompletableFuture<Order> orderModify(ModifyOrder modifyOrder) {
+        return submit(mt4.buildOrderModifyRequest(modifyOrder), Order.class)
+                .thenApply(mt4::observeOrder)
+                .whenComplete((order, e) -> mt4.observeTrade());
+    }
+
+    /**
+     * Close an open order.
+     *
+     * @param ticket The ticket number.
+     * @return A future which completes when the order is closed.
+     */
+    public CompletableFuture<Void> orderClose(int ticket) {
+        return submit(MT4Client.buildOrderCloseRequest(ticket))
+                .thenRun(() -> mt4.observeClosed(ticket))
+                .whenComplete((ignored, e) -> mt4.observeTrade());
+    }
+
+    /**
+     * Close an open order.
+     *
+     * @param order The order to close.
+     * @return A future which completes when the order is closed.
+     */
+    public CompletableFuture<Void> orderClose(Order order) {
+        return orderClose(order.getTicket());
+    }
+
+    /**
+     * Delete a pending order.
+     *
+     * @param ticket        The ticket number.
+     * @param closeIfOpened If true and the order is open, it is closed at market price.  If false and the order is
+     *                      open, an `ERR_INVALID_TICKET` error is raised.
+     * @return A future which completes when the order is deleted.
+     * @see <a href="https://docs.mql4.com/trading/orderdelete">https://docs.mql4.com/trading/orderdelete</a>
+     */
+    public CompletableFuture<Void> orderDelete(int ticket, boolean closeIfOpened) {
+        return submit(MT4Client.buildOrderDeleteRequest(ticket, closeIfOpened))
+                .thenRun(() -> mt4.observeClosed(ticket))
+                .whenComplete((ignored, e) -> mt4.observeTrade());
+    }
+
+    /**
+     * Delete a pending order.
+     *
+     * @param order         The order to delete.
+     * @param closeIfOpened If true and the order is open, it is closed at market price.  If false and the order is
+     *                      open, an `ERR_INVALID_TICKET` error is raised.
+     * @return A future which completes when the order is deleted.
+     */
+    public CompletableFuture<Void> orderDelete(Order order, boolean closeIfOpened) {
+        return orderDelete(order.getTicket(), closeIfOpened);
+    }
+
+    /**
+     * Delete a pending order.  If order is open, it is closed at market price.
+     *
+     * @param ticket The ticket number.
+     * @return A future which completes when the order is deleted.
+     */
+    public CompletableFuture<Void> orderDelete(int ticket) {
+        return orderDelete(ticket, DEFAULT_CLOSE_IF_OPENED);
+    }
+
+    /**
+     * Delete a pending order.  If order is open, it is closed at market price.
+     *
+     * @param order The order to delete.
+     * @return A future which completes when the order is deleted.
+     */
+    public CompletableFuture<Void> orderDelete(Order order) {
+        return orderDelete(order.getTicket());
+    }
+
+    /**
+     * Create several new orders, sending every request before waiting for any response.  Each order is created or
+     * fails on its own.
+     *
+     * @param newOrders The {@link NewOrder new order requests}.
+     * @return The new {@link Order Orders}, in request order.
+     * @see #orderSend(NewOrder)
+     */
+    public CompletableFuture<BatchResults<Order>> orderSendAll(List<NewOrder> newOrders) {
+        List<CompletableFuture<Order>> futures = new ArrayList<>(newOrders.size());
+        for (NewOrder newOrder : newOrders) {
+            futures.add(orderSend(newOrder));
+        }
+        return collect(futures);
+    }
+
+    /**
+     * Modify several market or pending orders, sending every request before waiting for any response.  Each order is
+     * modified or fails on its own.
+     *
+     * @param modifyOrders The {@link ModifyOrder modify-order requests}.
+     * @return The modified {@link Order Orders}, in request order.
+     * @see #orderModify(ModifyOrder)
+     */
+    public CompletableFuture<BatchResults<Order>> orderModifyAll(List<ModifyOrder> modifyOrders) {
+        List<CompletableFuture<Order>> futures = new ArrayList<>(modifyOrders.size());
+        for (ModifyOrder modifyOrder : modifyOrders) {
+            futures.add(orderModify(modifyOrder));
+        }
+        return collect(futures);
+    }
+
+    /**
+     * Close several open orders, sending every request before waiting for any response.  Each order is closed or fails
+     * on its own.
+     *
+     * @param orders The orders to close.
+     * @return A null result for each order which was closed, in iteration order.
+     * @see #orderClose(Order)
+     */
+    public CompletableFuture<BatchResults<Void>> orderCloseAll(Collection<Order> orders) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            futures.add(orderClose(order));
+        }
+        return collect(futures);
+    }
+
+    /**
+     * Wait for several requests to complete.  An {@link MT4Exception} fails only its own request; any other failure
+     * fails them all.
+     */
+    private static <T> CompletableFuture<BatchResults<T>> collect(List<CompletableFuture<T>> futures) {
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).handle((ignored, failure) -> {
+            List<T> values = new ArrayList<>(futures.size());
+            List<MT4Exception> errors = new ArrayList<>(futures.size());
+            for (CompletableFuture<T> future : futures) {
+                try {
+                    values.add(future.join());
+                    errors.add(null);
+                }
+                catch (CompletionException e) {
+                    if (!(e.getCause() instanceof MT4Exception)) {
+                        throw e;
+                    }
+                    values.add(null);
+                    errors.add((MT4Exception) e.getCause());
+                }
+            }
+            return new BatchResults<>(values, errors);
+        });
+    }
+
+    private <T> CompletableFuture<T> submit(ObjectNode request, Class<T> responseType) {
+        return connection.submit(request).thenApplyAsync(response -> {
+            try {
+                return mt4.parseResponse(request, response, responseType);
+            }
+            catch (JsonProcessingException | MT4Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private <T> CompletableFuture<T> submit(RequestTemplate request, Class<T> responseType) {
+        return connection.submit(request).thenApplyAsync(response -> {
+            try {
+                return mt4.parseResponse(request, response, responseType);
+            }
+            catch (JsonProcessingException | MT4Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private <T> CompletableFuture<T> submit(ObjectNode request, TypeReference<T> responseType) {
+        return connection.submit(request).thenApplyAsync(response -> {
+            try {
+                return mt4.parseResponse(request, response, responseType);
+            }
+            catch (JsonProcessingException | MT4Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private CompletableFuture<Void> submit(ObjectNode request) {
+        return connection.submit(request).thenAcceptAsync(response -> {
+            try {
+                mt4.parseResponse(request, response, JsonNode.class);
+            }
+            catch (JsonProcessingException | MT4Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+}
@@ -1,8 +1,14 @@
 package human.coejoder.mt4client;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.InjectableValues;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -15,23 +21,33 @@ import com.fasterxml.jackson.databind.node.TextNode;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.zeromq.SocketType;
-import org.zeromq.ZContext;
-import org.zeromq.ZMQ;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class MT4Client implements AutoCloseable {
 
     private static final Logger LOG = LoggerFactory.getLogger(MT4Client.class);
-    private static final int ENABLED = 1;
-    private static final int DEFAULT_REQUEST_TIMEOUT_MILLIS = 10000;
-    private static final int DEFAULT_RESPONSE_TIMEOUT_MILLIS = 10000;
-    private static final int DEFAULT_INDICATOR_TIMEOUT = 5000;
-    private static final boolean DEFAULT_CLOSE_IF_OPENED = true;
+    static final int DEFAULT_REQUEST_TIMEOUT_MILLIS = 10000;
+    static final int DEFAULT_RESPONSE_TIMEOUT_MILLIS = 10000;
+    static final int DEFAULT_INDICATOR_TIMEOUT = 5000;
+    static final int DEFAULT_HISTORY_PAGE_SIZE = 1000;
+    static final boolean DEFAULT_CLOSE_IF_OPENED = true;
     private static final String ERROR_CODE = MT4Exception.ERROR_CODE;
     private static final String ERROR_CODE_DESCRIPTION = MT4Exception.ERROR_CODE_DESCRIPTION;
     private static final String ERROR_MESSAGE = MT4Exception.ERROR_MESSAGE;
@@ -39,6 +55,8 @@ public class MT4Client implements AutoCloseable {
     private static final String RESPONSE = "response";
     private static final String NAMES = "names";
     private static final String INDICATOR = "indicator";
+    private static final String FROM_SHIFT = "from_shift";
+    private static final String COUNT = "count";
     private static final String ARGV = "argv";
     private static final String TIMEOUT = "timeout";
     private static final String TICKET = "ticket";
@@ -46,15 +64,25 @@ public class MT4Client implements AutoCloseable {
     private static final String SYMBOL = "symbol";
     private static final String TIMEFRAME = "timeframe";
     private static final String LIMIT = "limit";
-    private static final TypeReference<List<String>> LIST_OF_STRINGS = new TypeReference<>() {};
-    private static final TypeReference<HashMap<String, Symbol>> MAP_OF_SYMBOLS = new TypeReference<>() {};
-    private static final TypeReference<HashMap<String, Signal>> MAP_OF_SIGNALS = new TypeReference<>() {};
-    private static final TypeReference<List<Order>> LIST_OF_ORDERS = new TypeReference<>() {};
-    private static final TypeReference<List<OHLCV>> LIST_OF_OHLCV = new TypeReference<>() {};
+    private static final String CODEC = "codec";
+    private static final String REQUESTS = "requests";
+    static final TypeReference<List<String>> LIST_OF_STRINGS = new TypeReference<>() {};
+    static final TypeReference<HashMap<String, Symbol>> MAP_OF_SYMBOLS = new TypeReference<>() {};
+    static final TypeReference<HashMap<String, SymbolTick>> MAP_OF_TICKS = new TypeReference<>() {};
+    static final TypeReference<HashMap<String, Signal>> MAP_OF_SIGNALS = new TypeReference<>() {};
+    static final TypeReference<List<Order>> LIST_OF_ORDERS = new TypeReference<>() {};
+    static final TypeReference<List<OHLCV>> LIST_OF_OHLCV = new TypeReference<>() {};
+    static final TypeReference<List<JsonNode>> LIST_OF_NODES = new TypeReference<>() {};
 
-    private final ZContext context;
-    private final ZMQ.Socket socket;
-    private final ObjectMapper objectMapper;
+    private final Connection connection;
+    private ObjectMapper objectMapper;
+    private WireCodec codec = WireCodec.JSON;
+    private volatile WireCapture capture;
+    private volatile SymbolInfoCache symbolInfoCache;
+    private volatile IndicatorCache indicatorCache;
+    private volatile AccountCache accountCache;
+    private volatile AutoBatcher batcher;
+    private volatile boolean batchSupported = true;
 
     /**
      * Constructor.  Initialize the REQ socket and connect to the MT4 server.
@@ -64,24 +92,7 @@ public class MT4Client implements AutoCloseable {
      * @param responseTimeoutMs The number of milliseconds to wait for a response to be received.
      */
     public MT4Client(String address, int requestTimeoutMs, int responseTimeoutMs) {
-        // create JSON object mapper
-        objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new ParameterNamesModule());
-
-        InjectableValues.Std injectableValues = new InjectableValues.Std();
-        injectableValues.addValue(MT4Client.class, this);
-        objectMapper.setInjectableValues(injectableValues);
-
-        // create and configure REQ socket
-        this.context = new ZContext();
-        this.socket = context.createSocket(SocketType.REQ);
-        this.socket.setSndHWM(ENABLED);
-        this.socket.setRcvHWM(ENABLED);
-        this.socket.setSendTimeOut(requestTimeoutMs);
-        this.socket.setReceiveTimeOut(responseTimeoutMs);
-
-        // connect to server
-        this.socket.connect(address);
+        this(new ReqConnection(address, requestTimeoutMs, responseTimeoutMs));
     }
 
     /**
@@ -94,8 +105,191 @@ public class MT4Client implements AutoCloseable {
         this(address, DEFAULT_REQUEST_TIMEOUT_MILLIS, DEFAULT_RESPONSE_TIMEOUT_MILLIS);
     }
 
+    /**
+     * Constructor.  Initialize the REQ socket, connect to the MT4 server and ask it to switch to the given wire codec.
+     * If the server doesn't support the codec, the client keeps using JSON.
+     *
+     * @param address           The address of the server's listening socket.
+     * @param requestTimeoutMs  The number of milliseconds to wait for a request to be sent.
+     * @param responseTimeoutMs The number of milliseconds to wait for a response to be received.
+     * @param codec             The preferred wire codec.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @see #getCodec()
+     */
+    public MT4Client(String address, int requestTimeoutMs, int responseTimeoutMs, WireCodec codec)
+            throws JsonProcessingException {
+        this(address, requestTimeoutMs, responseTimeoutMs);
+        negotiateCodec(codec);
+    }
+
+    /**
+     * Package-private constructor.
+     *
+     * @param connection The connection to the MT4 server.
+     */
+    MT4Client(Connection connection) {
+        this.connection = connection;
+        this.objectMapper = createObjectMapper(codec);
+    }
+
+    /**
+     * Ask the server to switch to another wire codec.  If the server doesn't support it, keep using the current codec.
+     * Must not be called while requests are in flight.
+     *
+     * @param codec The preferred wire codec.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     */
+    void negotiateCodec(WireCodec codec) throws JsonProcessingException {
+        if (codec == this.codec) {
+            return;
+        }
+        try {
+            getResponse(Request.SET_WIRE_CODEC.build()
+                    .put(CODEC, codec.id));
+        }
+        catch (MT4Exception e) {
+            LOG.warn(String.format("Server does not support the %s wire codec; using %s.", codec.id, this.codec.id));
+            return;
+        }
+        useCodec(codec);
+    }
+
+    /**
+     * Go back to JSON without asking the server, as the server's end of a new connection starts out using it.
+     */
+    void resetCodec() {
+        useCodec(WireCodec.JSON);
+    }
+
+    private void useCodec(WireCodec codec) {
+        connection.setCodec(codec);
+        this.objectMapper = createObjectMapper(codec);
+        this.codec = codec;
+    }
+
+    /**
+     * Drop what a user of this client may have set on it, i.e. its caches, auto-batcher and wire capture, so that the
+     * client can be handed to another user.  The wire codec is left as it is.
+     */
+    void clearState() {
+        disableAutoBatching();
+        capture = null;
+        symbolInfoCache = null;
+        indicatorCache = null;
+        accountCache = null;
+    }
+
+    private ObjectMapper createObjectMapper(WireCodec codec) {
+        ObjectMapper mapper = new ObjectMapper(codec.newFactory());
+        mapper.registerModule(new ParameterNamesModule());
+
+        InjectableValues.Std injectableValues = new InjectableValues.Std();
+        injectableValues.addValue(MT4Client.class, this);
+        mapper.setInjectableValues(injectableValues);
+        return mapper;
+    }
+
+    /**
+     * Get the wire codec agreed with the server.
+     *
+     * @return The wire codec.
+     */
+    public WireCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Capture a sample of this client's exchanges with the server, and every exchange which fails.
+     *
+     * @param capture The wire capture, or null to stop capturing.
+     */
+    public void setWireCapture(WireCapture capture) {
+        this.capture = capture;
+    }
+
+    /**
+     * Serve the properties queried through the {@link Symbol Symbols} of this client from a cache, according to its
+     * freshness policies.
+     *
+     * @param cache The symbol info cache, or null to request every property from the server.
+     */
+    public void setSymbolInfoCache(SymbolInfoCache cache) {
+        this.symbolInfoCache = cache;
+    }
+
+    /**
+     * @return The symbol info cache, or null if none is set.
+     */
+    public SymbolInfoCache getSymbolInfoCache() {
+        return symbolInfoCache;
+    }
+
+    /**
+     * Serve the results of indicators on closed bars from a cache, until their timeframe's current bar closes.
+     *
+     * @param cache The indicator cache, or null to run every indicator on the server.
+     */
+    public void setIndicatorCache(IndicatorCache cache) {
+        this.indicatorCache = cache;
+    }
+
+    /**
+     * @return The indicator cache, or null if none is set.
+     */
+    public IndicatorCache getIndicatorCache() {
+        return indicatorCache;
+    }
+
+    /**
+     * Serve the property values queried through the {@link Account} of this client from a cache, until this client
+     * trades or the prices of its open positions move.
+     *
+     * @param cache The account cache, or null to request every property from the server.
+     */
+    public void setAccountCache(AccountCache cache) {
+        this.accountCache = cache;
+    }
+
+    /**
+     * @return The account cache, or null if none is set.
+     */
+    public AccountCache getAccountCache() {
+        return accountCache;
+    }
+
+    /**
+     * Coalesce the requests made through this client, from any number of threads, into batches which are each sent in
+     * a single round trip.  Each request waits up to the given window for others to join its batch.
+     *
+     * @param window       How long the first request of a batch waits for others, e.g. 200 microseconds.
+     * @param unit         The unit of the window.
+     * @param maxBatchSize The number of requests which sends a batch before its window closes.
+     * @return The batcher, for its {@link AutoBatcher#getMetrics() metrics}.
+     * @throws IllegalStateException If batching is already enabled.
+     * @see AutoBatcher
+     */
+    public synchronized AutoBatcher enableAutoBatching(long window, TimeUnit unit, int maxBatchSize) {
+        if (batcher != null) {
+            throw new IllegalStateException("Auto-batching is already enabled.");
+        }
+        batcher = new AutoBatcher(this, unit.toNanos(window), maxBatchSize);
+        return batcher;
+    }
+
+    /**
+     * Send any requests waiting to be batched, then send each later request on its own.  Does nothing if batching is
+     * not enabled.
+     */
+    public synchronized void disableAutoBatching() {
+        if (batcher != null) {
+            batcher.close();
+            batcher = null;
+        }
+    }
+
     public void shutdown() {
-        context.destroy();
+        disableAutoBatching();
+        connection.close();
     }
 
     @Override
@@ -137,13 +331,7 @@ public class MT4Client implements AutoCloseable {
         if (names.length == 0) {
             return Collections.emptyMap();
         }
-        ArrayNode namesArray = JsonNodeFactory.instance.arrayNode(names.length);
-        for (String name : names) {
-            namesArray.add(name);
-        }
-        ObjectNode request = Request.GET_SYMBOL_INFO.build()
-                .set(NAMES, namesArray);
-        return getResponse(request, MAP_OF_SYMBOLS);
+        return getResponse(buildSymbolsRequest(names), MAP_OF_SYMBOLS);
     }
 
     /**
@@ -156,6 +344,21 @@ public class MT4Client implements AutoCloseable {
         return getSymbols(name).get(name);
     }
 
+    /**
+     * Get the latest market prices of several symbols in a single request.
+     *
+     * @param symbols The names of the symbols.
+     * @return A name-to-{@link SymbolTick} map.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    public Map<String, SymbolTick> getTicks(String... symbols) throws JsonProcessingException, MT4Exception {
+        if (symbols.length == 0) {
+            return Collections.emptyMap();
+        }
+        return observeTicks(getResponse(buildSymbolTicksRequest(symbols), MAP_OF_TICKS));
+    }
+
     /**
      * Get the names of all trading signals.
      *
@@ -179,13 +382,7 @@ public class MT4Client implements AutoCloseable {
      * @throws MT4Exception            If server had an error.
      */
     public List<OHLCV> getOHLCV(String symbol, Timeframe timeframe, long limit, long timeout) throws JsonProcessingException, MT4Exception {
-        ObjectNode request = Request.GET_OHLCV.build()
-                .<ObjectNode>set(SYMBOL, TextNode.valueOf(symbol))
-                .<ObjectNode>set(TIMEFRAME, LongNode.valueOf(timeframe.getMinutes()))
-                .<ObjectNode>set(LIMIT, LongNode.valueOf(limit))
-                .set(TIMEOUT, LongNode.valueOf(timeout));
-
-        return getResponse(request, LIST_OF_OHLCV);
+        return getResponse(buildOHLCVRequest(symbol, timeframe, limit, timeout), LIST_OF_OHLCV);
     }
 
     /**
@@ -200,13 +397,7 @@ public class MT4Client implements AutoCloseable {
         if (names.length == 0) {
             return Collections.emptyMap();
         }
-        ArrayNode namesArray = JsonNodeFactory.instance.arrayNode(names.length);
-        for (String name : names) {
-            namesArray.add(name);
-        }
-        ObjectNode request = Request.GET_SIGNAL_INFO.build()
-                .set(NAMES, namesArray);
-        return getResponse(request, MAP_OF_SIGNALS);
+        return getResponse(buildSignalsRequest(names), MAP_OF_SIGNALS);
     }
 
     /**
@@ -246,11 +437,154 @@ public class MT4Client implements AutoCloseable {
      * @see <a href="https://docs.mql4.com/indicators">https://docs.mql4.com/indicators</a>
      */
     public double runIndicator(Indicator func, int timeout) throws JsonProcessingException, MT4Exception {
-        ObjectNode request = Request.RUN_INDICATOR.build()
-                .<ObjectNode>set(INDICATOR, TextNode.valueOf(func.getName()))
-                .<ObjectNode>set(ARGV, func.getArguments())
-                .set(TIMEOUT, IntNode.valueOf(timeout));
-        return getResponse(request, double.class);
+        IndicatorCache cache = indicatorCache;
+        if (cache == null) {
+            return getResponse(func.getRequest(timeout), double.class);
+        }
+        Double cached = cache.get(func);
+        if (cached != null) {
+            return cached;
+        }
+        checkBars(cache, List.of(func), timeout);
+        double value = getResponse(func.getRequest(timeout), double.class);
+        cache.put(func, value);
+        return value;
+    }
+
+    /**
+     * Run a built-in indicator function over a range of shifts in a single request, waiting at most {@value
+     * DEFAULT_INDICATOR_TIMEOUT} milliseconds for symbol's chart data to load.
+     *
+     * @param template  The {@link Indicator} to run.  Its shift, the last argument, is ignored.
+     * @param fromShift The first shift.
+     * @param count     The number of shifts.
+     * @return The numeric results, where element <code>i</code> is the result at shift <code>fromShift + i</code>.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     * @see <a href="https://docs.mql4.com/indicators">https://docs.mql4.com/indicators</a>
+     */
+    public double[] runIndicatorSeries(Indicator template, int fromShift, int count) throws JsonProcessingException,
+            MT4Exception {
+        return runIndicatorSeries(template, fromShift, count, DEFAULT_INDICATOR_TIMEOUT);
+    }
+
+    /**
+     * Run a built-in indicator function over a range of shifts in a single request.
+     *
+     * @param template  The {@link Indicator} to run.  Its shift, the last argument, is ignored.
+     * @param fromShift The first shift.
+     * @param count     The number of shifts.
+     * @param timeout   The maximum milliseconds to wait for the symbol's chart data to load.
+     * @return The numeric results, where element <code>i</code> is the result at shift <code>fromShift + i</code>.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     * @see <a href="https://docs.mql4.com/indicators">https://docs.mql4.com/indicators</a>
+     */
+    public double[] runIndicatorSeries(Indicator template, int fromShift, int count, int timeout)
+            throws JsonProcessingException, MT4Exception {
+        ObjectNode request = buildIndicatorSeriesRequest(template, fromShift, count, timeout);
+        if (count == 0) {
+            return new double[0];
+        }
+        double[] series = getResponse(request, double[].class);
+        if (series.length != count) {
+            throw new IllegalStateException(String.format("Expected %d values but received %d.", count,
+                    series.length));
+        }
+        return series;
+    }
+
+    /**
+     * Run several built-in indicator functions in a single {@link Request#BATCH batch}, waiting at most {@value
+     * DEFAULT_INDICATOR_TIMEOUT} milliseconds for each symbol's chart data to load.
+     *
+     * @param funcs The {@link Indicator Indicators} to run.
+     * @return The result of each indicator, in the same order.  An indicator which fails doesn't fail the others.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error with the request as a whole.
+     * @see <a href="https://docs.mql4.com/indicators">https://docs.mql4.com/indicators</a>
+     */
+    public BatchResults<Double> runIndicators(List<Indicator> funcs) throws JsonProcessingException, MT4Exception {
+        return runIndicators(funcs, DEFAULT_INDICATOR_TIMEOUT);
+    }
+
+    /**
+     * Run several built-in indicator functions in a single {@link Request#BATCH batch}.
+     *
+     * @param funcs   The {@link Indicator Indicators} to run.
+     * @param timeout The maximum milliseconds to wait for each symbol's chart data to load.
+     * @return The result of each indicator, in the same order.  An indicator which fails doesn't fail the others.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error with the request as a whole.
+     * @see <a href="https://docs.mql4.com/indicators">https://docs.mql4.com/indicators</a>
+     */
+    public BatchResults<Double> runIndicators(List<Indicator> funcs, int timeout) throws JsonProcessingException,
+            MT4Exception {
+        IndicatorCache cache = indicatorCache;
+        if (cache == null) {
+            return getIndicatorResponses(funcs, timeout);
+        }
+
+        // run only the indicators whose results aren't cached
+        IndicatorCache.Batch batch = cache.batch(funcs);
+        checkBars(cache, batch.getMisses(), timeout);
+        return batch.complete(getIndicatorResponses(batch.getMisses(), timeout));
+    }
+
+    /**
+     * Check the server's current bar of each symbol and timeframe of the given indicators, if the cache needs it before
+     * caching their results.  A check which fails leaves the results uncached.
+     *
+     * @param cache   The indicator cache.
+     * @param funcs   The indicators about to be run.
+     * @param timeout The maximum milliseconds to wait for each symbol's chart data to load.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error with the request as a whole.
+     */
+    private void checkBars(IndicatorCache cache, List<Indicator> funcs, int timeout) throws JsonProcessingException,
+            MT4Exception {
+        List<Indicator> checked = new ArrayList<>();
+        List<ObjectNode> requests = new ArrayList<>();
+        Set<String> series = new HashSet<>();
+        for (Indicator func : funcs) {
+            if (cache.needsBarCheck(func) && series.add(func.getSymbol() + '@' + func.getTimeframeMinutes())) {
+                checked.add(func);
+                requests.add(buildBarCheckRequest(func, timeout));
+            }
+        }
+        if (requests.isEmpty()) {
+            return;
+        }
+        BatchResults<List<OHLCV>> bars = getResponses(requests, constructType(LIST_OF_OHLCV));
+        for (int i = 0; i < checked.size(); i++) {
+            cache.checkedBar(checked.get(i), lastBarOpenTime(bars.getOrNull(i)));
+        }
+    }
+
+    /**
+     * @param func    An indicator.
+     * @param timeout The maximum milliseconds to wait for the symbol's chart data to load.
+     * @return A request for the current bar of the indicator's symbol and timeframe.
+     */
+    static ObjectNode buildBarCheckRequest(Indicator func, long timeout) {
+        return buildOHLCVRequest(func.getSymbol(), func::getTimeframeMinutes, 1, timeout);
+    }
+
+    /**
+     * @param bars Bars in ascending time order, or null.
+     * @return The open time of the last bar, or -1 if there is none.
+     */
+    static long lastBarOpenTime(List<OHLCV> bars) {
+        return bars == null || bars.isEmpty() ? -1 : bars.get(bars.size() - 1).time;
+    }
+
+    private BatchResults<Double> getIndicatorResponses(List<Indicator> funcs, int timeout)
+            throws JsonProcessingException, MT4Exception {
+        List<ObjectNode> requests = new ArrayList<>(funcs.size());
+        for (Indicator func : funcs) {
+            requests.add(buildIndicatorRequest(func, timeout));
+        }
+        return getResponses(requests, objectMapper.constructType(Double.class));
     }
 
     /**
@@ -261,7 +595,7 @@ public class MT4Client implements AutoCloseable {
      * @throws MT4Exception            If server had an error.
      */
     public List<Order> getOrders() throws JsonProcessingException, MT4Exception {
-        return getResponse(Request.GET_ORDERS.build(), LIST_OF_ORDERS);
+        return observeOpenOrders(getResponse(Request.GET_ORDERS.build(), LIST_OF_ORDERS));
     }
 
     /**
@@ -275,6 +609,50 @@ public class MT4Client implements AutoCloseable {
         return getResponse(Request.GET_HISTORICAL_ORDERS.build(), LIST_OF_ORDERS);
     }
 
+    /**
+     * Get a page of the deleted and closed orders from the Account History tab.
+     *
+     * @param query The filters and the maximum number of orders.  The next page is queried with {@link
+     *              HistoryQuery#after(Order)} the last order of this one.
+     * @return The matching {@link Order Orders} in ascending ticket order, at most {@link HistoryQuery#limit}.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    public List<Order> getOrdersHistorical(HistoryQuery query) throws JsonProcessingException, MT4Exception {
+        return applyQuery(query, getResponseElements(buildHistoricalOrdersRequest(query), Order.class));
+    }
+
+    /**
+     * Stream the deleted and closed orders from the Account History tab, fetching them {@value
+     * DEFAULT_HISTORY_PAGE_SIZE} at a time as the stream is consumed.  Each order is decoded only when it is reached,
+     * so the history is processed in constant memory.  Must be consumed on the thread which uses this client.
+     *
+     * @param query The filters.  Its limit, if any, is ignored.
+     * @return The matching {@link Order Orders} in ascending ticket order.  Failures while streaming are thrown as an
+     * {@link java.io.UncheckedIOException} if a response fails to parse, or an {@link IllegalStateException} caused by
+     * an {@link MT4Exception} if the server had an error.
+     */
+    public Stream<Order> streamOrdersHistorical(HistoryQuery query) {
+        return streamOrdersHistorical(query, DEFAULT_HISTORY_PAGE_SIZE);
+    }
+
+    /**
+     * Stream the deleted and closed orders from the Account History tab, fetching them a page at a time as the stream
+     * is consumed.  Each order is decoded only when it is reached, so the history is processed in constant memory.
+     * Must be consumed on the thread which uses this client.
+     *
+     * @param query    The filters.  Its limit, if any, is ignored.
+     * @param pageSize The number of orders per request.
+     * @return The matching {@link Order Orders} in ascending ticket order.  Failures while streaming are thrown as an
+     * {@link java.io.UncheckedIOException} if a response fails to parse, or an {@link IllegalStateException} caused by
+     * an {@link MT4Exception} if the server had an error.
+     */
+    public Stream<Order> streamOrdersHistorical(HistoryQuery query, int pageSize) {
+        Iterator<Order> orders = new HistoryIterator(this, query, pageSize);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(orders,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
     /**
      * Get an order by ticket number.  May be pending, open, or closed.
      *
@@ -284,9 +662,7 @@ public class MT4Client implements AutoCloseable {
      * @throws MT4Exception            If server had an error.
      */
     public Order getOrder(int ticket) throws JsonProcessingException, MT4Exception {
-        ObjectNode request = Request.GET_ORDER.build()
-                .set(TICKET, IntNode.valueOf(ticket));
-        return getResponse(request, Order.class);
+        return observeOrder(getResponse(buildOrderRequest(ticket), Order.class));
     }
 
     /**
@@ -300,9 +676,12 @@ public class MT4Client implements AutoCloseable {
      * @see <a href="https://book.mql4.com/appendix/limits">https://book.mql4.com/appendix/limits</a>
      */
     public Order orderSend(NewOrder newOrder) throws JsonProcessingException, MT4Exception {
-        ObjectNode request = Request.DO_ORDER_SEND.build()
-                .setAll(objectMapper.<ObjectNode>valueToTree(newOrder));
-        return getResponse(request, Order.class);
+        try {
+            return observeOrder(getResponse(buildOrderSendRequest(newOrder), Order.class));
+        }
+        finally {
+            observeTrade();
+        }
     }
 
     /**
@@ -316,9 +695,12 @@ public class MT4Client implements AutoCloseable {
      * @see <a href="https://book.mql4.com/appendix/limits">https://book.mql4.com/appendix/limits</a>
      */
     public Order orderModify(ModifyOrder modifyOrder) throws JsonProcessingException, MT4Exception {
-        ObjectNode request = Request.DO_ORDER_MODIFY.build()
-                .setAll(objectMapper.<ObjectNode>valueToTree(modifyOrder));
-        return getResponse(request, Order.class);
+        try {
+            return observeOrder(getResponse(buildOrderModifyRequest(modifyOrder), Order.class));
+        }
+        finally {
+            observeTrade();
+        }
     }
 
     /**
@@ -331,9 +713,13 @@ public class MT4Client implements AutoCloseable {
      * @see <a href="https://book.mql4.com/appendix/limits">https://book.mql4.com/appendix/limits</a>
      */
     public void orderClose(int ticket) throws JsonProcessingException, MT4Exception {
-        ObjectNode request = Request.DO_ORDER_CLOSE.build()
-                .set(TICKET, IntNode.valueOf(ticket));
-        getResponse(request);
+        try {
+            getResponse(buildOrderCloseRequest(ticket));
+            observeClosed(ticket);
+        }
+        finally {
+            observeTrade();
+        }
     }
 
     /**
@@ -361,10 +747,13 @@ public class MT4Client implements AutoCloseable {
      * @see <a href="https://book.mql4.com/appendix/limits">https://book.mql4.com/appendix/limits</a>
      */
     public void orderDelete(int ticket, boolean closeIfOpened) throws JsonProcessingException, MT4Exception {
-        ObjectNode request = Request.DO_ORDER_DELETE.build()
-                .<ObjectNode>set(TICKET, IntNode.valueOf(ticket))
-                .set(CLOSE_IF_OPENED, BooleanNode.valueOf(closeIfOpened));
-        getResponse(request);
+        try {
+            getResponse(buildOrderDeleteRequest(ticket, closeIfOpened));
+            observeClosed(ticket);
+        }
+        finally {
+            observeTrade();
+        }
     }
 
     /**
@@ -409,55 +798,805 @@ public class MT4Client implements AutoCloseable {
     }
 
     /**
-     * Send a request object to the server and wait for a response.
+     * Create several new orders in a single request.  Each order is created or fails on its own.
      *
-     * @param request      The request to send.  Must have an `action` property.
-     * @param responseType The response type.
-     * @param <T>          The response type.
-     * @return The server response.
+     * @param newOrders The {@link NewOrder new order requests}.
+     * @return The new {@link Order Orders}, in request order.
      * @throws JsonProcessingException If JSON response fails to parse.
-     * @throws MT4Exception            If server had an error.
+     * @throws MT4Exception            If server had an error with the request as a whole.
+     * @see #orderSend(NewOrder)
      */
-    <T> T getResponse(ObjectNode request, Class<T> responseType) throws JsonProcessingException, MT4Exception {
-        return objectMapper.convertValue(getResponse(request), responseType);
+    public BatchResults<Order> orderSendAll(List<NewOrder> newOrders) throws JsonProcessingException, MT4Exception {
+        List<ObjectNode> requests = new ArrayList<>(newOrders.size());
+        for (NewOrder newOrder : newOrders) {
+            requests.add(buildOrderSendRequest(newOrder));
+        }
+        try {
+            return observeOrders(getResponses(requests, objectMapper.constructType(Order.class)));
+        }
+        finally {
+            observeTrade();
+        }
     }
 
     /**
-     * Send a request object to the server and wait for a response.
+     * Modify several market or pending orders in a single request.  Each order is modified or fails on its own.
      *
-     * @param request      The request to send.  Must have an `action` property.
-     * @param responseType The response type.
-     * @param <T>          The response type.
-     * @return The server response.
+     * @param modifyOrders The {@link ModifyOrder modify-order requests}.
+     * @return The modified {@link Order Orders}, in request order.
      * @throws JsonProcessingException If JSON response fails to parse.
-     * @throws MT4Exception            If server had an error.
+     * @throws MT4Exception            If server had an error with the request as a whole.
+     * @see #orderModify(ModifyOrder)
      */
-    <T> T getResponse(ObjectNode request, TypeReference<T> responseType) throws JsonProcessingException, MT4Exception {
-        return objectMapper.convertValue(getResponse(request), responseType);
+    public BatchResults<Order> orderModifyAll(List<ModifyOrder> modifyOrders) throws JsonProcessingException,
+            MT4Exception {
+        List<ObjectNode> requests = new ArrayList<>(modifyOrders.size());
+        for (ModifyOrder modifyOrder : modifyOrders) {
+            requests.add(buildOrderModifyRequest(modifyOrder));
+        }
+        try {
+            return observeOrders(getResponses(requests, objectMapper.constructType(Order.class)));
+        }
+        finally {
+            observeTrade();
+        }
     }
 
-    private JsonNode getResponse(ObjectNode request) throws JsonProcessingException, MT4Exception {
-        String strRequest = request.toString();
-        socket.send(strRequest);
-        LOG.trace("Request: " + strRequest);
-        String strResponse = socket.recvStr();
-        LOG.trace(strResponse == null ? "Response is empty." : "Response: " + strResponse);
-        JsonNode response = objectMapper.readTree(strResponse);
+    /**
+     * Close several open orders in a single request.  Each order is closed or fails on its own.
+     *
+     * @param orders The orders to close.
+     * @return A null result for each order which was closed, in iteration order.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error with the request as a whole.
+     * @see #orderClose(Order)
+     */
+    public BatchResults<Void> orderCloseAll(Collection<Order> orders) throws JsonProcessingException, MT4Exception {
+        List<ObjectNode> requests = new ArrayList<>(orders.size());
+        for (Order order : orders) {
+            requests.add(buildOrderCloseRequest(order.getTicket()));
+        }
+        try {
+            BatchResults<Void> results = this.<JsonNode>getResponses(requests,
+                    objectMapper.constructType(JsonNode.class)).map(response -> null);
+            int i = 0;
+            for (Order order : orders) {
+                if (results.getError(i++) == null) {
+                    observeClosed(order.getTicket());
+                }
+            }
+            return results;
+        }
+        finally {
+            observeTrade();
+        }
+    }
 
-        // throw exception for any errors
-        JsonNode errorCode = response.get(ERROR_CODE);
-        JsonNode errorCodeDescription = response.get(ERROR_CODE_DESCRIPTION);
-        JsonNode errorMessage = response.get(ERROR_MESSAGE);
-        if (errorCode != null || errorCodeDescription != null || errorMessage != null) {
-            throw objectMapper.convertValue(response, MT4Exception.class);
+    /**
+     * Invalidate the cached account values, if any, after an order operation.
+     */
+    void observeTrade() {
+        AccountCache cache = accountCache;
+        if (cache != null) {
+            cache.invalidate();
+        }
+    }
+
+    /**
+     * Let the account cache, if any, track the open positions among the orders of the account.
+     *
+     * @param orders The open and pending orders.
+     * @return The orders.
+     */
+    List<Order> observeOpenOrders(List<Order> orders) {
+        AccountCache cache = accountCache;
+        if (cache != null) {
+            cache.setPositions(orders);
+        }
+        return orders;
+    }
+
+    /**
+     * Let the account cache, if any, track whether an order returned by the server is an open position.
+     *
+     * @param order The order.
+     * @return The order.
+     */
+    Order observeOrder(Order order) {
+        AccountCache cache = accountCache;
+        if (cache != null && order != null) {
+            cache.updatePosition(order);
         }
+        return order;
+    }
 
-        // log any warnings
-        if (response.has(WARNING)) {
-            LOG.warn(response.get(WARNING).asText());
+    /**
+     * @see #observeOrder(Order)
+     */
+    BatchResults<Order> observeOrders(BatchResults<Order> results) throws MT4Exception {
+        for (int i = 0; i < results.size(); i++) {
+            if (results.getError(i) == null) {
+                observeOrder(results.get(i));
+            }
         }
+        return results;
+    }
 
-        // unwrap the response
-        return response.get(RESPONSE);
+    /**
+     * Let the account cache, if any, forget an order which was closed or deleted.
+     *
+     * @param ticket The ticket number.
+     */
+    void observeClosed(int ticket) {
+        AccountCache cache = accountCache;
+        if (cache != null) {
+            cache.removePosition(ticket);
+        }
+    }
+
+    /**
+     * Let the account cache, if any, invalidate its values if the price of an open position moved.
+     *
+     * @param symbol The name of the symbol.
+     * @param bid    The latest bid price.
+     * @param ask    The latest ask price.
+     */
+    void observeTick(String symbol, double bid, double ask) {
+        AccountCache cache = accountCache;
+        if (cache != null) {
+            cache.onTick(symbol, bid, ask);
+        }
+    }
+
+    /**
+     * @see #observeTick(String, double, double)
+     */
+    Map<String, SymbolTick> observeTicks(Map<String, SymbolTick> ticks) {
+        if (accountCache != null) {
+            ticks.forEach((symbol, tick) -> observeTick(symbol, tick.bid, tick.ask));
+        }
+        return ticks;
+    }
+
+    /**
+     * Build a request for the market info of the given symbols.
+     *
+     * @param names The names of the symbols.
+     * @return The request object.
+     */
+    static ObjectNode buildSymbolsRequest(String... names) {
+        ArrayNode namesArray = JsonNodeFactory.instance.arrayNode(names.length);
+        for (String name : names) {
+            namesArray.add(name);
+        }
+        return Request.GET_SYMBOL_INFO.build()
+                .set(NAMES, namesArray);
+    }
+
+    /**
+     * Build a request for the latest tick of the given symbol.
+     *
+     * @param symbol The name of the symbol.
+     * @return The request object.
+     */
+    static ObjectNode buildSymbolTickRequest(String symbol) {
+        return Request.GET_SYMBOL_TICK.build()
+                .put(SYMBOL, symbol);
+    }
+
+    /**
+     * Build a request for the latest market prices of several symbols.
+     *
+     * @param symbols The names of the symbols.
+     * @return The request object.
+     */
+    static ObjectNode buildSymbolTicksRequest(String... symbols) {
+        ArrayNode namesArray = JsonNodeFactory.instance.arrayNode(symbols.length);
+        for (String symbol : symbols) {
+            namesArray.add(symbol);
+        }
+        return Request.GET_SYMBOL_TICKS.build()
+                .set(NAMES, namesArray);
+    }
+
+    /**
+     * Build a request for OHLCV data.
+     *
+     * @param symbol    The market symbol.
+     * @param timeframe The width of the bars.
+     * @param limit     The maximum number of bars to return.
+     * @param timeout   The timeout in milliseconds to wait for the broker's server to return the data.
+     * @return The request object.
+     */
+    static ObjectNode buildOHLCVRequest(String symbol, Timeframe timeframe, long limit, long timeout) {
+        return Request.GET_OHLCV.build()
+                .<ObjectNode>set(SYMBOL, TextNode.valueOf(symbol))
+                .<ObjectNode>set(TIMEFRAME, LongNode.valueOf(timeframe.getMinutes()))
+                .<ObjectNode>set(LIMIT, LongNode.valueOf(limit))
+                .set(TIMEOUT, LongNode.valueOf(timeout));
+    }
+
+    /**
+     * Build a request for the data of the given trading signals.
+     *
+     * @param names The names of the signals.
+     * @return The request object.
+     */
+    static ObjectNode buildSignalsRequest(String... names) {
+        ArrayNode namesArray = JsonNodeFactory.instance.arrayNode(names.length);
+        for (String name : names) {
+            namesArray.add(name);
+        }
+        return Request.GET_SIGNAL_INFO.build()
+                .set(NAMES, namesArray);
+    }
+
+    /**
+     * Build a request to run an indicator function.
+     *
+     * @param func    The {@link Indicator} to run.
+     * @param timeout The maximum milliseconds to wait for the symbol's chart data to load.
+     * @return The request object.
+     */
+    static ObjectNode buildIndicatorRequest(Indicator func, int timeout) {
+        return Request.RUN_INDICATOR.build()
+                .<ObjectNode>set(INDICATOR, TextNode.valueOf(func.getName()))
+                .<ObjectNode>set(ARGV, func.getArguments())
+                .set(TIMEOUT, IntNode.valueOf(timeout));
+    }
+
+    /**
+     * Build a request to run an indicator over a range of shifts.
+     *
+     * @param template  The indicator to run.  Its shift, the last argument, is left out of the request.
+     * @param fromShift The first shift.
+     * @param count     The number of shifts.
+     * @param timeout   The maximum milliseconds to wait for the symbol's chart data to load.
+     * @return The request object.
+     */
+    static ObjectNode buildIndicatorSeriesRequest(Indicator template, int fromShift, int count, int timeout) {
+        if (fromShift < 0 || count < 0) {
+            throw new IllegalArgumentException(String.format("Invalid shift range: from %d, count %d.", fromShift,
+                    count));
+        }
+        ArrayNode argv = template.getArguments().deepCopy();
+        argv.remove(argv.size() - 1);
+        return Request.RUN_INDICATOR_SERIES.build()
+                .<ObjectNode>set(INDICATOR, TextNode.valueOf(template.getName()))
+                .<ObjectNode>set(ARGV, argv)
+                .<ObjectNode>set(FROM_SHIFT, IntNode.valueOf(fromShift))
+                .<ObjectNode>set(COUNT, IntNode.valueOf(count))
+                .set(TIMEOUT, IntNode.valueOf(timeout));
+    }
+
+    /**
+     * Build a request for an order by ticket number.
+     *
+     * @param ticket The ticket number.
+     * @return The request object.
+     */
+    static ObjectNode buildOrderRequest(int ticket) {
+        return Request.GET_ORDER.build()
+                .set(TICKET, IntNode.valueOf(ticket));
+    }
+
+    /**
+     * Apply a history query to the orders received, in case the server ignored any of it.
+     *
+     * @param query  The filters and the maximum number of orders.
+     * @param orders The orders received.
+     * @return The matching orders in ascending ticket order, at most {@link HistoryQuery#limit}.
+     */
+    static List<Order> applyQuery(HistoryQuery query, Iterator<Order> orders) {
+        List<Order> matches = new ArrayList<>();
+        while (orders.hasNext()) {
+            Order order = orders.next();
+            if (query.matches(order)) {
+                matches.add(order);
+            }
+        }
+        matches.sort(Comparator.comparingInt(Order::getTicket));
+        if (query.limit != null && matches.size() > query.limit) {
+            matches.subList(query.limit, matches.size()).clear();
+        }
+        return matches;
+    }
+
+    /**
+     * Build a request for the orders in the Account History tab which match a query.
+     *
+     * @param query The filters and the maximum number of orders.
+     * @return The request object.
+     */
+    ObjectNode buildHistoricalOrdersRequest(HistoryQuery query) {
+        return Request.GET_HISTORICAL_ORDERS.build()
+                .setAll(objectMapper.<ObjectNode>valueToTree(query));
+    }
+
+    /**
+     * Build a request to create a new order.
+     *
+     * @param newOrder The {@link NewOrder new order request}.
+     * @return The request object.
+     */
+    ObjectNode buildOrderSendRequest(NewOrder newOrder) {
+        return Request.DO_ORDER_SEND.build()
+                .setAll(objectMapper.<ObjectNode>valueToTree(newOrder));
+    }
+
+    /**
+     * Build a request to modify an order.
+     *
+     * @param modifyOrder The {@link ModifyOrder modify-order request}.
+     * @return The request object.
+     */
+    ObjectNode buildOrderModifyRequest(ModifyOrder modifyOrder) {
+        return Request.DO_ORDER_MODIFY.build()
+                .setAll(objectMapper.<ObjectNode>valueToTree(modifyOrder));
+    }
+
+    /**
+     * Build a request to close an open order.
+     *
+     * @param ticket The ticket number.
+     * @return The request object.
+     */
+    static ObjectNode buildOrderCloseRequest(int ticket) {
+        return Request.DO_ORDER_CLOSE.build()
+                .set(TICKET, IntNode.valueOf(ticket));
+    }
+
+    /**
+     * Build a request to delete a pending order.
+     *
+     * @param ticket        The ticket number.
+     * @param closeIfOpened Whether to close the order at market price if it is open.
+     * @return The request object.
+     */
+    static ObjectNode buildOrderDeleteRequest(int ticket, boolean closeIfOpened) {
+        return Request.DO_ORDER_DELETE.build()
+                .<ObjectNode>set(TICKET, IntNode.valueOf(ticket))
+                .set(CLOSE_IF_OPENED, BooleanNode.valueOf(closeIfOpened));
+    }
+
+    /**
+     * Build a request which carries several other requests.
+     *
+     * @param requests The requests.
+     * @return The request object.
+     */
+    static ObjectNode buildBatchRequest(List<ObjectNode> requests) {
+        ObjectNode request = Request.BATCH.build();
+        request.putArray(REQUESTS).addAll(requests);
+        return request;
+    }
+
+    /**
+     * Send a request object to the server and wait for a response.
+     *
+     * @param request      The request to send.  Must have an `action` property.
+     * @param responseType The response type.
+     * @param <T>          The response type.
+     * @return The server response.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    <T> T getResponse(ObjectNode request, Class<T> responseType) throws JsonProcessingException, MT4Exception {
+        return getResponse(request, objectMapper.constructType(responseType));
+    }
+
+    /**
+     * Send a request object to the server and wait for a response.
+     *
+     * @param request      The request to send.  Must have an `action` property.
+     * @param responseType The response type.
+     * @param <T>          The response type.
+     * @return The server response.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    <T> T getResponse(ObjectNode request, TypeReference<T> responseType) throws JsonProcessingException, MT4Exception {
+        return getResponse(request, constructType(responseType));
+    }
+
+    /**
+     * Send a request template to the server and wait for a response.
+     *
+     * @param request      The request template to send.
+     * @param responseType The response type.
+     * @param <T>          The response type.
+     * @return The server response.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    <T> T getResponse(RequestTemplate request, Class<T> responseType) throws JsonProcessingException, MT4Exception {
+        AutoBatcher batcher = this.batcher;
+        if (batcher != null) {
+            return batcher.submit(request.toObjectNode(), objectMapper.constructType(responseType));
+        }
+        return parseResponse(request, connection.exchange(request), responseType);
+    }
+
+    /**
+     * Send a tick request to the server and read the response into a holder.  A successful JSON response is read
+     * without allocating; anything else goes through the general-purpose parser.
+     *
+     * @param request The tick request template.
+     * @param tick    The holder to fill in.
+     * @throws JsonProcessingException If JSON response fails to parse, or has no tick.
+     * @throws MT4Exception            If server had an error.
+     */
+    void readTick(RequestTemplate request, MutableTick tick) throws JsonProcessingException, MT4Exception {
+        SymbolTick parsed;
+        if (batcher != null) {
+            parsed = getResponse(request, SymbolTick.class);
+        }
+        else {
+            byte[] response = connection.exchange(request);
+            if (codec == WireCodec.JSON && capture == null && TickReader.read(response, tick)) {
+                return;
+            }
+            parsed = parseResponse(request, response, SymbolTick.class);
+        }
+        if (parsed == null) {
+            throw new JsonMappingException(null, "The tick response was null.");
+        }
+        tick.set(parsed);
+    }
+
+    private JsonNode getResponse(ObjectNode request) throws JsonProcessingException, MT4Exception {
+        return getResponse(request, objectMapper.constructType(JsonNode.class));
+    }
+
+    private <T> T getResponse(ObjectNode request, JavaType responseType) throws JsonProcessingException, MT4Exception {
+        AutoBatcher batcher = this.batcher;
+        if (batcher != null) {
+            return batcher.submit(request, responseType);
+        }
+        return exchange(request, responseType);
+    }
+
+    /**
+     * Send a request whose response is an array and wait for the response, but bind its elements only as they are
+     * iterated.  If a {@link WireCapture} or {@link AutoBatcher} is in use, the response is bound all at once instead.
+     *
+     * @param request     The request to send.  Must have an `action` property.
+     * @param elementType The element type.
+     * @param <T>         The element type.
+     * @return The elements of the server response.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     * @see ResponseElements
+     */
+    <T> Iterator<T> getResponseElements(ObjectNode request, Class<T> elementType) throws JsonProcessingException,
+            MT4Exception {
+        if (batcher != null || capture != null) {
+            List<T> elements = getResponse(request,
+                    objectMapper.getTypeFactory().constructCollectionType(List.class, elementType));
+            return elements == null ? Collections.emptyIterator() : elements.iterator();
+        }
+        return new ResponseElements<>(objectMapper, connection.exchange(request),
+                objectMapper.constructType(elementType));
+    }
+
+    /**
+     * Send several requests to the server in a single {@link Request#BATCH batch} and wait for their responses.  If
+     * the server doesn't support batches, the requests are sent one at a time, now and from then on.
+     *
+     * @param requests     The requests to send.  Each must have an `action` property.
+     * @param responseType The response type of every request.
+     * @param <T>          The response type.
+     * @return The response or error of each request.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error with the batch as a whole.
+     */
+    <T> BatchResults<T> getResponses(List<ObjectNode> requests, JavaType responseType) throws JsonProcessingException,
+            MT4Exception {
+        List<T> values = new ArrayList<>(requests.size());
+        List<MT4Exception> errors = new ArrayList<>(requests.size());
+        List<JsonNode> items = null;
+        if (batchSupported && requests.size() > 1) {
+            try {
+                items = getResponse(buildBatchRequest(requests), constructType(LIST_OF_NODES));
+            }
+            catch (MT4Exception e) {
+                if (e.errorCode != MT4Exception.Code.ERR_UNKNOWN_COMMAND) {
+                    throw e;
+                }
+                markBatchUnsupported();
+            }
+            if (items != null && items.size() != requests.size()) {
+                throw new IllegalStateException(String.format(
+                        "Expected %d batched responses but received %d.", requests.size(), items.size()));
+            }
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                values.add(items != null
+                        ? parseResponse(items.get(i), responseType)
+                        : getResponse(requests.get(i), responseType));
+                errors.add(null);
+            }
+            catch (MT4Exception e) {
+                values.add(null);
+                errors.add(e);
+            }
+        }
+        return new BatchResults<>(values, errors);
+    }
+
+    /**
+     * @return Whether the server accepts {@link Request#BATCH batches}.  False once it has rejected one.
+     */
+    boolean isBatchSupported() {
+        return batchSupported;
+    }
+
+    /**
+     * Remember that the server doesn't accept {@link Request#BATCH batches}.
+     */
+    void markBatchUnsupported() {
+        if (batchSupported) {
+            LOG.warn("Server does not support batches; sending requests one at a time.");
+            batchSupported = false;
+        }
+    }
+
+    /**
+     * Send a request object to the server and wait for a response, bypassing the {@link AutoBatcher}.
+     *
+     * @param request      The request to send.  Must have an `action` property.
+     * @param responseType The response type.
+     * @param <T>          The response type.
+     * @return The server response.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    <T> T exchange(ObjectNode request, JavaType responseType) throws JsonProcessingException, MT4Exception {
+        return parseResponse(request, null, connection.exchange(request), responseType);
+    }
+
+    /**
+     * @param type A type reference.
+     * @return The type which it refers to.
+     */
+    JavaType constructType(TypeReference<?> type) {
+        return objectMapper.getTypeFactory().constructType(type);
+    }
+
+    /**
+     * Bind symbols to this client from their metadata, as it was returned by the server.
+     *
+     * @param metadata A name-to-metadata object.
+     * @return A name-to-{@link Symbol} map.
+     * @throws IOException If the metadata is invalid.
+     */
+    Map<String, Symbol> toSymbols(JsonNode metadata) throws IOException {
+        return objectMapper.readerFor(MAP_OF_SYMBOLS).readValue(metadata);
+    }
+
+    /**
+     * Parse a serialized server response to a request, and capture the exchange if a {@link WireCapture} is set.
+     *
+     * @param request      The request which was sent.
+     * @param rawResponse  The response, serialized as UTF-8 JSON.
+     * @param responseType The response type.
+     * @param <T>          The response type.
+     * @return The server response.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    <T> T parseResponse(ObjectNode request, byte[] rawResponse, Class<T> responseType) throws JsonProcessingException,
+            MT4Exception {
+        return parseResponse(request, null, rawResponse, objectMapper.constructType(responseType));
+    }
+
+    /**
+     * Parse a serialized server response to a request, and capture the exchange if a {@link WireCapture} is set.
+     *
+     * @param request      The request which was sent.
+     * @param rawResponse  The response, serialized as UTF-8 JSON.
+     * @param responseType The response type.
+     * @param <T>          The response type.
+     * @return The server response.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    <T> T parseResponse(ObjectNode request, byte[] rawResponse, TypeReference<T> responseType)
+            throws JsonProcessingException, MT4Exception {
+        return parseResponse(request, null, rawResponse, constructType(responseType));
+    }
+
+    /**
+     * Parse a serialized server response to a request template, and capture the exchange if a {@link WireCapture} is
+     * set.
+     *
+     * @param request      The request template which was sent.
+     * @param rawResponse  The response, serialized as UTF-8 JSON.
+     * @param responseType The response type.
+     * @param <T>          The response type.
+     * @return The server response.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    <T> T parseResponse(RequestTemplate request, byte[] rawResponse, Class<T> responseType)
+            throws JsonProcessingException, MT4Exception {
+        return parseResponse(null, request, rawResponse, objectMapper.constructType(responseType));
+    }
+
+    private <T> T parseResponse(ObjectNode request, RequestTemplate template, byte[] rawResponse,
+                                JavaType responseType) throws JsonProcessingException, MT4Exception {
+        WireCapture capture = this.capture;
+        if (capture == null) {
+            return parseResponse(rawResponse, responseType);
+        }
+        boolean sampled = capture.sample();
+        try {
+            T response = parseResponse(rawResponse, responseType);
+            if (sampled) {
+                capture.record(codec, encode(request, template), rawResponse, false);
+            }
+            return response;
+        }
+        catch (JsonProcessingException | MT4Exception e) {
+            capture.record(codec, encode(request, template), rawResponse, true);
+            throw e;
+        }
+    }
+
+    private byte[] encode(ObjectNode request, RequestTemplate template) throws JsonProcessingException {
+        return template != null ? template.encode(codec) : objectMapper.writeValueAsBytes(request);
+    }
+
+    /**
+     * Parse a serialized server response.
+     *
+     * @param rawResponse  The response, serialized as UTF-8 JSON.
+     * @param responseType The response type.
+     * @param <T>          The response type.
+     * @return The server response.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    <T> T parseResponse(byte[] rawResponse, Class<T> responseType) throws JsonProcessingException, MT4Exception {
+        return parseResponse(rawResponse, objectMapper.constructType(responseType));
+    }
+
+    /**
+     * Parse a serialized server response.
+     *
+     * @param rawResponse  The response, serialized as UTF-8 JSON.
+     * @param responseType The response type.
+     * @param <T>          The response type.
+     * @return The server response.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    <T> T parseResponse(byte[] rawResponse, TypeReference<T> responseType) throws JsonProcessingException,
+            MT4Exception {
+        return parseResponse(rawResponse, constructType(responseType));
+    }
+
+    /**
+     * Parse a serialized server response.
+     *
+     * @param rawResponse The response, serialized as UTF-8 JSON.
+     * @return The unwrapped server response.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    JsonNode parseResponse(byte[] rawResponse) throws JsonProcessingException, MT4Exception {
+        return parseResponse(rawResponse, JsonNode.class);
+    }
+
+    /**
+     * Parse one item of the response to a {@link Request#BATCH batch}, which has the same form as a whole response.
+     *
+     * @param item         The response item.
+     * @param responseType The response type.
+     * @param <T>          The response type.
+     * @return The server response.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    <T> T parseResponse(JsonNode item, JavaType responseType) throws JsonProcessingException, MT4Exception {
+        try {
+            return parseResponse(objectMapper.treeAsTokens(item), responseType);
+        }
+        catch (JsonProcessingException e) {
+            throw e;
+        }
+        catch (IOException e) {
+            // not thrown when parsing from memory
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> T parseResponse(byte[] rawResponse, JavaType responseType) throws JsonProcessingException,
+            MT4Exception {
+        try {
+            return parseResponse(objectMapper.createParser(rawResponse), responseType);
+        }
+        catch (JsonProcessingException e) {
+            throw e;
+        }
+        catch (IOException e) {
+            // not thrown when parsing from memory
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Parse a server response in a single pass, binding the unwrapped response directly to its type rather than first
+     * reading the whole response into a tree.  If the response doesn't bind, the rest is still read, so that a server
+     * error which follows it is thrown instead.
+     *
+     * @param source       The parser of the response, which is closed when done.
+     * @param responseType The response type.
+     * @param <T>          The response type.
+     * @return The server response.
+     * @throws IOException  If JSON response fails to parse.
+     * @throws MT4Exception If server had an error.
+     */
+    private <T> T parseResponse(JsonParser source, JavaType responseType) throws IOException, MT4Exception {
+        T response = null;
+        MT4Exception.Builder error = null;
+        JsonMappingException bindFailure = null;
+        try (JsonParser parser = source) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Response is not a JSON object.");
+            }
+            JsonStreamContext envelope = parser.getParsingContext();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                switch (fieldName) {
+                    case RESPONSE:
+                        try {
+                            response = objectMapper.readValue(parser, responseType);
+                        }
+                        catch (JsonMappingException e) {
+                            // skip the rest of the response, wherever binding stopped
+                            bindFailure = e;
+                            while (parser.getParsingContext() != envelope) {
+                                if (parser.nextToken() == null) {
+                                    throw e;
+                                }
+                            }
+                        }
+                        break;
+                    case ERROR_CODE:
+                        error = error == null ? MT4Exception.Builder.newInstance() : error;
+                        error.setErrorCode(parser.getValueAsInt());
+                        break;
+                    case ERROR_CODE_DESCRIPTION:
+                        error = error == null ? MT4Exception.Builder.newInstance() : error;
+                        error.setErrorCodeDescription(parser.getValueAsString());
+                        break;
+                    case ERROR_MESSAGE:
+                        error = error == null ? MT4Exception.Builder.newInstance() : error;
+                        error.setMessage(parser.getValueAsString());
+                        break;
+                    case WARNING:
+                        LOG.warn(parser.getValueAsString());
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+
+        // throw exception for any errors
+        if (error != null) {
+            MT4Exception exc = error.build();
+            if (bindFailure != null) {
+                exc.addSuppressed(bindFailure);
+            }
+            throw exc;
+        }
+        if (bindFailure != null) {
+            throw bindFailure;
+        }
+        return response;
     }
 }
@@ -0,0 +1,298 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.zeromq.ZContext;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static human.coejoder.mt4client.MT4Client.DEFAULT_REQUEST_TIMEOUT_MILLIS;
+import static human.coejoder.mt4client.MT4Client.DEFAULT_RESPONSE_TIMEOUT_MILLIS;
+
+/**
+ * A fixed-size pool of {@link MT4Client MT4Clients} for use by multiple threads.
+ * <p>
+ * An {@link MT4Client} is not thread-safe, so each thread must {@link #lease() lease} a client for exclusive use and
+ * return it by closing the {@link Lease}.  All clients share a single ZeroMQ context.  Waiting threads are served in
+ * the order they arrived.
+ * <p>
+ * Query interfaces obtained from a leased client (e.g. {@link Account}, {@link Symbol}) make their own requests
+ * through that client, so they must not be used after the lease is returned.  When a lease is returned, the caches,
+ * auto-batcher and wire capture set on its client are dropped, and its wire codec is switched back to JSON, so that
+ * none of them is handed to the next lessee.
+ * <p>
+ * Each leased client blocks its thread inside a REQ socket, so virtual threads should use {@link
+ * MT4AsyncClient#blocking()} instead.  A client whose last exchange failed (e.g. timed out) is reconnected when its
+ * lease is returned, as its REQ socket can't send again; so is a client whose codec couldn't be switched back.
+ */
+public class MT4ClientPool implements AutoCloseable {
+
+    private static final long DEFAULT_LEASE_TIMEOUT_MILLIS = 10000;
+
+    private final ZContext context;
+    private final List<MT4Client> clients;
+    private final Map<MT4Client, ReqConnection> connections;
+    private final BlockingQueue<MT4Client> idle;
+    private final long leaseTimeoutMs;
+    private final long createdNanos = System.nanoTime();
+    private final LongAdder leases = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder totalLeasedNanos = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+
+    /**
+     * Constructor.  Initialize the clients and connect them to the MT4 server.
+     *
+     * @param address           The address of the server's listening socket.
+     * @param size              The number of clients in the pool.
+     * @param requestTimeoutMs  The number of milliseconds to wait for a request to be sent.
+     * @param responseTimeoutMs The number of milliseconds to wait for a response to be received.
+     * @param leaseTimeoutMs    The number of milliseconds {@link #lease()} waits for a client to become available.
+     */
+    public MT4ClientPool(String address, int size, int requestTimeoutMs, int responseTimeoutMs, long leaseTimeoutMs) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + size);
+        }
+        this.context = new ZContext();
+        this.clients = new ArrayList<>(size);
+        this.connections = new IdentityHashMap<>(size);
+        this.idle = new ArrayBlockingQueue<>(size, true);
+        this.leaseTimeoutMs = leaseTimeoutMs;
+        for (int i = 0; i < size; i++) {
+            ReqConnection connection = new ReqConnection(context, address, requestTimeoutMs, responseTimeoutMs);
+            MT4Client client = new MT4Client(connection);
+            clients.add(client);
+            connections.put(client, connection);
+            idle.add(client);
+        }
+    }
+
+    /**
+     * Constructor.  Uses a default request timeout, response timeout and lease timeout.
+     *
+     * @see #MT4ClientPool(String, int, int, int, long)
+     */
+    public MT4ClientPool(String address, int size) {
+        this(address, size, DEFAULT_REQUEST_TIMEOUT_MILLIS, DEFAULT_RESPONSE_TIMEOUT_MILLIS,
+                DEFAULT_LEASE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Lease a client, waiting at most the pool's lease timeout for one to become available.
+     *
+     * @return The lease, which must be closed to return the client to the pool.
+     * @throws InterruptedException If interrupted while waiting.
+     * @throws TimeoutException     If no client became available in time.
+     */
+    public Lease lease() throws InterruptedException, TimeoutException {
+        return lease(leaseTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lease a client.
+     *
+     * @param timeout How long to wait for a client to become available.
+     * @param unit    The unit of the timeout.
+     * @return The lease, which must be closed to return the client to the pool.
+     * @throws InterruptedException If interrupted while waiting.
+     * @throws TimeoutException     If no client became available in time.
+     */
+    public Lease lease(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+        long start = System.nanoTime();
+        MT4Client client = idle.poll(timeout, unit);
+        long waitNanos = System.nanoTime() - start;
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+        if (client == null) {
+            timeouts.increment();
+            throw new TimeoutException(String.format("No client available after %d %s.", timeout, unit));
+        }
+        leases.increment();
+        return new Lease(client);
+    }
+
+    /**
+     * Get a snapshot of the pool's usage statistics.
+     *
+     * @return The pool metrics.
+     */
+    public Metrics getMetrics() {
+        return new Metrics(this);
+    }
+
+    /**
+     * Disconnect all clients from the server, whether or not they are leased.
+     */
+    public void shutdown() {
+        clients.forEach(MT4Client::shutdown);
+        context.destroy();
+    }
+
+    @Override
+    public void close() {
+        shutdown();
+    }
+
+    /**
+     * Exclusive use of a pooled client.  Closing the lease returns the client to the pool; the client itself must not
+     * be shut down.
+     */
+    public class Lease implements AutoCloseable {
+
+        private final MT4Client client;
+        private final long leasedNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(MT4Client client) {
+            this.client = client;
+        }
+
+        /**
+         * Get the leased client.
+         *
+         * @return The client.
+         * @throws IllegalStateException If the lease has been closed.
+         */
+        public MT4Client getClient() {
+            if (released.get()) {
+                throw new IllegalStateException("Lease has been closed.");
+            }
+            return client;
+        }
+
+        @Override
+        public void close() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            totalLeasedNanos.add(System.nanoTime() - leasedNanos);
+            client.clearState();
+            ReqConnection connection = connections.get(client);
+            if (!connection.isFailed() && client.getCodec() != WireCodec.JSON) {
+                try {
+                    client.negotiateCodec(WireCodec.JSON);
+                }
+                catch (JsonProcessingException | RuntimeException e) {
+                    // the client is reconnected instead
+                }
+            }
+            if (connection.isFailed() || client.getCodec() != WireCodec.JSON) {
+                connection.reconnect();
+                client.resetCodec();
+                reconnects.increment();
+            }
+            idle.add(client);
+        }
+    }
+
+    /**
+     * A snapshot of a pool's usage statistics.
+     */
+    public static class Metrics {
+
+        private final int size;
+        private final int active;
+        private final long leases;
+        private final long timeouts;
+        private final long totalWaitNanos;
+        private final long maxWaitNanos;
+        private final long reconnects;
+        private final double utilization;
+
+        private Metrics(MT4ClientPool pool) {
+            this.size = pool.clients.size();
+            this.active = size - pool.idle.size();
+            this.leases = pool.leases.sum();
+            this.timeouts = pool.timeouts.sum();
+            this.totalWaitNanos = pool.totalWaitNanos.sum();
+            this.maxWaitNanos = pool.maxWaitNanos.get();
+            this.reconnects = pool.reconnects.sum();
+            long elapsedNanos = System.nanoTime() - pool.createdNanos;
+            this.utilization = elapsedNanos == 0 ? 0 : (double) pool.totalLeasedNanos.sum() / (elapsedNanos * size);
+        }
+
+        /**
+         * @return The number of clients in the pool.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * @return The number of clients currently leased.
+         */
+        public int getActive() {
+            return active;
+        }
+
+        /**
+         * @return The number of successful leases.
+         */
+        public long getLeases() {
+            return leases;
+        }
+
+        /**
+         * @return The number of lease attempts which timed out.
+         */
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * @return The mean time spent waiting for a lease, in nanoseconds, including attempts which timed out.
+         */
+        public double getMeanWaitNanos() {
+            long attempts = leases + timeouts;
+            return attempts == 0 ? 0 : (double) totalWaitNanos / attempts;
+        }
+
+        /**
+         * @return The longest time spent waiting for a lease, in nanoseconds.
+         */
+        public long getMaxWaitNanos() {
+            return maxWaitNanos;
+        }
+
+        /**
+         * @return The number of clients reconnected because their last exchange failed, or their wire codec couldn't be
+         * switched back to JSON.
+         */
+        public long getReconnects() {
+            return reconnects;
+        }
+
+        /**
+         * @return The fraction of the pool's total capacity, over its lifetime, during which clients were leased.
+         * Leases which are still open are not counted.
+         */
+        public double getUtilization() {
+            return utilization;
+        }
+
+        @Override
+        public String toString() {
+            return "Metrics{" +
+                    "size=" + size +
+                    ", active=" + active +
+                    ", leases=" + leases +
+                    ", timeouts=" + timeouts +
+                    ", meanWaitNanos=" + getMeanWaitNanos() +
+                    ", maxWaitNanos=" + maxWaitNanos +
+                    ", reconnects=" + reconnects +
+                    ", utilization=" + utilization +
+                    '}';
+        }
+    }
+}
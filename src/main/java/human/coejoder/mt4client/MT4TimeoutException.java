@@ -0,0 +1,20 @@
+package human.coejoder.mt4client;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Thrown by a blocking call when its request could not be sent to the MT4 server, or was not answered, in time.
+ *
+ * @see MT4AsyncClient#blocking()
+ */
+public class MT4TimeoutException extends RuntimeException {
+
+    /**
+     * Constructor.
+     *
+     * @param cause The timeout of the request.
+     */
+    MT4TimeoutException(TimeoutException cause) {
+        super(cause.getMessage(), cause);
+    }
+}
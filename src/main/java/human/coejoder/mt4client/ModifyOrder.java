@@ -114,9 +114,9 @@ public class ModifyOrder {
     public final Double sl;
     public final Double tp;
     @JsonProperty("sl_points")
-    public final int slPoints;
+    public final Integer slPoints;
     @JsonProperty("tp_points")
-    public final int tpPoints;
+    public final Integer tpPoints;
 
     private ModifyOrder(Builder builder) {
         this.ticket = builder.ticket;
@@ -0,0 +1,74 @@
+package human.coejoder.mt4client;
+
+/**
+ * A reusable holder of the latest prices of a symbol, which {@link Symbol#readTick(MutableTick)} fills in without
+ * allocating.  Not thread-safe; each polling thread should keep its own.
+ *
+ * @see SymbolTick
+ */
+public class MutableTick {
+
+    private int time;
+    private double bid;
+    private double ask;
+    private double last;
+    private int volume;
+
+    /**
+     * @return The time of the last prices update.
+     */
+    public int getTime() {
+        return time;
+    }
+
+    /**
+     * @return The current bid price.
+     */
+    public double getBid() {
+        return bid;
+    }
+
+    /**
+     * @return The current ask price.
+     */
+    public double getAsk() {
+        return ask;
+    }
+
+    /**
+     * @return The price of the last deal (Last).
+     */
+    public double getLast() {
+        return last;
+    }
+
+    /**
+     * @return The volume for the current last price.
+     */
+    public int getVolume() {
+        return volume;
+    }
+
+    void set(int time, double bid, double ask, double last, int volume) {
+        this.time = time;
+        this.bid = bid;
+        this.ask = ask;
+        this.last = last;
+        this.volume = volume;
+    }
+
+    void set(SymbolTick tick) {
+        set(tick.time, tick.bid, tick.ask, tick.last, tick.volume);
+    }
+
+    @Override
+    public String toString() {
+        return "MutableTick{" +
+                "time=" + time +
+                ", bid=" + bid +
+                ", ask=" + ask +
+                ", last=" + last +
+                ", volume=" + volume +
+                '}';
+    }
+}
@@ -3,6 +3,10 @@ package human.coejoder.mt4client;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
 /**
  * Represents an order in MetaTrader 4.
  *
@@ -16,6 +20,7 @@ public class Order {
     private static final String CLOSE_PRICE = "close_price";
     private static final String OPEN_TIME = "open_time";
     private static final String CLOSE_TIME = "close_time";
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM.dd HH:mm:ss");
 
     private final int ticket;
     private final int magicNumber;
@@ -171,6 +176,34 @@ public class Order {
         return closeTime;
     }
 
+    /**
+     * The close date/time, in seconds since 1970.01.01.
+     *
+     * @return <code>OrderCloseTime()</code>, or 0 if the order is open.
+     */
+    public long getCloseTimeSeconds() {
+        return toSeconds(closeTime);
+    }
+
+    /**
+     * @param time A date/time formatted by <code>TimeToStr(time, TIME_DATE|TIME_SECONDS)</code>.
+     * @return The date/time in seconds since 1970.01.01, or 0 if it is missing.
+     */
+    static long toSeconds(String time) {
+        if (time == null || time.isEmpty()) {
+            return 0;
+        }
+        return LocalDateTime.parse(time, TIME_FORMAT).toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * @param seconds A date/time in seconds since 1970.01.01.
+     * @return The date/time as formatted by <code>TimeToStr(time, TIME_DATE|TIME_SECONDS)</code>.
+     */
+    static String toTimeString(long seconds) {
+        return LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC).format(TIME_FORMAT);
+    }
+
     /**
      * The expiration date/time.
      *
@@ -0,0 +1,44 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+/**
+ * The values of several integer and double properties, as sent by the server in request order.
+ *
+ * @see SymbolSnapshot
+ * @see AccountSnapshot
+ */
+class PropertyValues {
+
+    static final String INTEGER_PROPERTY_IDS = "integer_property_ids";
+    static final String DOUBLE_PROPERTY_IDS = "double_property_ids";
+
+    final long[] integers;
+    final double[] doubles;
+
+    /**
+     * Package-private constructor.
+     *
+     * @param integers The integer values.
+     * @param doubles  The double values.
+     */
+    @JsonCreator
+    PropertyValues(long[] integers, double[] doubles) {
+        this.integers = integers == null ? new long[0] : integers;
+        this.doubles = doubles == null ? new double[0] : doubles;
+    }
+
+    /**
+     * Check that the server sent a value for each requested property.
+     *
+     * @param integerCount The number of integer properties requested.
+     * @param doubleCount  The number of double properties requested.
+     * @throws IllegalStateException If the number of values doesn't match.
+     */
+    void checkCounts(int integerCount, int doubleCount) {
+        if (integers.length != integerCount || doubles.length != doubleCount) {
+            throw new IllegalStateException(String.format("Expected %d integer and %d double values but received " +
+                    "%d and %d.", integerCount, doubleCount, integers.length, doubles.length));
+        }
+    }
+}
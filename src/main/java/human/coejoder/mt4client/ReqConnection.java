@@ -0,0 +1,145 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@link Connection} over a REQ socket.  Each request must be answered before the next one can be sent.
+ * <p>
+ * The calling thread blocks inside the socket while waiting for the response, which pins a virtual thread to its
+ * carrier.  Virtual threads should share a {@link DealerConnection} instead.
+ * <p>
+ * A REQ socket can't send another request until it has received the response to the last one, so once an exchange
+ * has {@link #isFailed() failed} (e.g. timed out), the connection must be {@link #reconnect() reconnected}.
+ */
+class ReqConnection implements Connection {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReqConnection.class);
+    private static final AtomicBoolean VIRTUAL_THREAD_WARNED = new AtomicBoolean();
+    private static final int ENABLED = 1;
+
+    private final ZContext context;
+    private final boolean ownsContext;
+    private final String address;
+    private final int requestTimeoutMs;
+    private final int responseTimeoutMs;
+    private final RequestBuffer buffer = new RequestBuffer();
+    private ZMQ.Socket socket;
+    private WireCodec codec = WireCodec.JSON;
+    private boolean failed;
+
+    /**
+     * Constructor.  Initialize the REQ socket in its own context and connect to the MT4 server.
+     *
+     * @param address           The address of the server's listening socket.
+     * @param requestTimeoutMs  The number of milliseconds to wait for a request to be sent.
+     * @param responseTimeoutMs The number of milliseconds to wait for a response to be received.
+     */
+    ReqConnection(String address, int requestTimeoutMs, int responseTimeoutMs) {
+        this(new ZContext(), true, address, requestTimeoutMs, responseTimeoutMs);
+    }
+
+    /**
+     * Constructor.  Initialize the REQ socket in a shared context and connect to the MT4 server.  The context is not
+     * destroyed when this connection is closed.
+     *
+     * @param context           The shared context.
+     * @param address           The address of the server's listening socket.
+     * @param requestTimeoutMs  The number of milliseconds to wait for a request to be sent.
+     * @param responseTimeoutMs The number of milliseconds to wait for a response to be received.
+     */
+    ReqConnection(ZContext context, String address, int requestTimeoutMs, int responseTimeoutMs) {
+        this(context, false, address, requestTimeoutMs, responseTimeoutMs);
+    }
+
+    private ReqConnection(ZContext context, boolean ownsContext, String address, int requestTimeoutMs,
+                          int responseTimeoutMs) {
+        this.context = context;
+        this.ownsContext = ownsContext;
+        this.address = address;
+        this.requestTimeoutMs = requestTimeoutMs;
+        this.responseTimeoutMs = responseTimeoutMs;
+        this.socket = connect();
+    }
+
+    private ZMQ.Socket connect() {
+        // create and configure REQ socket
+        ZMQ.Socket req = context.createSocket(SocketType.REQ);
+        req.setSndHWM(ENABLED);
+        req.setRcvHWM(ENABLED);
+        req.setSendTimeOut(requestTimeoutMs);
+        req.setReceiveTimeOut(responseTimeoutMs);
+
+        // connect to server
+        req.connect(address);
+        return req;
+    }
+
+    @Override
+    public byte[] exchange(ObjectNode request) {
+        checkThread();
+        buffer.serialize(request);
+        failed = true;
+        socket.send(buffer.array(), 0, buffer.size(), 0);
+        return receive();
+    }
+
+    @Override
+    public byte[] exchange(RequestTemplate request) {
+        checkThread();
+        failed = true;
+        socket.send(request.encode(codec), 0);
+        return receive();
+    }
+
+    private byte[] receive() {
+        byte[] response = socket.recv();
+        failed = response == null;
+        return response;
+    }
+
+    /**
+     * @return Whether the last exchange failed to receive a response, which leaves the socket unable to send.
+     */
+    boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Replace the socket with a new one, so that a response still due to the old one is never received.
+     */
+    void reconnect() {
+        context.destroySocket(socket);
+        socket = connect();
+        failed = false;
+    }
+
+    private static void checkThread() {
+        if (Threads.isVirtual(Thread.currentThread()) && VIRTUAL_THREAD_WARNED.compareAndSet(false, true)) {
+            LOG.warn("MT4Client is blocking a virtual thread on a REQ socket, which pins its carrier thread.  " +
+                    "Use MT4AsyncClient.blocking() to share one I/O thread instead.");
+        }
+    }
+
+    @Override
+    public void setCodec(WireCodec codec) {
+        this.codec = codec;
+        buffer.setCodec(codec);
+    }
+
+    @Override
+    public void close() {
+        if (ownsContext) {
+            context.destroy();
+        }
+        else {
+            context.destroySocket(socket);
+        }
+    }
+}
@@ -1,20 +1,32 @@
 package human.coejoder.mt4client;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 /**
  * Types of MT4 server requests.
+ * <p>
+ * A request may carry a numeric {@value #REQUEST_ID} property.  Servers which support this extension echo it as the
+ * first property of the response, so that responses can be matched to requests when more than one request is
+ * outstanding on a connection.  Servers which don't support it ignore the property and answer in request order.
+ * <p>
+ * A {@link #BATCH} request carries other requests in its `requests` array.  Its response is an array holding the
+ * response of each request in order, each in the same form as a whole response, so that one request can fail without
+ * failing the others.
  */
 public enum Request {
     GET_ACCOUNT_INFO,
     GET_ACCOUNT_INFO_INTEGER,
     GET_ACCOUNT_INFO_DOUBLE,
+    GET_ACCOUNT_INFO_SNAPSHOT,
     GET_SYMBOL_INFO,
     GET_SYMBOL_MARKET_INFO,
     GET_SYMBOL_INFO_INTEGER,
     GET_SYMBOL_INFO_DOUBLE,
+    GET_SYMBOL_INFO_SNAPSHOT,
     GET_SYMBOL_TICK,
+    GET_SYMBOL_TICKS,
     GET_ORDER,
     GET_ORDERS,
     GET_HISTORICAL_ORDERS,
@@ -26,9 +38,14 @@ public enum Request {
     DO_ORDER_CLOSE,
     DO_ORDER_DELETE,
     DO_ORDER_MODIFY,
-    RUN_INDICATOR;
+    RUN_INDICATOR,
+    RUN_INDICATOR_SERIES,
+    BATCH,
+    SET_WIRE_CODEC;
 
     private static final String ACTION = "action";
+    private static final String READ_ONLY_PREFIX = "GET_";
+    static final String REQUEST_ID = "request_id";
 
     /**
      * Initialize a JSON request object.
@@ -39,4 +56,28 @@ public enum Request {
         return JsonNodeFactory.instance.objectNode()
                 .put(ACTION, Request.this.toString());
     }
+
+    /**
+     * @return Whether requests of this type only read data, so that identical requests may share one response.
+     */
+    public boolean isReadOnly() {
+        return name().startsWith(READ_ONLY_PREFIX);
+    }
+
+    /**
+     * @param request A JSON request object.
+     * @return Whether the request only reads data.
+     * @see #isReadOnly()
+     */
+    static boolean isReadOnly(JsonNode request) {
+        return request.path(ACTION).asText().startsWith(READ_ONLY_PREFIX);
+    }
+
+    /**
+     * @param request A JSON request object.
+     * @return Whether the request is of this type.
+     */
+    boolean isTypeOf(JsonNode request) {
+        return toString().equals(request.path(ACTION).asText());
+    }
 }
@@ -0,0 +1,126 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A reusable buffer into which requests are encoded, so that they can be sent straight from its backing array.  Not
+ * thread-safe; each connection encodes into its own buffer.
+ */
+class RequestBuffer extends ByteArrayOutputStream {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final byte[] ID_PREFIX = (",\"" + Request.REQUEST_ID + "\":").getBytes(UTF_8);
+
+    private WireCodec codec;
+    private ObjectWriter writer;
+
+    RequestBuffer() {
+        super(INITIAL_CAPACITY);
+        setCodec(WireCodec.JSON);
+    }
+
+    /**
+     * Set the codec used by later calls to {@link #serialize(ObjectNode)}.
+     *
+     * @param codec The codec.
+     */
+    void setCodec(WireCodec codec) {
+        if (this.codec != codec) {
+            this.codec = codec;
+            this.writer = codec.writer();
+        }
+    }
+
+    /**
+     * Encode a request, replacing the buffer's contents.
+     *
+     * @param request The request.
+     */
+    void serialize(ObjectNode request) {
+        reset();
+        try {
+            writer.writeValue(this, request);
+        }
+        catch (IOException e) {
+            // not thrown when writing to memory
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Encode a request stamped with a {@link Request#REQUEST_ID request id}, replacing the buffer's contents.  The
+     * request itself is not modified: a JSON encoding has the id patched in before its closing brace, and any other
+     * encoding is of a stamped copy.
+     *
+     * @param request   The request.
+     * @param requestId The request id.  Must not be negative.
+     */
+    void serialize(ObjectNode request, long requestId) {
+        if (codec != WireCodec.JSON || request.isEmpty() || request.has(Request.REQUEST_ID)) {
+            serialize(request.deepCopy().put(Request.REQUEST_ID, requestId));
+            return;
+        }
+        serialize(request);
+        count--;
+        writeId(requestId);
+    }
+
+    /**
+     * Encode a request template stamped with a {@link Request#REQUEST_ID request id}, replacing the buffer's contents.
+     * A JSON template's encoding is reused, with the id patched in before its closing brace.
+     *
+     * @param template  The request template.
+     * @param requestId The request id.  Must not be negative.
+     */
+    void serialize(RequestTemplate template, long requestId) {
+        if (codec != WireCodec.JSON) {
+            serialize(template.toObjectNode().put(Request.REQUEST_ID, requestId));
+            return;
+        }
+        reset();
+        byte[] encoding = template.encode(codec);
+        write(encoding, 0, encoding.length - 1);
+        writeId(requestId);
+    }
+
+    /**
+     * Append a request id property and the closing brace of the request.
+     */
+    private void writeId(long requestId) {
+        write(ID_PREFIX, 0, ID_PREFIX.length);
+        writeDigits(requestId);
+        write('}');
+    }
+
+    private void writeDigits(long value) {
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            write((int) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * Get the backing array.  Only the first {@link #size()} bytes are valid, and only until the next call to {@link
+     * #serialize(ObjectNode)}.
+     *
+     * @return The backing array.
+     */
+    byte[] array() {
+        return buf;
+    }
+
+    @Override
+    public String toString() {
+        return codec.toLogString(buf, 0, count);
+    }
+}
@@ -0,0 +1,74 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable request whose properties never change, such as a tick request for a particular symbol.  It is encoded
+ * at most once per {@link WireCodec}, and the encoding is reused every time the request is sent.
+ * <p>
+ * This class is thread-safe.
+ */
+final class RequestTemplate {
+
+    private final ObjectNode request;
+    private final AtomicReferenceArray<byte[]> encodings = new AtomicReferenceArray<>(WireCodec.values().length);
+
+    /**
+     * Package-private constructor.
+     *
+     * @param request The request.  Must have an `action` property.  It is copied, so later changes to it have no
+     *                effect on the template.
+     */
+    RequestTemplate(ObjectNode request) {
+        this.request = request.deepCopy();
+    }
+
+    /**
+     * Get the encoded request.  The returned array must not be modified.
+     *
+     * @param codec The wire codec.
+     * @return The encoded request.
+     */
+    byte[] encode(WireCodec codec) {
+        byte[] encoding = encodings.get(codec.ordinal());
+        if (encoding == null) {
+            try {
+                encoding = codec.writer().writeValueAsBytes(request);
+            }
+            catch (JsonProcessingException e) {
+                // not thrown when writing a tree to memory
+                throw new UncheckedIOException(e);
+            }
+            encodings.set(codec.ordinal(), encoding);
+        }
+        return encoding;
+    }
+
+    /**
+     * Get the request itself.  The returned request must not be modified.
+     *
+     * @return The request.
+     */
+    JsonNode getRequest() {
+        return request;
+    }
+
+    /**
+     * Get a mutable copy of the request, for adding properties to.
+     *
+     * @return The request.
+     */
+    ObjectNode toObjectNode() {
+        return request.deepCopy();
+    }
+
+    @Override
+    public String toString() {
+        return request.toString();
+    }
+}
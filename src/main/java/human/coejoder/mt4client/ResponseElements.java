@@ -0,0 +1,151 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The elements of a serialized server response which is an array, bound to their type one at a time as they are
+ * iterated, so that only one element is held in memory at once.
+ * <p>
+ * Errors which precede the array are thrown when the response is opened.  Failures while iterating are thrown as an
+ * {@link UncheckedIOException} if the response fails to parse, or an {@link IllegalStateException} caused by an {@link
+ * MT4Exception} if the server reported an error after the array.
+ */
+final class ResponseElements<T> implements Iterator<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseElements.class);
+    private static final String RESPONSE = "response";
+    private static final String WARNING = "warning";
+
+    private final ObjectMapper objectMapper;
+    private final JavaType elementType;
+    private final JsonParser parser;
+    private MT4Exception.Builder error;
+    private boolean inArray;
+    private boolean peeked;
+
+    /**
+     * Package-private constructor.  Read the response up to the first element.
+     *
+     * @param objectMapper The object mapper of the response's wire codec.
+     * @param rawResponse  The serialized response.
+     * @param elementType  The element type.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    ResponseElements(ObjectMapper objectMapper, byte[] rawResponse, JavaType elementType)
+            throws JsonProcessingException, MT4Exception {
+        this.objectMapper = objectMapper;
+        this.elementType = elementType;
+        try {
+            this.parser = objectMapper.createParser(rawResponse);
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Response is not a JSON object.");
+            }
+            inArray = readEnvelope();
+            if (error != null) {
+                throw error.build();
+            }
+        }
+        catch (JsonProcessingException e) {
+            throw e;
+        }
+        catch (IOException e) {
+            // not thrown when parsing from memory
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (peeked) {
+            return true;
+        }
+        if (!inArray) {
+            return false;
+        }
+        try {
+            if (parser.nextToken() != JsonToken.END_ARRAY) {
+                peeked = true;
+                return true;
+            }
+
+            // read the rest of the envelope
+            inArray = false;
+            readEnvelope();
+            parser.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (error != null) {
+            throw new IllegalStateException(error.build());
+        }
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        peeked = false;
+        try {
+            return objectMapper.readValue(parser, elementType);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Read the properties of the response envelope up to the start of the response array, or to the end.
+     *
+     * @return Whether the response array was reached.
+     */
+    private boolean readEnvelope() throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (fieldName) {
+                case RESPONSE:
+                    if (value == JsonToken.START_ARRAY) {
+                        return true;
+                    }
+                    else if (value != JsonToken.VALUE_NULL) {
+                        throw new JsonParseException(parser, "Response is not a JSON array.");
+                    }
+                    break;
+                case MT4Exception.ERROR_CODE:
+                    error = error == null ? MT4Exception.Builder.newInstance() : error;
+                    error.setErrorCode(parser.getValueAsInt());
+                    break;
+                case MT4Exception.ERROR_CODE_DESCRIPTION:
+                    error = error == null ? MT4Exception.Builder.newInstance() : error;
+                    error.setErrorCodeDescription(parser.getValueAsString());
+                    break;
+                case MT4Exception.ERROR_MESSAGE:
+                    error = error == null ? MT4Exception.Builder.newInstance() : error;
+                    error.setMessage(parser.getValueAsString());
+                    break;
+                case WARNING:
+                    LOG.warn(parser.getValueAsString());
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return false;
+    }
+}
@@ -4,6 +4,12 @@ import com.fasterxml.jackson.annotation.JacksonInject;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A market symbol in MetaTrader 4.
@@ -12,6 +18,9 @@ import com.fasterxml.jackson.core.JsonProcessingException;
  */
 public class Symbol {
 
+    private static final String NAME = "name";
+    private static final String POINT = "point";
+    private static final String DIGITS = "digits";
     private static final String VOLUME_MIN = "volume_min";
     private static final String VOLUME_STEP = "volume_step";
     private static final String VOLUME_MAX = "volume_max";
@@ -35,6 +44,11 @@ public class Symbol {
     private final double tradeTickSize;
     private final int tradeStopsLevel;
     private final int tradeFreezeLevel;
+    private final RequestTemplate tickRequest;
+    private final AtomicReferenceArray<RequestTemplate> infoIntegerRequests =
+            new AtomicReferenceArray<>(SymbolInfoInteger.values().length);
+    private final AtomicReferenceArray<RequestTemplate> infoDoubleRequests =
+            new AtomicReferenceArray<>(SymbolInfoDouble.values().length);
 
     /**
      * Package-private constructor.
@@ -77,6 +91,7 @@ public class Symbol {
         this.tradeTickSize = tradeTickSize;
         this.tradeStopsLevel = tradeStopsLevel;
         this.tradeFreezeLevel = tradeFreezeLevel;
+        this.tickRequest = new RequestTemplate(MT4Client.buildSymbolTickRequest(name));
     }
 
     /**
@@ -87,8 +102,24 @@ public class Symbol {
      * @throws MT4Exception            If server had an error.
      */
     public SymbolTick getTick() throws JsonProcessingException, MT4Exception {
-        return mt4.getResponse(Request.GET_SYMBOL_TICK.build()
-                .put(SYMBOL, name), SymbolTick.class);
+        SymbolTick tick = mt4.getResponse(tickRequest, SymbolTick.class);
+        mt4.observeTick(name, tick.bid, tick.ask);
+        return tick;
+    }
+
+    /**
+     * Read the latest market prices of this symbol into a reusable holder.  Unlike {@link #getTick()}, decoding the
+     * response allocates nothing, which suits polling at high rates.
+     *
+     * @param tick The holder to fill in.
+     * @return The holder.
+     * @throws JsonProcessingException If JSON response fails to parse, or has no tick.
+     * @throws MT4Exception            If server had an error.
+     */
+    public MutableTick readTick(MutableTick tick) throws JsonProcessingException, MT4Exception {
+        mt4.readTick(tickRequest, tick);
+        mt4.observeTick(name, tick.getBid(), tick.getAsk());
+        return tick;
     }
 
     /**
@@ -155,14 +186,27 @@ public class Symbol {
     }
 
     /**
-     * Tick value in the deposit currency.
+     * Tick value in the deposit currency, as of when this symbol was fetched.  It moves with the exchange rate
+     * whenever the profit currency isn't the deposit currency, so it isn't kept in the {@link SymbolRegistry} file.
      *
      * @return <code>SymbolInfoDouble(:symbol, SYMBOL_TRADE_TICK_VALUE)</code>
+     * @see #fetchTradeTickValue()
      */
     public double getTradeTickValue() {
         return tradeTickValue;
     }
 
+    /**
+     * Fetch the current tick value in the deposit currency.
+     *
+     * @return <code>SymbolInfoDouble(:symbol, SYMBOL_TRADE_TICK_VALUE)</code>
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    public double fetchTradeTickValue() throws JsonProcessingException, MT4Exception {
+        return getSymbolInfoDouble(SymbolInfoDouble.SYMBOL_TRADE_TICK_VALUE);
+    }
+
     /**
      * Tick size in points.
      *
@@ -396,22 +440,96 @@ public class Symbol {
         return getSymbolInfoDouble(SymbolInfoDouble.SYMBOL_MARGIN_MAINTENANCE);
     }
 
+    /**
+     * Get the values of several properties in a single request.
+     *
+     * @param integerProperties The integer properties to fetch.
+     * @param doubleProperties  The double properties to fetch.
+     * @return The property values.
+     * @throws JsonProcessingException If JSON response fails to parse.
+     * @throws MT4Exception            If server had an error.
+     */
+    public SymbolSnapshot snapshot(EnumSet<SymbolInfoInteger> integerProperties,
+                                   EnumSet<SymbolInfoDouble> doubleProperties)
+            throws JsonProcessingException, MT4Exception {
+        ObjectNode request = Request.GET_SYMBOL_INFO_SNAPSHOT.build()
+                .put(SYMBOL, name);
+        ArrayNode integerIds = request.putArray(PropertyValues.INTEGER_PROPERTY_IDS);
+        integerProperties.forEach(prop -> integerIds.add(prop.id));
+        ArrayNode doubleIds = request.putArray(PropertyValues.DOUBLE_PROPERTY_IDS);
+        doubleProperties.forEach(prop -> doubleIds.add(prop.id));
+        return new SymbolSnapshot(name, integerProperties, doubleProperties,
+                mt4.getResponse(request, PropertyValues.class));
+    }
+
     private boolean getSymbolInfoBoolean(SymbolInfoInteger prop) throws JsonProcessingException, MT4Exception {
-        return getSymbolInfo(Request.GET_SYMBOL_INFO_INTEGER, prop.id, boolean.class);
+        return getSymbolInfoInteger(prop, boolean.class);
     }
 
     private long getSymbolInfoInteger(SymbolInfoInteger prop) throws JsonProcessingException, MT4Exception {
-        return getSymbolInfo(Request.GET_SYMBOL_INFO_INTEGER, prop.id, long.class);
+        return getSymbolInfoInteger(prop, long.class);
+    }
+
+    private <T> T getSymbolInfoInteger(SymbolInfoInteger prop, Class<T> type)
+            throws JsonProcessingException, MT4Exception {
+        RequestTemplate request = getSymbolInfoRequest(infoIntegerRequests, Request.GET_SYMBOL_INFO_INTEGER,
+                prop.ordinal(), prop.id);
+        SymbolInfoCache cache = mt4.getSymbolInfoCache();
+        if (cache == null) {
+            return mt4.getResponse(request, type);
+        }
+        return cache.get(name, prop, () -> mt4.getResponse(request, type));
     }
 
     private double getSymbolInfoDouble(SymbolInfoDouble prop) throws JsonProcessingException, MT4Exception {
-        return getSymbolInfo(Request.GET_SYMBOL_INFO_DOUBLE, prop.id, double.class);
+        RequestTemplate request = getSymbolInfoRequest(infoDoubleRequests, Request.GET_SYMBOL_INFO_DOUBLE,
+                prop.ordinal(), prop.id);
+        SymbolInfoCache cache = mt4.getSymbolInfoCache();
+        if (cache == null) {
+            return mt4.getResponse(request, double.class);
+        }
+        return cache.get(name, prop, () -> mt4.getResponse(request, double.class));
     }
 
-    private <T> T getSymbolInfo(Request request, int propId, Class<T> responseType) throws JsonProcessingException, MT4Exception {
-        return mt4.getResponse(request.build()
-                .put(SYMBOL, name)
-                .put(PROPERTY_ID, propId), responseType);
+    /**
+     * Get the request template for a symbol property, building it on first use.
+     *
+     * @param requests The request templates, indexed by property ordinal.
+     * @param request  The request type.
+     * @param ordinal  The property ordinal.
+     * @param propId   The property id.
+     * @return The request template.
+     */
+    private RequestTemplate getSymbolInfoRequest(AtomicReferenceArray<RequestTemplate> requests, Request request,
+                                                 int ordinal, int propId) {
+        RequestTemplate template = requests.get(ordinal);
+        if (template == null) {
+            template = new RequestTemplate(request.build()
+                    .put(SYMBOL, name)
+                    .put(PROPERTY_ID, propId));
+            requests.set(ordinal, template);
+        }
+        return template;
+    }
+
+    /**
+     * Get the fixed properties of this symbol, as they are returned by the server.  The tick value is left out, as it
+     * moves with the exchange rate.
+     *
+     * @return The symbol metadata, from which an equal symbol, without its tick value, can be read back.
+     */
+    ObjectNode toMetadata() {
+        return JsonNodeFactory.instance.objectNode()
+                .put(NAME, name)
+                .put(POINT, point)
+                .put(DIGITS, digits)
+                .put(VOLUME_MIN, volumeMin)
+                .put(VOLUME_STEP, volumeStep)
+                .put(VOLUME_MAX, volumeMax)
+                .put(TRADE_CONTRACT_SIZE, tradeContractSize)
+                .put(TRADE_TICK_SIZE, tradeTickSize)
+                .put(TRADE_STOPS_LEVEL, tradeStopsLevel)
+                .put(TRADE_FREEZE_LEVEL, tradeFreezeLevel);
     }
 
     @Override
@@ -0,0 +1,480 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of the symbol properties queried through {@link Symbol}, so that properties which change rarely (e.g.
+ * {@link SymbolInfoDouble#SYMBOL_SWAP_LONG} or {@link SymbolInfoInteger#SYMBOL_TRADE_CALC_MODE}) are not requested
+ * from the server on every call.
+ * <p>
+ * Each property has a freshness {@link Policy}: its values are either {@link Policy#LIVE never cached}, cached for a
+ * {@link Policy#ttl(long, TimeUnit) time to live}, or cached {@link Policy#FOREVER until invalidated}.  By default,
+ * prices, volumes, spreads, times and session statistics are live, and every other property is cached for {@link
+ * #DEFAULT_TTL_MILLIS an hour}.  When the cache is full, the least recently used value is evicted.
+ * <p>
+ * Concurrent misses of the same value share a single request.  A value which is invalidated while it is being
+ * requested is returned to its callers, but not cached.
+ * <p>
+ * This class is thread-safe, and may be shared by any number of clients.
+ *
+ * @see MT4Client#setSymbolInfoCache(SymbolInfoCache)
+ */
+public class SymbolInfoCache {
+
+    static final long DEFAULT_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    static final int DEFAULT_MAX_SIZE = 10000;
+
+    private static final EnumSet<SymbolInfoInteger> LIVE_INTEGER_PROPERTIES = EnumSet.of(
+            SymbolInfoInteger.SYMBOL_SELECT,
+            SymbolInfoInteger.SYMBOL_VISIBLE,
+            SymbolInfoInteger.SYMBOL_SESSION_DEALS,
+            SymbolInfoInteger.SYMBOL_SESSION_BUY_ORDERS,
+            SymbolInfoInteger.SYMBOL_SESSION_SELL_ORDERS,
+            SymbolInfoInteger.SYMBOL_VOLUME,
+            SymbolInfoInteger.SYMBOL_VOLUMEHIGH,
+            SymbolInfoInteger.SYMBOL_VOLUMELOW,
+            SymbolInfoInteger.SYMBOL_TIME,
+            SymbolInfoInteger.SYMBOL_SPREAD_FLOAT,
+            SymbolInfoInteger.SYMBOL_SPREAD);
+    private static final EnumSet<SymbolInfoDouble> LIVE_DOUBLE_PROPERTIES = EnumSet.of(
+            SymbolInfoDouble.SYMBOL_BID,
+            SymbolInfoDouble.SYMBOL_BIDHIGH,
+            SymbolInfoDouble.SYMBOL_BIDLOW,
+            SymbolInfoDouble.SYMBOL_ASK,
+            SymbolInfoDouble.SYMBOL_ASKHIGH,
+            SymbolInfoDouble.SYMBOL_ASKLOW,
+            SymbolInfoDouble.SYMBOL_LAST,
+            SymbolInfoDouble.SYMBOL_LASTHIGH,
+            SymbolInfoDouble.SYMBOL_LASTLOW,
+            SymbolInfoDouble.SYMBOL_TRADE_TICK_VALUE,
+            SymbolInfoDouble.SYMBOL_TRADE_TICK_VALUE_PROFIT,
+            SymbolInfoDouble.SYMBOL_TRADE_TICK_VALUE_LOSS,
+            SymbolInfoDouble.SYMBOL_SESSION_VOLUME,
+            SymbolInfoDouble.SYMBOL_SESSION_TURNOVER,
+            SymbolInfoDouble.SYMBOL_SESSION_INTEREST,
+            SymbolInfoDouble.SYMBOL_SESSION_BUY_ORDERS_VOLUME,
+            SymbolInfoDouble.SYMBOL_SESSION_SELL_ORDERS_VOLUME,
+            SymbolInfoDouble.SYMBOL_SESSION_OPEN,
+            SymbolInfoDouble.SYMBOL_SESSION_CLOSE,
+            SymbolInfoDouble.SYMBOL_SESSION_AW);
+
+    /**
+     * How long the values of a property may be served from the cache.  Immutable.
+     */
+    public static final class Policy {
+
+        /**
+         * Values are always requested from the server, and never cached.
+         */
+        public static final Policy LIVE = new Policy(0);
+
+        /**
+         * Values are cached until they are invalidated or evicted.
+         */
+        public static final Policy FOREVER = new Policy(Long.MAX_VALUE);
+
+        private final long ttlNanos;
+
+        private Policy(long ttlNanos) {
+            this.ttlNanos = ttlNanos;
+        }
+
+        /**
+         * @param ttl  How long values are cached.  Must be positive.
+         * @param unit The time unit of the TTL.
+         * @return A policy which caches values for a fixed time after they are requested.
+         */
+        public static Policy ttl(long ttl, TimeUnit unit) {
+            if (ttl < 1) {
+                throw new IllegalArgumentException("TTL must be positive: " + ttl);
+            }
+            return new Policy(unit.toNanos(ttl));
+        }
+
+        /**
+         * @return How long values are cached, in nanoseconds.
+         */
+        public long getTtlNanos() {
+            return ttlNanos;
+        }
+
+        /**
+         * @param nowNanos The current time, as given by {@link System#nanoTime()}.
+         * @return The time at which a value requested now expires.
+         */
+        private long expiry(long nowNanos) {
+            return ttlNanos == Long.MAX_VALUE ? Long.MAX_VALUE : nowNanos + ttlNanos;
+        }
+
+        @Override
+        public String toString() {
+            return this == LIVE ? "LIVE" : this == FOREVER ? "FOREVER" : "TTL " + ttlNanos + "ns";
+        }
+    }
+
+    public static class Builder {
+        private final EnumMap<SymbolInfoInteger, Policy> integerPolicies = new EnumMap<>(SymbolInfoInteger.class);
+        private final EnumMap<SymbolInfoDouble, Policy> doublePolicies = new EnumMap<>(SymbolInfoDouble.class);
+        private int maxSize = DEFAULT_MAX_SIZE;
+
+        private Builder() {
+            Policy defaultPolicy = Policy.ttl(DEFAULT_TTL_MILLIS, TimeUnit.MILLISECONDS);
+            for (SymbolInfoInteger prop : SymbolInfoInteger.values()) {
+                integerPolicies.put(prop, LIVE_INTEGER_PROPERTIES.contains(prop) ? Policy.LIVE : defaultPolicy);
+            }
+            for (SymbolInfoDouble prop : SymbolInfoDouble.values()) {
+                doublePolicies.put(prop, LIVE_DOUBLE_PROPERTIES.contains(prop) ? Policy.LIVE : defaultPolicy);
+            }
+        }
+
+        /**
+         * Construct a symbol info cache builder, with the default policies.
+         *
+         * @return The symbol info cache builder instance.
+         */
+        public static Builder newInstance() {
+            return new Builder();
+        }
+
+        /**
+         * Build the symbol info cache instance.
+         *
+         * @return The symbol info cache.
+         */
+        public SymbolInfoCache build() {
+            return new SymbolInfoCache(this);
+        }
+
+        /**
+         * @param maxSize The maximum number of cached values.  Must be positive.
+         * @return This Builder.
+         */
+        public Builder setMaxSize(int maxSize) {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        /**
+         * @param prop   An integer property.
+         * @param policy The freshness policy of the property.
+         * @return This Builder.
+         */
+        public Builder setPolicy(SymbolInfoInteger prop, Policy policy) {
+            integerPolicies.put(prop, Objects.requireNonNull(policy));
+            return this;
+        }
+
+        /**
+         * @param prop   A double property.
+         * @param policy The freshness policy of the property.
+         * @return This Builder.
+         */
+        public Builder setPolicy(SymbolInfoDouble prop, Policy policy) {
+            doublePolicies.put(prop, Objects.requireNonNull(policy));
+            return this;
+        }
+
+        /**
+         * @param policy The freshness policy of every property which isn't live by default, replacing any policy set
+         *               for them before.
+         * @return This Builder.
+         */
+        public Builder setDefaultPolicy(Policy policy) {
+            Objects.requireNonNull(policy);
+            integerPolicies.replaceAll((prop, p) -> LIVE_INTEGER_PROPERTIES.contains(prop) ? p : policy);
+            doublePolicies.replaceAll((prop, p) -> LIVE_DOUBLE_PROPERTIES.contains(prop) ? p : policy);
+            return this;
+        }
+    }
+
+    /**
+     * Requests a property value from the server.
+     *
+     * @param <T> The value type.
+     */
+    interface Loader<T> {
+        T load() throws JsonProcessingException, MT4Exception;
+    }
+
+    private final EnumMap<SymbolInfoInteger, Policy> integerPolicies;
+    private final EnumMap<SymbolInfoDouble, Policy> doublePolicies;
+    private final int maxSize;
+    private final Map<Key, Entry> entries;
+    private final Map<Key, Load> loads = new HashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private SymbolInfoCache(Builder builder) {
+        // do some parameter validation
+        if (builder.maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive: " + builder.maxSize);
+        }
+        this.integerPolicies = new EnumMap<>(builder.integerPolicies);
+        this.doublePolicies = new EnumMap<>(builder.doublePolicies);
+        this.maxSize = builder.maxSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > SymbolInfoCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @param prop An integer property.
+     * @return The freshness policy of the property.
+     */
+    public Policy getPolicy(SymbolInfoInteger prop) {
+        return integerPolicies.get(prop);
+    }
+
+    /**
+     * @param prop A double property.
+     * @return The freshness policy of the property.
+     */
+    public Policy getPolicy(SymbolInfoDouble prop) {
+        return doublePolicies.get(prop);
+    }
+
+    /**
+     * Get the value of an integer property of a symbol, from the cache if it is fresh, or else from the server.
+     *
+     * @param symbol The symbol name.
+     * @param prop   The property.
+     * @param loader Requests the value from the server.
+     * @return The property value.
+     */
+    <T> T get(String symbol, SymbolInfoInteger prop, Loader<T> loader) throws JsonProcessingException, MT4Exception {
+        return get(new Key(symbol, prop), integerPolicies.get(prop), loader);
+    }
+
+    /**
+     * Get the value of a double property of a symbol, from the cache if it is fresh, or else from the server.
+     *
+     * @param symbol The symbol name.
+     * @param prop   The property.
+     * @param loader Requests the value from the server.
+     * @return The property value.
+     */
+    <T> T get(String symbol, SymbolInfoDouble prop, Loader<T> loader) throws JsonProcessingException, MT4Exception {
+        return get(new Key(symbol, prop), doublePolicies.get(prop), loader);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Key key, Policy policy, Loader<T> loader) throws JsonProcessingException, MT4Exception {
+        if (policy == Policy.LIVE) {
+            return loader.load();
+        }
+        long now = System.nanoTime();
+        Load load;
+        Load started = null;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && (entry.expiry == Long.MAX_VALUE || entry.expiry - now > 0)) {
+                hits.increment();
+                return (T) entry.value;
+            }
+            load = loads.get(key);
+            if (load == null) {
+                started = new Load();
+                loads.put(key, started);
+            }
+        }
+        if (started == null) {
+            shared.increment();
+            return (T) await(load);
+        }
+        return load(key, started, policy.expiry(now), loader);
+    }
+
+    /**
+     * Request a missing value outside the lock, so that other values may be read meanwhile.  The value is cached only
+     * if its load is still pending, i.e. the symbol was not invalidated meanwhile.
+     */
+    private <T> T load(Key key, Load load, long expiry, Loader<T> loader) throws JsonProcessingException,
+            MT4Exception {
+        misses.increment();
+        T value;
+        try {
+            value = loader.load();
+        }
+        catch (Throwable e) {
+            synchronized (entries) {
+                loads.remove(key, load);
+            }
+            load.future.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (entries) {
+            if (loads.remove(key, load)) {
+                entries.put(key, new Entry(value, expiry));
+            }
+        }
+        load.future.complete(value);
+        return value;
+    }
+
+    private Object await(Load load) throws JsonProcessingException, MT4Exception {
+        try {
+            return load.future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a symbol property.", e);
+        }
+        catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof MT4Exception) {
+                throw (MT4Exception) cause;
+            }
+            else if (cause instanceof JsonProcessingException) {
+                throw (JsonProcessingException) cause;
+            }
+            else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Discard the cached values of a symbol.
+     *
+     * @param symbol The symbol name.
+     */
+    public void invalidate(String symbol) {
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.symbol.equals(symbol));
+            loads.keySet().removeIf(key -> key.symbol.equals(symbol));
+        }
+    }
+
+    /**
+     * Discard every cached value.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            entries.clear();
+            loads.clear();
+        }
+    }
+
+    /**
+     * @return The number of cached values, including those which have expired but were not yet evicted.
+     */
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return The maximum number of cached values.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The number of values served from the cache.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of cacheable values which were requested from the server, because they were missing or had
+     * expired.  Live values are not counted.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of misses which waited for the same value to be requested by another caller, instead of
+     * requesting it again.
+     */
+    public long getShared() {
+        return shared.sum();
+    }
+
+    /**
+     * @return The number of values evicted to make room for others.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "SymbolInfoCache{" +
+                "size=" + getSize() +
+                ", maxSize=" + maxSize +
+                ", hits=" + getHits() +
+                ", misses=" + getMisses() +
+                ", shared=" + getShared() +
+                ", evictions=" + getEvictions() +
+                '}';
+    }
+
+    private static final class Key {
+        private final String symbol;
+        private final Enum<?> prop;
+
+        private Key(String symbol, Enum<?> prop) {
+            this.symbol = symbol;
+            this.prop = prop;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return symbol.equals(key.symbol) && prop == key.prop;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * symbol.hashCode() + prop.hashCode();
+        }
+    }
+
+    /**
+     * A value being requested from the server.  It is discarded on invalidation, so that the value isn't cached.
+     */
+    private static final class Load {
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expiry;
+
+        private Entry(Object value, long expiry) {
+            this.value = value;
+            this.expiry = expiry;
+        }
+    }
+}
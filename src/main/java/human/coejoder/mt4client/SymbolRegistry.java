@@ -0,0 +1,172 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The market symbols of the broker, persisted to a local file so that they are available at once when the process
+ * starts, rather than after fetching the metadata of every symbol.
+ * <p>
+ * The fixed properties of a symbol (e.g. {@link Symbol#getPoint() point}, {@link Symbol#getDigits() digits} and the
+ * volume limits) rarely change, so the symbols loaded from the file are served as they are, and {@link #revalidate()
+ * revalidated} against the server in the background.  Symbols which changed are replaced, symbols which the broker no
+ * longer lists are removed, and the file is rewritten if anything changed.  The file is replaced atomically, so it is
+ * never left half-written.
+ * <p>
+ * The {@link Symbol#getTradeTickValue() tick value} moves with the exchange rate, so it isn't kept in the file: it is
+ * 0 for symbols loaded from the file until they are revalidated, and is refreshed by every revalidation without
+ * counting as a change.  {@link Symbol#fetchTradeTickValue()} gets the current value.
+ * <p>
+ * Symbols are bound to the {@link MT4AsyncClient#blocking() blocking client} of the given asynchronous client, so
+ * their queries may be made from any thread.  This class is thread-safe.
+ */
+public class SymbolRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SymbolRegistry.class);
+    private static final ObjectMapper FILE_MAPPER = new ObjectMapper();
+
+    private final MT4AsyncClient mt4;
+    private final Path file;
+    private final Map<String, Symbol> symbols = new ConcurrentHashMap<>();
+    private final AtomicReference<CompletableFuture<Boolean>> revalidation = new AtomicReference<>();
+
+    /**
+     * Constructor.  Load the symbols from the file, if it exists.  A file which can't be read is ignored, and
+     * replaced by the next revalidation.
+     *
+     * @param mt4  The client.
+     * @param file The registry file.
+     */
+    public SymbolRegistry(MT4AsyncClient mt4, Path file) {
+        this.mt4 = mt4;
+        this.file = file;
+        if (Files.exists(file)) {
+            try {
+                symbols.putAll(mt4.blocking().toSymbols(FILE_MAPPER.readTree(file.toFile())));
+            }
+            catch (IOException e) {
+                LOG.warn(String.format("Ignoring unreadable symbol registry %s: %s", file, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Get a registered symbol.
+     *
+     * @param name The name of the symbol.
+     * @return The symbol, or empty if it isn't registered.
+     */
+    public Optional<Symbol> get(String name) {
+        return Optional.ofNullable(symbols.get(name));
+    }
+
+    /**
+     * Get a symbol, fetching and registering it if it isn't registered.
+     *
+     * @param name The name of the symbol.
+     * @return The {@link Symbol}.
+     */
+    public CompletableFuture<Symbol> getSymbol(String name) {
+        Symbol symbol = symbols.get(name);
+        if (symbol != null) {
+            return CompletableFuture.completedFuture(symbol);
+        }
+        return mt4.getSymbol(name).thenApply(fetched -> {
+            if (fetched != null && symbols.putIfAbsent(name, fetched) == null) {
+                save();
+            }
+            return fetched;
+        });
+    }
+
+    /**
+     * @return An unmodifiable name-to-{@link Symbol} view of the registered symbols.
+     */
+    public Map<String, Symbol> getSymbols() {
+        return Collections.unmodifiableMap(symbols);
+    }
+
+    /**
+     * Fetch the metadata of every symbol listed by the broker, and update the registry and its file.  If a
+     * revalidation is already in progress, its result is returned instead.
+     *
+     * @return Whether any symbol was added, changed or removed.
+     */
+    public CompletableFuture<Boolean> revalidate() {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        CompletableFuture<Boolean> inProgress = revalidation.compareAndExchange(null, result);
+        if (inProgress != null) {
+            return inProgress;
+        }
+        mt4.getSymbolNames()
+                .thenCompose(names -> mt4.getSymbols(names.toArray(new String[0])))
+                .thenApply(this::update)
+                .whenComplete((changed, e) -> {
+                    revalidation.set(null);
+                    if (e == null) {
+                        result.complete(changed);
+                    }
+                    else {
+                        result.completeExceptionally(e instanceof CompletionException && e.getCause() != null
+                                ? e.getCause() : e);
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * Replace the registered symbols with those listed by the broker.  Only changes to their metadata are saved.
+     *
+     * @param latest The symbols listed by the broker.
+     * @return Whether any symbol was added, changed or removed.
+     */
+    private synchronized boolean update(Map<String, Symbol> latest) {
+        boolean changed = symbols.keySet().retainAll(latest.keySet());
+        for (Symbol symbol : latest.values()) {
+            // replaced even if unchanged, to refresh the tick value
+            Symbol registered = symbols.put(symbol.getName(), symbol);
+            if (registered == null || !registered.toMetadata().equals(symbol.toMetadata())) {
+                changed = true;
+            }
+        }
+        if (changed) {
+            save();
+        }
+        return changed;
+    }
+
+    /**
+     * Write the registered symbols to a temporary file, then move it over the registry file.  Failures are logged, as
+     * the registry still works without its file.
+     */
+    private synchronized void save() {
+        ObjectNode metadata = JsonNodeFactory.instance.objectNode();
+        for (Symbol symbol : new TreeMap<>(symbols).values()) {
+            metadata.set(symbol.getName(), symbol.toMetadata());
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            FILE_MAPPER.writeValue(temp.toFile(), metadata);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e) {
+            LOG.warn(String.format("Failed to save symbol registry %s: %s", file, e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package human.coejoder.mt4client;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The values of several properties of a symbol, fetched together in a single request.  Immutable.
+ *
+ * @see Symbol#snapshot(EnumSet, EnumSet)
+ */
+public final class SymbolSnapshot {
+
+    private static final SymbolInfoInteger[] INTEGER_PROPERTIES = SymbolInfoInteger.values();
+    private static final SymbolInfoDouble[] DOUBLE_PROPERTIES = SymbolInfoDouble.values();
+
+    private final String symbol;
+    private final EnumSet<SymbolInfoInteger> integerProperties;
+    private final EnumSet<SymbolInfoDouble> doubleProperties;
+    private final long[] integers = new long[INTEGER_PROPERTIES.length];
+    private final double[] doubles = new double[DOUBLE_PROPERTIES.length];
+
+    /**
+     * Package-private constructor.
+     *
+     * @param symbol            The symbol name.
+     * @param integerProperties The integer properties.
+     * @param doubleProperties  The double properties.
+     * @param values            The property values, in the iteration order of the property sets.
+     */
+    SymbolSnapshot(String symbol, EnumSet<SymbolInfoInteger> integerProperties,
+                   EnumSet<SymbolInfoDouble> doubleProperties, PropertyValues values) {
+        values.checkCounts(integerProperties.size(), doubleProperties.size());
+        this.symbol = symbol;
+        this.integerProperties = EnumSet.copyOf(integerProperties);
+        this.doubleProperties = EnumSet.copyOf(doubleProperties);
+        int i = 0;
+        for (SymbolInfoInteger prop : integerProperties) {
+            integers[prop.ordinal()] = values.integers[i++];
+        }
+        i = 0;
+        for (SymbolInfoDouble prop : doubleProperties) {
+            doubles[prop.ordinal()] = values.doubles[i++];
+        }
+    }
+
+    /**
+     * @return The symbol name.
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * @return The integer properties in this snapshot.
+     */
+    public Set<SymbolInfoInteger> getIntegerProperties() {
+        return EnumSet.copyOf(integerProperties);
+    }
+
+    /**
+     * @return The double properties in this snapshot.
+     */
+    public Set<SymbolInfoDouble> getDoubleProperties() {
+        return EnumSet.copyOf(doubleProperties);
+    }
+
+    /**
+     * @param prop An integer property.
+     * @return Whether the property is in this snapshot.
+     */
+    public boolean contains(SymbolInfoInteger prop) {
+        return integerProperties.contains(prop);
+    }
+
+    /**
+     * @param prop A double property.
+     * @return Whether the property is in this snapshot.
+     */
+    public boolean contains(SymbolInfoDouble prop) {
+        return doubleProperties.contains(prop);
+    }
+
+    /**
+     * Get the value of an integer property.
+     *
+     * @param prop The property.
+     * @return <code>SymbolInfoInteger(:symbol, :prop)</code>
+     * @throws IllegalArgumentException If the property is not in this snapshot.
+     */
+    public long getInteger(SymbolInfoInteger prop) {
+        if (!integerProperties.contains(prop)) {
+            throw new IllegalArgumentException("Property is not in snapshot: " + prop);
+        }
+        return integers[prop.ordinal()];
+    }
+
+    /**
+     * Get the value of an integer property which is a boolean.
+     *
+     * @param prop The property.
+     * @return <code>SymbolInfoInteger(:symbol, :prop)</code>
+     * @throws IllegalArgumentException If the property is not in this snapshot.
+     */
+    public boolean getBoolean(SymbolInfoInteger prop) {
+        return getInteger(prop) != 0;
+    }
+
+    /**
+     * Get the value of a double property.
+     *
+     * @param prop The property.
+     * @return <code>SymbolInfoDouble(:symbol, :prop)</code>
+     * @throws IllegalArgumentException If the property is not in this snapshot.
+     */
+    public double getDouble(SymbolInfoDouble prop) {
+        if (!doubleProperties.contains(prop)) {
+            throw new IllegalArgumentException("Property is not in snapshot: " + prop);
+        }
+        return doubles[prop.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("SymbolSnapshot{symbol='").append(symbol).append('\'');
+        for (SymbolInfoInteger prop : integerProperties) {
+            builder.append(", ").append(prop).append('=').append(integers[prop.ordinal()]);
+        }
+        for (SymbolInfoDouble prop : doubleProperties) {
+            builder.append(", ").append(prop).append('=').append(doubles[prop.ordinal()]);
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,28 @@
+package human.coejoder.mt4client;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Threading support which depends on the Java version.  This is the Java 11 implementation; the multi-release jar
+ * replaces it on Java 21 and later with one which uses virtual threads (see {@code src/main/java21}).
+ */
+final class Threads {
+
+    private Threads() {}
+
+    /**
+     * @param thread A thread.
+     * @return Whether the thread is a virtual thread.
+     */
+    static boolean isVirtual(Thread thread) {
+        return false;
+    }
+
+    /**
+     * @return The default executor on which asynchronous responses are parsed and futures are completed.
+     */
+    static Executor defaultExecutor() {
+        return ForkJoinPool.commonPool();
+    }
+}
@@ -0,0 +1,255 @@
+package human.coejoder.mt4client;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Reads a successful tick response straight from its JSON encoding into a {@link MutableTick}, without allocating.
+ * Anything else, such as an error, a warning or an unexpected property, is declined and left to the general-purpose
+ * parser.
+ */
+final class TickReader {
+
+    private static final ThreadLocal<TickReader> READERS = ThreadLocal.withInitial(TickReader::new);
+    private static final byte[] RESPONSE = "response".getBytes(US_ASCII);
+    private static final byte[] REQUEST_ID = Request.REQUEST_ID.getBytes(US_ASCII);
+    private static final byte[] TIME = "time".getBytes(US_ASCII);
+    private static final byte[] BID = "bid".getBytes(US_ASCII);
+    private static final byte[] ASK = "ask".getBytes(US_ASCII);
+    private static final byte[] LAST = "last".getBytes(US_ASCII);
+    private static final byte[] VOLUME = "volume".getBytes(US_ASCII);
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private byte[] json;
+    private int pos;
+    private int keyEnd;
+    private double number;
+    private boolean integral;
+
+    private TickReader() {}
+
+    /**
+     * Read a tick response.
+     *
+     * @param json The response, encoded as JSON.
+     * @param tick The holder to fill in.
+     * @return Whether the response was a successful tick response and was read.  If not, the holder may have been
+     * partially filled in.
+     */
+    static boolean read(byte[] json, MutableTick tick) {
+        if (json == null) {
+            return false;
+        }
+        TickReader reader = READERS.get();
+        try {
+            return reader.readResponse(json, tick);
+        }
+        finally {
+            reader.json = null;
+        }
+    }
+
+    private boolean readResponse(byte[] json, MutableTick tick) {
+        this.json = json;
+        this.pos = 0;
+        boolean read = false;
+        if (!consume('{')) {
+            return false;
+        }
+        do {
+            int keyStart = readKey();
+            if (keyStart < 0 || !consume(':')) {
+                return false;
+            }
+            if (keyEquals(keyStart, RESPONSE)) {
+                if (!readTick(tick)) {
+                    return false;
+                }
+                read = true;
+            }
+            else if (!keyEquals(keyStart, REQUEST_ID) || !readNumber()) {
+                return false;
+            }
+        } while (consume(','));
+        return read && consume('}');
+    }
+
+    private boolean readTick(MutableTick tick) {
+        int time = 0;
+        double bid = 0;
+        double ask = 0;
+        double last = 0;
+        int volume = 0;
+        if (!consume('{')) {
+            return false;
+        }
+        do {
+            int keyStart = readKey();
+            if (keyStart < 0 || !consume(':') || !readNumber()) {
+                return false;
+            }
+            if (keyEquals(keyStart, TIME) && isInt()) {
+                time = (int) number;
+            }
+            else if (keyEquals(keyStart, BID)) {
+                bid = number;
+            }
+            else if (keyEquals(keyStart, ASK)) {
+                ask = number;
+            }
+            else if (keyEquals(keyStart, LAST)) {
+                last = number;
+            }
+            else if (keyEquals(keyStart, VOLUME) && isInt()) {
+                volume = (int) number;
+            }
+            else {
+                return false;
+            }
+        } while (consume(','));
+        if (!consume('}')) {
+            return false;
+        }
+        tick.set(time, bid, ask, last, volume);
+        return true;
+    }
+
+    /**
+     * Read an object key which has no escape sequences.
+     *
+     * @return The index of the key's first byte, or -1 if there is no such key.
+     */
+    private int readKey() {
+        if (!consume('"')) {
+            return -1;
+        }
+        int start = pos;
+        while (pos < json.length && json[pos] != '"') {
+            if (json[pos] == '\\') {
+                return -1;
+            }
+            pos++;
+        }
+        if (pos == json.length) {
+            return -1;
+        }
+        keyEnd = pos++;
+        return start;
+    }
+
+    private boolean keyEquals(int keyStart, byte[] key) {
+        if (keyEnd - keyStart != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (json[keyStart + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read a number.  Numbers which can be converted exactly from their decimal mantissa and exponent are read without
+     * allocating; others are handed to {@link Double#parseDouble(String)}.
+     *
+     * @return Whether a number was read.
+     */
+    private boolean readNumber() {
+        skipWhitespace();
+        int start = pos;
+        boolean negative = pos < json.length && json[pos] == '-';
+        if (negative) {
+            pos++;
+        }
+        long mantissa = 0;
+        int exponent = 0;
+        boolean exact = true;
+        int digits = 0;
+        for (; pos < json.length && isDigit(json[pos]); pos++, digits++) {
+            if (mantissa < MAX_EXACT_MANTISSA) {
+                mantissa = mantissa * 10 + (json[pos] - '0');
+            }
+            else {
+                exact = false;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        integral = true;
+        if (pos < json.length && json[pos] == '.') {
+            integral = false;
+            pos++;
+            digits = 0;
+            for (; pos < json.length && isDigit(json[pos]); pos++, digits++) {
+                if (mantissa < MAX_EXACT_MANTISSA) {
+                    mantissa = mantissa * 10 + (json[pos] - '0');
+                    exponent--;
+                }
+                else {
+                    exact = false;
+                }
+            }
+            if (digits == 0) {
+                return false;
+            }
+        }
+        if (pos < json.length && (json[pos] == 'e' || json[pos] == 'E')) {
+            integral = false;
+            pos++;
+            boolean negativeExponent = pos < json.length && json[pos] == '-';
+            if (negativeExponent || (pos < json.length && json[pos] == '+')) {
+                pos++;
+            }
+            int exponentValue = 0;
+            digits = 0;
+            for (; pos < json.length && isDigit(json[pos]); pos++, digits++) {
+                exponentValue = Math.min(exponentValue * 10 + (json[pos] - '0'), 1000);
+            }
+            if (digits == 0) {
+                return false;
+            }
+            exponent += negativeExponent ? -exponentValue : exponentValue;
+        }
+
+        // a mantissa and a power of ten which are both exactly representable give a correctly rounded quotient or
+        // product
+        if (exact && mantissa <= MAX_EXACT_MANTISSA && Math.abs(exponent) < POWERS_OF_TEN.length) {
+            number = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+            if (negative) {
+                number = -number;
+            }
+        }
+        else {
+            number = Double.parseDouble(new String(json, start, pos - start, US_ASCII));
+        }
+        return true;
+    }
+
+    private boolean isInt() {
+        return integral && number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE;
+    }
+
+    private boolean consume(char c) {
+        skipWhitespace();
+        if (pos < json.length && json[pos] == c) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void skipWhitespace() {
+        while (pos < json.length && (json[pos] == ' ' || json[pos] == '\t' || json[pos] == '\n' || json[pos] == '\r')) {
+            pos++;
+        }
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
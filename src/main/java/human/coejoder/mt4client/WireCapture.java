@@ -0,0 +1,208 @@
+package human.coejoder.mt4client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Records requests and responses exchanged with the MT4 server, for post-mortem debugging.
+ * <p>
+ * Clients hand captured exchanges to a bounded, lock-free ring buffer, which a background thread drains to a file.
+ * Only a sample of successful exchanges is captured, but every exchange which fails with an {@link MT4Exception} (or a
+ * response which fails to parse) is captured in full and written out at once.  If the file can't keep up, the oldest
+ * undrained exchanges are overwritten and {@link #getDropped() counted as dropped}; clients never wait.
+ * <p>
+ * Each exchange is written as two lines, prefixed with the time it was captured and its sequence number:
+ * <pre>
+ * 2020-09-01T12:00:00.000Z #42 REQUEST {"action":"GET_SYMBOL_TICK","symbol":"EURUSD"}
+ * 2020-09-01T12:00:00.000Z #42 RESPONSE {"response":{"time":1598961600,"bid":1.19352,...}}
+ * </pre>
+ * Failed exchanges are marked {@code FAILED_REQUEST} and {@code FAILED_RESPONSE}.
+ * <p>
+ * This class is thread-safe, and may be shared by any number of clients.
+ *
+ * @see MT4Client#setWireCapture(WireCapture)
+ * @see MT4AsyncClient#setWireCapture(WireCapture)
+ */
+public class WireCapture implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WireCapture.class);
+    private static final long DRAIN_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicReferenceArray<Record> ring;
+    private final int mask;
+    private final double samplingRate;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final BufferedWriter writer;
+    private final Thread drainThread;
+    private volatile boolean running = true;
+    private long cursor;
+
+    /**
+     * Constructor.  Open the capture file for appending and start the drain thread.
+     *
+     * @param file         The capture file.
+     * @param capacity     The number of exchanges the ring buffer holds.  Rounded up to a power of two.
+     * @param samplingRate The fraction of successful exchanges to capture, from 0 to 1.
+     * @throws IOException If the file can't be opened.
+     */
+    public WireCapture(Path file, int capacity, double samplingRate) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        if (!(samplingRate >= 0 && samplingRate <= 1)) {
+            throw new IllegalArgumentException("Sampling rate must be from 0 to 1: " + samplingRate);
+        }
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.samplingRate = samplingRate;
+        this.writer = Files.newBufferedWriter(file, UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.drainThread = new Thread(this::run, "mt4-wire-capture");
+        this.drainThread.setDaemon(true);
+        this.drainThread.start();
+    }
+
+    /**
+     * Decide whether to capture a successful exchange.
+     *
+     * @return Whether the exchange is sampled.
+     */
+    boolean sample() {
+        return samplingRate >= 1 || (samplingRate > 0 && ThreadLocalRandom.current().nextDouble() < samplingRate);
+    }
+
+    /**
+     * Capture an exchange.  The arrays are not copied, so they must not be modified afterwards.
+     *
+     * @param codec    The wire codec of the exchange.
+     * @param request  The encoded request.
+     * @param response The encoded response, or null if none was received.
+     * @param failed   Whether the exchange failed, in which case it is written out at once.
+     */
+    void record(WireCodec codec, byte[] request, byte[] response, boolean failed) {
+        long sequence = head.getAndIncrement();
+        ring.set((int) (sequence & mask), new Record(sequence, System.currentTimeMillis(), codec, request, response,
+                failed));
+        if (failed) {
+            LockSupport.unpark(drainThread);
+        }
+    }
+
+    /**
+     * @return The number of exchanges captured so far, including any dropped.
+     */
+    public long getCaptured() {
+        return head.get();
+    }
+
+    /**
+     * @return The number of captured exchanges which were overwritten before they could be written to the file.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Write out any captured exchanges, stop the drain thread and close the file.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(drainThread);
+        try {
+            drainThread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try (writer) {
+            while (running) {
+                LockSupport.parkNanos(this, DRAIN_INTERVAL_NANOS);
+                drain();
+            }
+            drain();
+        }
+        catch (IOException e) {
+            LOG.error("Wire capture failed.", e);
+        }
+    }
+
+    /**
+     * Write out the exchanges captured since the last drain.
+     */
+    private void drain() throws IOException {
+        long end = head.get();
+
+        // skip whatever has been overwritten since the last drain
+        if (end - cursor > ring.length()) {
+            dropped.addAndGet(end - ring.length() - cursor);
+            cursor = end - ring.length();
+        }
+        for (; cursor < end; cursor++) {
+            Record record = ring.get((int) (cursor & mask));
+            if (record == null || record.sequence < cursor) {
+                // claimed but not yet stored; try again on the next drain
+                break;
+            }
+            if (record.sequence > cursor) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            write(record);
+        }
+        writer.flush();
+    }
+
+    private void write(Record record) throws IOException {
+        String prefix = String.format("%s #%d %s", Instant.ofEpochMilli(record.timeMillis), record.sequence,
+                record.failed ? "FAILED_" : "");
+        writer.write(prefix);
+        writer.write("REQUEST ");
+        writer.write(record.codec.toLogString(record.request, 0, record.request.length));
+        writer.newLine();
+        writer.write(prefix);
+        writer.write("RESPONSE ");
+        writer.write(record.response == null ? "<none>"
+                : record.codec.toLogString(record.response, 0, record.response.length));
+        writer.newLine();
+    }
+
+    /**
+     * A captured exchange.
+     */
+    private static class Record {
+        final long sequence;
+        final long timeMillis;
+        final WireCodec codec;
+        final byte[] request;
+        final byte[] response;
+        final boolean failed;
+
+        Record(long sequence, long timeMillis, WireCodec codec, byte[] request, byte[] response, boolean failed) {
+            this.sequence = sequence;
+            this.timeMillis = timeMillis;
+            this.codec = codec;
+            this.request = request;
+            this.response = response;
+            this.failed = failed;
+        }
+    }
+}
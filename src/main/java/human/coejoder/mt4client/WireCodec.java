@@ -0,0 +1,87 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Encodings of requests and responses on the wire.
+ * <p>
+ * Every connection starts out speaking {@link #JSON}.  A client may ask to switch to another codec with a {@link
+ * Request#SET_WIRE_CODEC} request, which is sent and answered in JSON; if the server agrees, all later messages in
+ * both directions use the new codec.  A server which doesn't support the codec answers with an error, and the client
+ * keeps speaking JSON.
+ */
+public enum WireCodec {
+    JSON("json", JsonFactory::new),
+    CBOR("cbor", CBORFactory::new);
+
+    private static final Map<String, WireCodec> ID_TO_ENUM = Stream.of(values()).collect(
+            toMap(e -> e.id, e -> e)
+    );
+
+    public final String id;
+    private final Supplier<JsonFactory> factorySupplier;
+    private final ObjectMapper objectMapper;
+
+    WireCodec(String id, Supplier<JsonFactory> factorySupplier) {
+        this.id = id;
+        this.factorySupplier = factorySupplier;
+        this.objectMapper = new ObjectMapper(factorySupplier.get());
+    }
+
+    public static Optional<WireCodec> fromId(String id) {
+        return Optional.ofNullable(ID_TO_ENUM.get(id));
+    }
+
+    /**
+     * @return A new factory of this codec's parsers and generators, for an object mapper of its own.
+     */
+    JsonFactory newFactory() {
+        return factorySupplier.get();
+    }
+
+    /**
+     * @return The factory used to encode requests and to peek at responses.
+     */
+    JsonFactory factory() {
+        return objectMapper.getFactory();
+    }
+
+    /**
+     * @return A writer which encodes requests.
+     */
+    ObjectWriter writer() {
+        return objectMapper.writer();
+    }
+
+    /**
+     * Render an encoded message as JSON text for logging.
+     *
+     * @param message The encoded message.
+     * @param offset  The offset of the message in the array.
+     * @param length  The length of the message.
+     * @return The message as JSON text.
+     */
+    String toLogString(byte[] message, int offset, int length) {
+        if (this == JSON) {
+            return new String(message, offset, length, UTF_8);
+        }
+        try {
+            return objectMapper.readTree(message, offset, length).toString();
+        }
+        catch (IOException e) {
+            return String.format("<%d bytes of malformed %s>", length, id);
+        }
+    }
+}
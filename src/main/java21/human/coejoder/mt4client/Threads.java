@@ -0,0 +1,28 @@
+package human.coejoder.mt4client;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Threading support which depends on the Java version.  This is the Java 21 implementation, which the multi-release
+ * jar uses in place of the Java 11 one.
+ */
+final class Threads {
+
+    private Threads() {}
+
+    /**
+     * @param thread A thread.
+     * @return Whether the thread is a virtual thread.
+     */
+    static boolean isVirtual(Thread thread) {
+        return thread.isVirtual();
+    }
+
+    /**
+     * @return The default executor on which asynchronous responses are parsed and futures are completed.  Each task
+     * runs on its own virtual thread, so callbacks which block don't starve other tasks.
+     */
+    static Executor defaultExecutor() {
+        return Thread::startVirtualThread;
+    }
+}
@@ -0,0 +1,22 @@
+package human.coejoder.mt4client;
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the memory allocated by the current thread, for allocation benchmarks.
+ */
+final class Allocations {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private Allocations() {}
+
+    /**
+     * @return The total number of bytes allocated by the current thread so far.
+     */
+    static long allocatedBytes() {
+        return THREAD_MX_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
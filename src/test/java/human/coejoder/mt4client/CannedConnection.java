@@ -0,0 +1,29 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A connection which answers every request with the same response, for tests which don't need a server.
+ */
+class CannedConnection implements Connection {
+
+    byte[] response;
+
+    @Override
+    public byte[] exchange(ObjectNode request) {
+        return response;
+    }
+
+    @Override
+    public byte[] exchange(RequestTemplate request) {
+        return response;
+    }
+
+    @Override
+    public void setCodec(WireCodec codec) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,290 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * A local stand-in for the MT4 server, for tests which don't need a live terminal.
+ * <p>
+ * Requests are dispatched by action to handlers registered with {@link #on(Request, Handler)}, and each handler's
+ * result is wrapped in a response envelope.  The {@link Request#REQUEST_ID request id} extension is supported unless
+ * {@link #setEchoRequestIds(boolean) disabled}: a request's id is echoed as the first property of its response.
+ * Replies can be {@link #holdReplies(int) held back} and sent in reverse order, to exercise out-of-order response
+ * matching, or {@link #dropReplies(int) dropped}.  Each client may switch to any of the {@link
+ * #setSupportedCodecs(WireCodec...) supported} {@link WireCodec wire codecs}.  {@link Request#BATCH Batches} are
+ * dispatched request by request unless {@link #setBatchSupported(boolean) disabled}.
+ */
+public class MockServer implements AutoCloseable {
+
+    private static final String HOST = "tcp://127.0.0.1";
+    private static final String ACTION = "action";
+    private static final String RESPONSE = "response";
+    private static final String CODEC = "codec";
+    private static final String REQUESTS = "requests";
+    private static final int RECEIVE_TIMEOUT_MILLIS = 50;
+
+    private final Map<WireCodec, ObjectMapper> objectMappers = new EnumMap<>(WireCodec.class);
+    private final Map<String, WireCodec> peerCodecs = new HashMap<>();
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private final ZContext context;
+    private final ZMQ.Socket socket;
+    private final String address;
+    private final Thread thread;
+    private final Deque<List<byte[]>> heldReplies = new ArrayDeque<>();
+    private final AtomicInteger dropCount = new AtomicInteger();
+    private volatile int holdCount = 1;
+    private volatile boolean echoRequestIds = true;
+    private volatile Set<WireCodec> supportedCodecs = EnumSet.allOf(WireCodec.class);
+    private volatile boolean batchSupported = true;
+    private volatile boolean running = true;
+
+    /**
+     * Handles a request of a particular action.
+     */
+    public interface Handler {
+
+        /**
+         * Handle a request.
+         *
+         * @param request The request.
+         * @return The unwrapped response.
+         * @throws Failure To respond with an error.
+         */
+        JsonNode handle(JsonNode request);
+    }
+
+    /**
+     * Thrown by a {@link Handler} to respond with an MT4 error.
+     */
+    public static class Failure extends RuntimeException {
+
+        private final MT4Exception.Code code;
+
+        public Failure(MT4Exception.Code code, String message) {
+            super(message);
+            this.code = code;
+        }
+    }
+
+    /**
+     * Constructor.  Bind the server to a random local port and start serving.
+     */
+    public MockServer() {
+        for (WireCodec codec : WireCodec.values()) {
+            objectMappers.put(codec, new ObjectMapper(codec.newFactory()));
+        }
+        context = new ZContext();
+        socket = context.createSocket(SocketType.ROUTER);
+        socket.setReceiveTimeOut(RECEIVE_TIMEOUT_MILLIS);
+        address = HOST + ":" + socket.bindToRandomPort(HOST);
+        thread = new Thread(this::run, "mock-mt4-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return The address clients should connect to.
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * Register the handler of an action.
+     *
+     * @param action  The request action.
+     * @param handler The handler.
+     * @return This server.
+     */
+    public MockServer on(Request action, Handler handler) {
+        handlers.put(action.toString(), handler);
+        return this;
+    }
+
+    /**
+     * Hold back replies until the given number of requests have been received, then send them in reverse order.
+     *
+     * @param count The number of replies to hold back.  1 replies to each request immediately.
+     */
+    public void holdReplies(int count) {
+        holdCount = count;
+    }
+
+    /**
+     * Drop the replies to the next requests, as if they were lost.
+     *
+     * @param count The number of replies to drop.
+     */
+    public void dropReplies(int count) {
+        dropCount.set(count);
+    }
+
+    /**
+     * Set whether request ids are echoed in responses.  Enabled by default.
+     *
+     * @param echoRequestIds Whether request ids are echoed.
+     */
+    public void setEchoRequestIds(boolean echoRequestIds) {
+        this.echoRequestIds = echoRequestIds;
+    }
+
+    /**
+     * Set the wire codecs which clients may switch to.  All are supported by default.
+     *
+     * @param codecs The supported codecs, in addition to JSON.
+     */
+    public void setSupportedCodecs(WireCodec... codecs) {
+        supportedCodecs = EnumSet.of(WireCodec.JSON, codecs);
+    }
+
+    /**
+     * Set whether batches are supported.  Unsupported batches are answered like any other unknown action.
+     *
+     * @param batchSupported Whether batches are supported.
+     */
+    public void setBatchSupported(boolean batchSupported) {
+        this.batchSupported = batchSupported;
+    }
+
+    /**
+     * @param action The request action.  Requests within a batch are counted too.
+     * @return The number of requests of the action received so far.
+     */
+    public int getRequestCount(Request action) {
+        AtomicInteger count = requestCounts.get(action.toString());
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            thread.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        context.destroy();
+    }
+
+    private void run() {
+        while (running) {
+            // ROUTER frames are: peer identity, empty delimiter, request
+            byte[] identity = socket.recv();
+            if (identity == null) {
+                continue;
+            }
+            List<byte[]> envelope = new ArrayList<>();
+            envelope.add(identity);
+            byte[] frame = socket.recv();
+            while (frame.length == 0 || socket.hasReceiveMore()) {
+                envelope.add(frame);
+                frame = socket.recv();
+            }
+            envelope.add(respond(new String(identity, ISO_8859_1), frame));
+            if (dropCount.getAndUpdate(count -> Math.max(count - 1, 0)) > 0) {
+                continue;
+            }
+            heldReplies.push(envelope);
+            if (heldReplies.size() >= holdCount) {
+                while (!heldReplies.isEmpty()) {
+                    List<byte[]> reply = heldReplies.pop();
+                    for (int i = 0; i < reply.size() - 1; i++) {
+                        socket.sendMore(reply.get(i));
+                    }
+                    socket.send(reply.get(reply.size() - 1));
+                }
+            }
+        }
+    }
+
+    private byte[] respond(String peer, byte[] rawRequest) {
+        WireCodec codec = peerCodecs.getOrDefault(peer, WireCodec.JSON);
+        WireCodec nextCodec = codec;
+        ObjectNode response = JsonNodeFactory.instance.objectNode();
+        try {
+            JsonNode request = objectMappers.get(codec).readTree(rawRequest);
+            if (echoRequestIds && request.has(Request.REQUEST_ID)) {
+                response.set(Request.REQUEST_ID, request.get(Request.REQUEST_ID));
+            }
+            String action = request.path(ACTION).asText();
+            if (Request.SET_WIRE_CODEC.toString().equals(action)) {
+                requestCounts.computeIfAbsent(action, a -> new AtomicInteger()).incrementAndGet();
+                String id = request.path(CODEC).asText();
+                try {
+                    nextCodec = WireCodec.fromId(id).filter(supportedCodecs::contains).orElseThrow(() -> new Failure(
+                            MT4Exception.Code.ERR_INVALID_FUNCTION_PARAMVALUE, "Unsupported codec: " + id));
+                    response.put(RESPONSE, id);
+                }
+                catch (Failure e) {
+                    fail(response, e);
+                }
+            }
+            else {
+                dispatch(request, response);
+            }
+        }
+        catch (IOException e) {
+            response.put(MT4Exception.ERROR_MESSAGE, e.getMessage());
+        }
+        try {
+            // a change of codec takes effect after the response
+            byte[] rawResponse = objectMappers.get(codec).writeValueAsBytes(response);
+            peerCodecs.put(peer, nextCodec);
+            return rawResponse;
+        }
+        catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void dispatch(JsonNode request, ObjectNode response) {
+        String action = request.path(ACTION).asText();
+        requestCounts.computeIfAbsent(action, a -> new AtomicInteger()).incrementAndGet();
+        try {
+            if (batchSupported && Request.BATCH.toString().equals(action)) {
+                ArrayNode items = response.putArray(RESPONSE);
+                for (JsonNode item : request.path(REQUESTS)) {
+                    dispatch(item, items.addObject());
+                }
+                return;
+            }
+            Handler handler = handlers.get(action);
+            if (handler == null) {
+                throw new Failure(MT4Exception.Code.ERR_UNKNOWN_COMMAND, "Unknown action: " + action);
+            }
+            response.set(RESPONSE, handler.handle(request));
+        }
+        catch (Failure e) {
+            fail(response, e);
+        }
+    }
+
+    private static void fail(ObjectNode response, Failure failure) {
+        response.put(MT4Exception.ERROR_CODE, failure.code.id)
+                .put(MT4Exception.ERROR_CODE_DESCRIPTION, failure.code.toString())
+                .put(MT4Exception.ERROR_MESSAGE, failure.getMessage());
+    }
+}
@@ -0,0 +1,210 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests of the event-invalidated {@link AccountCache}, against a {@link MockServer}.
+ */
+public class TestAccountCache {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final Map<String, Double> bids = new ConcurrentHashMap<>();
+    private MockServer server;
+
+    @BeforeClass
+    public void beforeClass() {
+        // ticket 1 is a position on EURUSD and ticket 2 is a pending order on GBPUSD; even tickets can't be closed
+        server = new MockServer()
+                .on(Request.GET_ACCOUNT_INFO, request -> JsonNodeFactory.instance.objectNode()
+                        .put("login", 12345)
+                        .put("trade_mode", AccountTradeMode.ACCOUNT_TRADE_MODE_DEMO.id)
+                        .put("name", "Test")
+                        .put("server", "Test-Server")
+                        .put("currency", "USD")
+                        .put("company", "Test Company"))
+                .on(Request.GET_ACCOUNT_INFO_SNAPSHOT, request -> {
+                    ObjectNode values = JsonNodeFactory.instance.objectNode();
+                    ArrayNode integers = values.putArray("integers");
+                    for (JsonNode id : request.get("integer_property_ids")) {
+                        integers.add(id.asInt());
+                    }
+                    ArrayNode doubles = values.putArray("doubles");
+                    for (JsonNode id : request.get("double_property_ids")) {
+                        doubles.add(id.asInt() + 0.5);
+                    }
+                    return values;
+                })
+                .on(Request.GET_ORDERS, request -> JsonNodeFactory.instance.arrayNode()
+                        .add(order(1, "EURUSD", OrderType.OP_BUY))
+                        .add(order(2, "GBPUSD", OrderType.OP_BUYLIMIT)))
+                .on(Request.DO_ORDER_SEND, request -> order(3, request.get("symbol").asText(), OrderType.OP_SELL))
+                .on(Request.DO_ORDER_CLOSE, request -> {
+                    if (request.get("ticket").asInt() % 2 == 0) {
+                        throw new MockServer.Failure(MT4Exception.Code.ERR_INVALID_TICKET, "Invalid ticket.");
+                    }
+                    return JsonNodeFactory.instance.nullNode();
+                })
+                .on(Request.GET_SYMBOL_TICKS, request -> {
+                    ObjectNode ticks = JsonNodeFactory.instance.objectNode();
+                    for (JsonNode name : request.get("names")) {
+                        ticks.putObject(name.asText())
+                                .put("time", 0)
+                                .put("bid", bids.getOrDefault(name.asText(), 1.0))
+                                .put("ask", bids.getOrDefault(name.asText(), 1.0) + 0.0001)
+                                .put("last", 0)
+                                .put("volume", 0);
+                    }
+                    return ticks;
+                });
+    }
+
+    @AfterClass
+    public void afterClass() {
+        server.close();
+    }
+
+    @BeforeMethod
+    public void beforeMethod() {
+        clock.set(0);
+        bids.clear();
+    }
+
+    private static ObjectNode order(int ticket, String symbol, OrderType orderType) {
+        return JsonNodeFactory.instance.objectNode()
+                .put("ticket", ticket)
+                .put("symbol", symbol)
+                .put("order_type", orderType.id)
+                .put("lots", 0.1);
+    }
+
+    private AccountCache newCache() {
+        return AccountCache.Builder.newInstance()
+                .setMaxAge(1, TimeUnit.MINUTES)
+                .setClock(clock::get)
+                .build();
+    }
+
+    private int snapshots() {
+        return server.getRequestCount(Request.GET_ACCOUNT_INFO_SNAPSHOT);
+    }
+
+    @Test
+    public void testInvalidatedByTrades() throws JsonProcessingException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            AccountCache cache = newCache();
+            mt4.setAccountCache(cache);
+            Account account = mt4.getAccount();
+            int before = snapshots();
+            int doublesBefore = server.getRequestCount(Request.GET_ACCOUNT_INFO_DOUBLE);
+            Assert.assertEquals(account.getBalance(), AccountInfoDouble.ACCOUNT_BALANCE.id + 0.5);
+            Assert.assertEquals(account.getEquity(), AccountInfoDouble.ACCOUNT_EQUITY.id + 0.5);
+            Assert.assertEquals(account.getMargin(), AccountInfoDouble.ACCOUNT_MARGIN.id + 0.5);
+            Assert.assertEquals(account.getLeverage(), AccountInfoInteger.ACCOUNT_LEVERAGE.id);
+            Assert.assertEquals(snapshots() - before, 1);
+            Assert.assertEquals(server.getRequestCount(Request.GET_ACCOUNT_INFO_DOUBLE), doublesBefore);
+
+            mt4.orderSend(NewOrder.Builder.newInstance()
+                    .setSymbol("EURUSD")
+                    .setOrderType(OrderType.OP_SELL)
+                    .setLots(0.1)
+                    .build());
+            Assert.assertEquals(cache.getPositionCount(), 1);
+            account.getBalance();
+            Assert.assertEquals(snapshots() - before, 2);
+
+            // a failed trade may still have changed something
+            Assert.expectThrows(MT4Exception.class, () -> mt4.orderClose(2));
+            account.getBalance();
+            account.snapshot();
+            Assert.assertEquals(snapshots() - before, 3);
+            Assert.assertEquals(cache.getHits(), 4);
+            Assert.assertEquals(cache.getMisses(), 3);
+        }
+    }
+
+    @Test
+    public void testInvalidatedByPositionTicks() throws JsonProcessingException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            AccountCache cache = newCache();
+            mt4.setAccountCache(cache);
+            Account account = mt4.getAccount();
+            mt4.getOrders();
+            Assert.assertEquals(cache.getPositionCount(), 1);
+            mt4.getTicks("EURUSD", "GBPUSD");
+            account.getEquity();
+            int before = snapshots();
+
+            // unchanged prices, and prices of symbols without positions, don't matter
+            bids.put("GBPUSD", 1.3);
+            mt4.getTicks("EURUSD", "GBPUSD");
+            account.getEquity();
+            Assert.assertEquals(snapshots() - before, 0);
+
+            bids.put("EURUSD", 1.2);
+            mt4.getTicks("EURUSD", "GBPUSD");
+            account.getEquity();
+            Assert.assertEquals(snapshots() - before, 1);
+
+            // once the position is closed, its prices don't matter either
+            mt4.orderClose(1);
+            Assert.assertEquals(cache.getPositionCount(), 0);
+            account.getEquity();
+            bids.put("EURUSD", 1.1);
+            mt4.getTicks("EURUSD");
+            account.getEquity();
+            Assert.assertEquals(snapshots() - before, 2);
+        }
+    }
+
+    @Test
+    public void testMaxAge() throws JsonProcessingException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            mt4.setAccountCache(newCache());
+            Account account = mt4.getAccount();
+            int before = snapshots();
+            account.getMarginFree();
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(59));
+            account.getMarginFree();
+            Assert.assertEquals(snapshots() - before, 1);
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+            account.getMarginFree();
+            Assert.assertEquals(snapshots() - before, 2);
+        }
+        Assert.expectThrows(IllegalArgumentException.class, () -> AccountCache.Builder.newInstance()
+                .setMaxAge(0, TimeUnit.SECONDS)
+                .build());
+    }
+
+    @Test
+    public void testAsyncTrades() throws JsonProcessingException, MT4Exception {
+        try (MT4AsyncClient mt4 = new MT4AsyncClient(server.getAddress(), 1000, 1000)) {
+            AccountCache cache = newCache();
+            mt4.setAccountCache(cache);
+            Account account = mt4.getAccount().join();
+            mt4.getOrders().join();
+            Assert.assertEquals(cache.getPositionCount(), 1);
+            int before = snapshots();
+            account.getBalance();
+            account.getBalance();
+            mt4.orderClose(1).join();
+            Assert.assertEquals(cache.getPositionCount(), 0);
+            account.getBalance();
+            Assert.assertEquals(snapshots() - before, 2);
+            Assert.assertEquals(cache.getInvalidations(), 1);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Tests of {@link Account#snapshot()}, against a {@link MockServer}.
+ */
+public class TestAccountSnapshot {
+
+    private MockServer server;
+    private MT4Client mt4;
+
+    @BeforeClass
+    public void beforeClass() {
+        // each integer property is its id, and each double property is its id plus a half
+        server = new MockServer()
+                .on(Request.GET_ACCOUNT_INFO, request -> JsonNodeFactory.instance.objectNode()
+                        .put("login", 12345)
+                        .put("trade_mode", AccountTradeMode.ACCOUNT_TRADE_MODE_DEMO.id)
+                        .put("name", "Test")
+                        .put("server", "Test-Server")
+                        .put("currency", "USD")
+                        .put("company", "Test Company"))
+                .on(Request.GET_ACCOUNT_INFO_SNAPSHOT, request -> {
+                    ObjectNode values = JsonNodeFactory.instance.objectNode();
+                    ArrayNode integers = values.putArray("integers");
+                    for (JsonNode id : request.get("integer_property_ids")) {
+                        integers.add(id.asInt() == AccountInfoInteger.ACCOUNT_MARGIN_SO_MODE.id
+                                ? AccountStopoutMode.ACCOUNT_STOPOUT_MODE_PERCENT.id : id.asInt());
+                    }
+                    ArrayNode doubles = values.putArray("doubles");
+                    for (JsonNode id : request.get("double_property_ids")) {
+                        doubles.add(id.asInt() + 0.5);
+                    }
+                    return values;
+                });
+        mt4 = new MT4Client(server.getAddress(), 1000, 1000);
+    }
+
+    @AfterClass
+    public void afterClass() {
+        mt4.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void testSnapshotInOneRequest() throws JsonProcessingException, MT4Exception {
+        Account account = mt4.getAccount();
+        int before = server.getRequestCount(Request.GET_ACCOUNT_INFO_SNAPSHOT);
+        AccountSnapshot snapshot = account.snapshot();
+        Assert.assertEquals(server.getRequestCount(Request.GET_ACCOUNT_INFO_SNAPSHOT) - before, 1);
+
+        for (AccountInfoDouble prop : AccountInfoDouble.values()) {
+            Assert.assertEquals(snapshot.getDouble(prop), prop.id + 0.5, prop.toString());
+        }
+        Assert.assertEquals(snapshot.getLeverage(), AccountInfoInteger.ACCOUNT_LEVERAGE.id);
+        Assert.assertEquals(snapshot.getLimitOrders(), AccountInfoInteger.ACCOUNT_LIMIT_ORDERS.id);
+        Assert.assertEquals(snapshot.getMarginStopOutMode(), AccountStopoutMode.ACCOUNT_STOPOUT_MODE_PERCENT);
+        Assert.assertEquals(snapshot.getBalance(), AccountInfoDouble.ACCOUNT_BALANCE.id + 0.5);
+        Assert.assertEquals(snapshot.getEquity(), AccountInfoDouble.ACCOUNT_EQUITY.id + 0.5);
+        Assert.assertEquals(snapshot.getMarginFree(), AccountInfoDouble.ACCOUNT_MARGIN_FREE.id + 0.5);
+    }
+}
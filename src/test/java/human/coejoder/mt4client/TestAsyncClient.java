@@ -0,0 +1,73 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Integration tests for {@link MT4AsyncClient}.
+ */
+public class TestAsyncClient {
+
+    private static final int REQUEST_COUNT = 100;
+
+    private MT4AsyncClient mt4;
+    private String symbolName;
+
+    @BeforeClass
+    public void beforeClass() throws ExecutionException, InterruptedException {
+        mt4 = new MT4AsyncClient(TestBase.ADDRESS);
+        symbolName = mt4.getSymbolNames().get().iterator().next();
+    }
+
+    @AfterClass
+    public void afterClass() {
+        mt4.shutdown();
+    }
+
+    @Test
+    public void testPipelinedTicks() throws ExecutionException, InterruptedException {
+        List<CompletableFuture<SymbolTick>> ticks = new ArrayList<>(REQUEST_COUNT);
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            ticks.add(mt4.getTick(symbolName));
+        }
+        CompletableFuture.allOf(ticks.toArray(CompletableFuture[]::new)).get();
+        TestBase.LOG.trace("Last of " + REQUEST_COUNT + " ticks: " + ticks.get(REQUEST_COUNT - 1).get());
+    }
+
+    @Test
+    public void testMixedRequestsInFlight() throws ExecutionException, InterruptedException, JsonProcessingException,
+            MT4Exception {
+        CompletableFuture<Account> account = mt4.getAccount();
+        CompletableFuture<Symbol> symbol = mt4.getSymbol(symbolName);
+        CompletableFuture<List<Order>> orders = mt4.getOrders();
+        CompletableFuture<Double> rsi = mt4.runIndicator(Indicator.iRSI(
+                symbolName, StandardTimeframe.PERIOD_H1, 14, AppliedPrice.PRICE_CLOSE, 0));
+
+        Assert.assertEquals(symbol.get().getName(), symbolName);
+        TestBase.LOG.trace("Account: " + account.get());
+        TestBase.LOG.trace("Orders: " + orders.get());
+        TestBase.LOG.trace("RSI: " + rsi.get());
+
+        // query interfaces returned by the async client make requests over the same connection
+        TestBase.LOG.trace("Account balance: " + account.get().getBalance());
+    }
+
+    @Test
+    public void testServerErrorCompletesExceptionally() throws InterruptedException {
+        try {
+            mt4.getOrder(-1).get();
+            Assert.fail("Expected an MT4Exception.");
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof MT4Exception, "Unexpected cause: " + e.getCause());
+        }
+    }
+}
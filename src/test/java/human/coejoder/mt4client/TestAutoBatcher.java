@@ -0,0 +1,133 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Tests of {@link AutoBatcher}, against a {@link MockServer}.
+ */
+public class TestAutoBatcher {
+
+    private static final String UNKNOWN_SYMBOL = "XYZ";
+    private static final int THREAD_COUNT = 16;
+
+    private MockServer server;
+    private ExecutorService executor;
+
+    @BeforeClass
+    public void beforeClass() {
+        // each indicator's value is its period
+        server = new MockServer().on(Request.RUN_INDICATOR, request -> {
+            if (UNKNOWN_SYMBOL.equals(request.get("argv").get(0).asText())) {
+                throw new MockServer.Failure(MT4Exception.Code.ERR_UNKNOWN_SYMBOL, "Unknown symbol.");
+            }
+            return DoubleNode.valueOf(request.get("argv").get(2).asDouble());
+        });
+        executor = Executors.newFixedThreadPool(THREAD_COUNT);
+    }
+
+    @AfterClass
+    public void afterClass() {
+        executor.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void testConcurrentRequestsAreBatched() throws Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            AutoBatcher batcher = mt4.enableAutoBatching(50, TimeUnit.MILLISECONDS, THREAD_COUNT);
+            int before = server.getRequestCount(Request.BATCH);
+            List<Future<Double>> results = runConcurrently(mt4, THREAD_COUNT, period -> "EURUSD");
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                Assert.assertEquals((double) results.get(i).get(), i + 1.0);
+            }
+            Assert.assertTrue(server.getRequestCount(Request.BATCH) - before < THREAD_COUNT);
+
+            AutoBatcher.Metrics metrics = batcher.getMetrics();
+            Assert.assertEquals(metrics.getRequests(), THREAD_COUNT);
+            Assert.assertTrue(metrics.getMeanBatchSize() > 1);
+            Assert.assertEquals(metrics.getBatchSizeHistogram().length, 5);
+            long batches = 0;
+            for (long count : metrics.getBatchSizeHistogram()) {
+                batches += count;
+            }
+            Assert.assertEquals(batches, metrics.getBatches());
+            Assert.assertTrue(metrics.getMaxQueueNanos() >= metrics.getMeanQueueNanos());
+            Assert.assertTrue(metrics.getMeanQueueNanos() > 0);
+        }
+    }
+
+    @Test
+    public void testPerCallerErrors() throws Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            mt4.enableAutoBatching(1, TimeUnit.SECONDS, 2);
+            int before = server.getRequestCount(Request.BATCH);
+            List<Future<Double>> results = runConcurrently(mt4, 2, period -> period == 1 ? UNKNOWN_SYMBOL : "EURUSD");
+            ExecutionException exc = Assert.expectThrows(ExecutionException.class, () -> results.get(0).get());
+            Assert.assertTrue(exc.getCause() instanceof MT4Exception);
+            Assert.assertEquals(((MT4Exception) exc.getCause()).errorCode, MT4Exception.Code.ERR_UNKNOWN_SYMBOL);
+            Assert.assertEquals((double) results.get(1).get(), 2.0);
+            Assert.assertEquals(server.getRequestCount(Request.BATCH) - before, 1);
+        }
+    }
+
+    @Test
+    public void testBatchesNotSupported() throws Exception {
+        try (MockServer legacy = new MockServer()) {
+            legacy.setBatchSupported(false);
+            legacy.on(Request.RUN_INDICATOR, request -> DoubleNode.valueOf(request.get("argv").get(2).asDouble()));
+            try (MT4Client mt4 = new MT4Client(legacy.getAddress(), 1000, 1000)) {
+                AutoBatcher batcher = mt4.enableAutoBatching(1, TimeUnit.SECONDS, 2);
+                List<Future<Double>> results = runConcurrently(mt4, 2, period -> "EURUSD");
+                Assert.assertEquals((double) results.get(0).get(), 1.0);
+                Assert.assertEquals((double) results.get(1).get(), 2.0);
+                Assert.assertFalse(batcher.isBatchSupported());
+                Assert.assertEquals(legacy.getRequestCount(Request.BATCH), 1);
+                Assert.assertEquals(legacy.getRequestCount(Request.RUN_INDICATOR), 2);
+            }
+        }
+    }
+
+    @Test
+    public void testDisable() throws Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            mt4.enableAutoBatching(200, TimeUnit.MICROSECONDS, 8);
+            Assert.expectThrows(IllegalStateException.class, () -> mt4.enableAutoBatching(1, TimeUnit.SECONDS, 8));
+            Assert.assertEquals(mt4.runIndicator(Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 3, 1)), 3.0);
+            mt4.disableAutoBatching();
+            int before = server.getRequestCount(Request.BATCH);
+            Assert.assertEquals(mt4.runIndicator(Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 4, 1)), 4.0);
+            Assert.assertEquals(server.getRequestCount(Request.BATCH), before);
+        }
+    }
+
+    /**
+     * Run indicators from several threads at once through a shared client.  The period of each is its index plus one.
+     */
+    private List<Future<Double>> runConcurrently(MT4Client mt4, int count, IntFunction<String> symbols) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Double>> results = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Indicator func = Indicator.iATR(symbols.apply(i), StandardTimeframe.PERIOD_H1, i, 1);
+            results.add(executor.submit(() -> {
+                start.await();
+                return mt4.runIndicator(func);
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+}
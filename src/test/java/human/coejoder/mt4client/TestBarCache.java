@@ -0,0 +1,147 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests of the tail-only refresh of cached OHLCV bars, against a {@link MockServer}.
+ */
+public class TestBarCache {
+
+    private static final int HOUR_SECONDS = 3600;
+
+    private final AtomicLong clock = new AtomicLong();
+    private volatile int barsOpened;
+    private volatile int ticks;
+    private volatile int lastLimit;
+    private MockServer server;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        clock.set(0);
+        barsOpened = 200;
+        ticks = 0;
+        server = new MockServer().on(Request.GET_OHLCV, this::ohlcv);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        server.close();
+    }
+
+    // the latest bars of an H1 history, the last of which is forming
+    private JsonNode ohlcv(JsonNode request) {
+        lastLimit = request.get("limit").asInt();
+        ArrayNode bars = JsonNodeFactory.instance.arrayNode();
+        for (int i = Math.max(0, barsOpened - lastLimit); i < barsOpened; i++) {
+            bars.addObject()
+                    .put("time", i * HOUR_SECONDS)
+                    .put("open", i)
+                    .put("high", i + 2)
+                    .put("low", i - 2)
+                    .put("close", i == barsOpened - 1 ? i + ticks : i + 1)
+                    .put("tick_volume", i == barsOpened - 1 ? ticks : 10);
+        }
+        return bars;
+    }
+
+    private void advanceHours(int hours) {
+        barsOpened += hours;
+        ticks = 0;
+        clock.addAndGet(TimeUnit.HOURS.toNanos(hours));
+    }
+
+    private static void assertWindow(List<OHLCV> bars, int count, int lastBar) {
+        Assert.assertEquals(bars.size(), count);
+        for (int i = 0; i < count; i++) {
+            Assert.assertEquals(bars.get(i).time, (lastBar - count + 1 + i) * HOUR_SECONDS);
+        }
+    }
+
+    @Test
+    public void testTailRefresh() throws JsonProcessingException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            BarCache cache = new BarCache(mt4, 100, 1000, clock::get);
+            assertWindow(cache.getBars("EURUSD", StandardTimeframe.PERIOD_H1), 100, 199);
+            Assert.assertEquals(lastLimit, 100);
+
+            // within the same bar, only the forming bar is replaced
+            ticks = 5;
+            clock.addAndGet(TimeUnit.MINUTES.toNanos(10));
+            List<OHLCV> bars = cache.getBars("EURUSD", StandardTimeframe.PERIOD_H1);
+            Assert.assertEquals(lastLimit, 2);
+            assertWindow(bars, 100, 199);
+            Assert.assertEquals(bars.get(99).close, 204);
+            Assert.assertEquals(bars.get(99).tick_volume, 5);
+
+            // new bars are appended and the oldest are dropped
+            advanceHours(3);
+            bars = cache.getBars("EURUSD", StandardTimeframe.PERIOD_H1);
+            Assert.assertEquals(lastLimit, 5);
+            assertWindow(bars, 100, 202);
+            Assert.assertEquals(bars.get(96).close, 200);
+            Assert.assertEquals(bars.get(99).tick_volume, 0);
+
+            Assert.assertEquals(cache.getFullFetches(), 1);
+            Assert.assertEquals(cache.getTailFetches(), 2);
+            Assert.assertEquals(cache.getBarsReceived(), 107);
+        }
+    }
+
+    @Test
+    public void testSeriesAreSeparate() throws JsonProcessingException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            BarCache cache = new BarCache(mt4, 50, 1000, clock::get);
+            cache.getBars("EURUSD", StandardTimeframe.PERIOD_H1);
+            cache.getBars("GBPUSD", StandardTimeframe.PERIOD_H1);
+            cache.getBars("EURUSD", StandardTimeframe.PERIOD_H4);
+            Assert.assertEquals(cache.getFullFetches(), 3);
+            cache.getBars("GBPUSD", StandardTimeframe.PERIOD_H1);
+            Assert.assertEquals(cache.getFullFetches(), 3);
+            Assert.assertEquals(cache.getTailFetches(), 1);
+
+            cache.invalidate("GBPUSD", StandardTimeframe.PERIOD_H1);
+            cache.getBars("GBPUSD", StandardTimeframe.PERIOD_H1);
+            Assert.assertEquals(cache.getFullFetches(), 4);
+            Assert.assertEquals(lastLimit, 50);
+        }
+    }
+
+    @Test
+    public void testGapFetchesWholeWindow() throws JsonProcessingException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            BarCache cache = new BarCache(mt4, 100, 1000, clock::get);
+            cache.getBars("EURUSD", StandardTimeframe.PERIOD_H1);
+
+            // more bars opened than the elapsed time accounts for
+            barsOpened += 10;
+            List<OHLCV> bars = cache.getBars("EURUSD", StandardTimeframe.PERIOD_H1);
+            Assert.assertEquals(lastLimit, 100);
+            assertWindow(bars, 100, 209);
+            Assert.assertEquals(cache.getFullFetches(), 2);
+        }
+    }
+
+    @Test
+    public void testShortHistory() throws JsonProcessingException, MT4Exception {
+        barsOpened = 3;
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            BarCache cache = new BarCache(mt4, 100, 1000, clock::get);
+            assertWindow(cache.getBars("EURUSD", StandardTimeframe.PERIOD_H1), 3, 2);
+            advanceHours(1);
+            assertWindow(cache.getBars("EURUSD", StandardTimeframe.PERIOD_H1), 4, 3);
+            Assert.assertEquals(cache.getFullFetches(), 1);
+        }
+        Assert.expectThrows(IllegalArgumentException.class, () -> new BarCache(null, 0, 1000));
+    }
+}
@@ -0,0 +1,104 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests of {@link MT4AsyncClient#blocking()}, against a {@link MockServer}.
+ */
+public class TestBlockingClient {
+
+    private static final int CALLER_COUNT = 2000;
+
+    private MockServer server;
+    private MT4AsyncClient mt4;
+
+    @BeforeClass
+    public void beforeClass() {
+        // the bid of each symbol "S<n>" is n
+        server = new MockServer().on(Request.GET_SYMBOL_TICK, request -> JsonNodeFactory.instance.objectNode()
+                .put("time", 0)
+                .put("bid", Integer.parseInt(request.get("symbol").asText().substring(1)))
+                .put("ask", 0)
+                .put("last", 0)
+                .put("volume", 0));
+        mt4 = new MT4AsyncClient(server.getAddress(), 1000, 5000);
+    }
+
+    @AfterClass
+    public void afterClass() {
+        mt4.shutdown();
+        server.close();
+    }
+
+    /**
+     * Block many callers at once on the shared connection.  On Java 21 and later, each caller is a virtual thread.
+     */
+    @Test
+    public void testConcurrentCallers() throws ExecutionException, InterruptedException {
+        MT4Client blocking = mt4.blocking();
+        ExecutorService executor = newCallerExecutor();
+        try {
+            List<Future<SymbolTick>> ticks = new ArrayList<>(CALLER_COUNT);
+            for (int i = 0; i < CALLER_COUNT; i++) {
+                String symbol = "S" + i;
+                ticks.add(executor.submit(() -> blocking.getResponse(MT4Client.buildSymbolTickRequest(symbol),
+                        SymbolTick.class)));
+            }
+            for (int i = 0; i < CALLER_COUNT; i++) {
+                Assert.assertEquals(ticks.get(i).get().bid, i);
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSharesConnection() throws ExecutionException, InterruptedException, JsonProcessingException,
+            MT4Exception {
+        int before = server.getRequestCount(Request.GET_SYMBOL_TICK);
+        mt4.getTick("S1").get();
+        mt4.blocking().getResponse(MT4Client.buildSymbolTickRequest("S2"), SymbolTick.class);
+        Assert.assertEquals(server.getRequestCount(Request.GET_SYMBOL_TICK) - before, 2);
+    }
+
+    @Test
+    public void testTimeout() {
+        try (MockServer silent = new MockServer();
+             MT4AsyncClient client = new MT4AsyncClient(silent.getAddress(), 1000, 200)) {
+            silent.dropReplies(Integer.MAX_VALUE);
+            MT4Client blocking = client.blocking();
+            MT4TimeoutException e = Assert.expectThrows(MT4TimeoutException.class,
+                    () -> blocking.getResponse(MT4Client.buildSymbolTickRequest("S1"), SymbolTick.class));
+            Assert.assertTrue(e.getCause() instanceof TimeoutException);
+
+            // an interrupted caller stops waiting, and stays interrupted
+            Thread.currentThread().interrupt();
+            Assert.expectThrows(IllegalStateException.class,
+                    () -> blocking.getResponse(MT4Client.buildSymbolTickRequest("S2"), SymbolTick.class));
+            Assert.assertTrue(Thread.interrupted());
+        }
+    }
+
+    private static ExecutorService newCallerExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(64);
+        }
+    }
+}
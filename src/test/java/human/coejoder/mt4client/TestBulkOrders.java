@@ -0,0 +1,164 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests of the bulk order operations, against a {@link MockServer}.
+ */
+public class TestBulkOrders {
+
+    private static final double TOO_MANY_LOTS = 100;
+
+    private final AtomicInteger nextTicket = new AtomicInteger(1);
+    private MockServer server;
+
+    @BeforeClass
+    public void beforeClass() {
+        server = new MockServer();
+        registerHandlers(server);
+    }
+
+    @AfterClass
+    public void afterClass() {
+        server.close();
+    }
+
+    /**
+     * Orders of too many lots fail, and orders with even tickets can't be closed.
+     */
+    private void registerHandlers(MockServer server) {
+        server.on(Request.DO_ORDER_SEND, request -> {
+            if (request.get("lots").asDouble() >= TOO_MANY_LOTS) {
+                throw new MockServer.Failure(MT4Exception.Code.ERR_NOT_ENOUGH_MONEY, "Not enough money.");
+            }
+            return order(nextTicket.getAndIncrement(), request.get("symbol").asText(), request.get("lots").asDouble())
+                    .put("order_type", request.get("order_type").asInt());
+        }).on(Request.DO_ORDER_MODIFY, request -> order(request.get("ticket").asInt(), "EURUSD", 1)
+                .put("sl", request.get("sl").asDouble())
+        ).on(Request.DO_ORDER_CLOSE, request -> {
+            if (request.get("ticket").asInt() % 2 == 0) {
+                throw new MockServer.Failure(MT4Exception.Code.ERR_INVALID_TICKET, "Invalid ticket.");
+            }
+            return JsonNodeFactory.instance.nullNode();
+        });
+    }
+
+    private static ObjectNode order(int ticket, String symbol, double lots) {
+        return JsonNodeFactory.instance.objectNode()
+                .put("ticket", ticket)
+                .put("symbol", symbol)
+                .put("order_type", OrderType.OP_BUY.id)
+                .put("lots", lots);
+    }
+
+    private static List<NewOrder> newOrders(double... lots) {
+        List<NewOrder> newOrders = new ArrayList<>();
+        for (double lot : lots) {
+            newOrders.add(NewOrder.Builder.newInstance()
+                    .setSymbol("EURUSD")
+                    .setOrderType(OrderType.OP_SELL)
+                    .setLots(lot)
+                    .build());
+        }
+        return newOrders;
+    }
+
+    @Test
+    public void testSendAllInOneRequest() throws JsonProcessingException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            int before = server.getRequestCount(Request.BATCH);
+            BatchResults<Order> results = mt4.orderSendAll(newOrders(0.1, TOO_MANY_LOTS, 0.3));
+            Assert.assertEquals(server.getRequestCount(Request.BATCH) - before, 1);
+            Assert.assertEquals(results.size(), 3);
+            Assert.assertEquals(results.getErrorCount(), 1);
+            Assert.assertEquals(results.get(0).getLots(), 0.1);
+            Assert.assertEquals(results.get(0).getOrderType(), OrderType.OP_SELL);
+            Assert.assertEquals(results.getError(1).errorCode, MT4Exception.Code.ERR_NOT_ENOUGH_MONEY);
+            Assert.expectThrows(MT4Exception.class, () -> results.get(1));
+            Assert.assertEquals(results.get(2).getLots(), 0.3);
+            Assert.assertEquals(mt4.orderSendAll(List.of()).size(), 0);
+        }
+    }
+
+    @Test
+    public void testModifyAll() throws JsonProcessingException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            List<ModifyOrder> modifyOrders = new ArrayList<>();
+            for (int ticket = 1; ticket <= 3; ticket++) {
+                modifyOrders.add(ModifyOrder.Builder.newInstance()
+                        .setOrder(ticket)
+                        .setSl(1.0 + ticket)
+                        .build());
+            }
+            BatchResults<Order> results = mt4.orderModifyAll(modifyOrders);
+            Assert.assertFalse(results.hasErrors());
+            for (int i = 0; i < results.size(); i++) {
+                Assert.assertEquals(results.get(i).getTicket(), i + 1);
+                Assert.assertEquals(results.get(i).getSl(), 2.0 + i);
+            }
+        }
+    }
+
+    @Test
+    public void testCloseAll() throws JsonProcessingException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            List<Order> orders = new ArrayList<>();
+            BatchResults<Order> sent = mt4.orderSendAll(newOrders(0.1, 0.2, 0.3, 0.4));
+            for (int i = 0; i < sent.size(); i++) {
+                orders.add(sent.get(i));
+            }
+            BatchResults<Void> results = mt4.orderCloseAll(orders);
+            Assert.assertEquals(results.size(), orders.size());
+            for (int i = 0; i < orders.size(); i++) {
+                MT4Exception error = results.getError(i);
+                if (orders.get(i).getTicket() % 2 == 0) {
+                    Assert.assertEquals(error.errorCode, MT4Exception.Code.ERR_INVALID_TICKET);
+                }
+                else {
+                    Assert.assertNull(error);
+                    Assert.assertNull(results.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBatchesNotSupported() throws JsonProcessingException, MT4Exception {
+        try (MockServer legacy = new MockServer()) {
+            legacy.setBatchSupported(false);
+            registerHandlers(legacy);
+            try (MT4Client mt4 = new MT4Client(legacy.getAddress(), 1000, 1000)) {
+                BatchResults<Order> results = mt4.orderSendAll(newOrders(0.1, TOO_MANY_LOTS));
+                Assert.assertEquals(results.get(0).getLots(), 0.1);
+                Assert.assertEquals(results.getError(1).errorCode, MT4Exception.Code.ERR_NOT_ENOUGH_MONEY);
+                mt4.orderSendAll(newOrders(0.1, 0.2));
+
+                // the server is asked only once
+                Assert.assertEquals(legacy.getRequestCount(Request.BATCH), 1);
+                Assert.assertEquals(legacy.getRequestCount(Request.DO_ORDER_SEND), 4);
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncSendAll() throws ExecutionException, InterruptedException, MT4Exception {
+        try (MT4AsyncClient mt4 = new MT4AsyncClient(server.getAddress(), 1000, 1000)) {
+            BatchResults<Order> results = mt4.orderSendAll(newOrders(TOO_MANY_LOTS, 0.5)).get();
+            Assert.assertEquals(results.getError(0).errorCode, MT4Exception.Code.ERR_NOT_ENOUGH_MONEY);
+            Assert.assertEquals(results.get(1).getLots(), 0.5);
+            Assert.assertFalse(mt4.orderCloseAll(List.of()).get().hasErrors());
+        }
+    }
+}
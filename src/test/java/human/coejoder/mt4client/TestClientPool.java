@@ -0,0 +1,134 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests for {@link MT4ClientPool}.
+ */
+public class TestClientPool {
+
+    private static final int POOL_SIZE = 4;
+    private static final int THREAD_COUNT = 16;
+
+    private MT4ClientPool pool;
+
+    @BeforeClass
+    public void beforeClass() {
+        pool = new MT4ClientPool(TestBase.ADDRESS, POOL_SIZE);
+    }
+
+    @AfterClass
+    public void afterClass() {
+        pool.shutdown();
+    }
+
+    @Test
+    public void testLeaseTimeout() throws Exception {
+        try (MT4ClientPool tiny = new MT4ClientPool(TestBase.ADDRESS, 1)) {
+            try (MT4ClientPool.Lease lease = tiny.lease()) {
+                Assert.assertNotNull(lease.getClient());
+                Assert.expectThrows(TimeoutException.class, () -> tiny.lease(10, TimeUnit.MILLISECONDS));
+                Assert.assertEquals(tiny.getMetrics().getActive(), 1);
+            }
+            MT4ClientPool.Metrics metrics = tiny.getMetrics();
+            logMetrics(metrics);
+            Assert.assertEquals(metrics.getActive(), 0);
+            Assert.assertEquals(metrics.getLeases(), 1);
+            Assert.assertEquals(metrics.getTimeouts(), 1);
+            Assert.assertTrue(metrics.getMaxWaitNanos() >= TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    @Test
+    public void testClosedLease() throws Exception {
+        MT4ClientPool.Lease lease = pool.lease();
+        lease.close();
+        Assert.expectThrows(IllegalStateException.class, lease::getClient);
+    }
+
+    @Test
+    public void testFailedClientIsReconnected() throws Exception {
+        try (MockServer server = new MockServer()
+                .on(Request.GET_SYMBOLS, request -> JsonNodeFactory.instance.arrayNode().add("EURUSD"));
+             MT4ClientPool tiny = new MT4ClientPool(server.getAddress(), 1, 1000, 200, 1000)) {
+            // the reply is lost, which leaves the client's REQ socket waiting for it
+            server.dropReplies(1);
+            try (MT4ClientPool.Lease lease = tiny.lease()) {
+                Assert.expectThrows(RuntimeException.class, () -> lease.getClient().getSymbolNames());
+            }
+            try (MT4ClientPool.Lease lease = tiny.lease()) {
+                Assert.assertEquals(lease.getClient().getSymbolNames(), List.of("EURUSD"));
+            }
+            Assert.assertEquals(tiny.getMetrics().getReconnects(), 1);
+        }
+    }
+
+    @Test
+    public void testLeaseStateIsCleared() throws Exception {
+        try (MockServer server = new MockServer()
+                .on(Request.GET_SYMBOLS, request -> JsonNodeFactory.instance.arrayNode().add("EURUSD"));
+             MT4ClientPool tiny = new MT4ClientPool(server.getAddress(), 1, 1000, 1000, 1000)) {
+            MT4ClientPool.Lease lease = tiny.lease();
+            MT4Client client = lease.getClient();
+            client.setSymbolInfoCache(SymbolInfoCache.Builder.newInstance().build());
+            client.setIndicatorCache(IndicatorCache.Builder.newInstance().build());
+            client.setAccountCache(AccountCache.Builder.newInstance().build());
+            client.enableAutoBatching(200, TimeUnit.MICROSECONDS, 16);
+            client.negotiateCodec(WireCodec.CBOR);
+            Assert.assertEquals(client.getCodec(), WireCodec.CBOR);
+
+            // closing twice returns the client once
+            lease.close();
+            lease.close();
+            try (MT4ClientPool.Lease next = tiny.lease()) {
+                Assert.expectThrows(TimeoutException.class, () -> tiny.lease(10, TimeUnit.MILLISECONDS));
+                Assert.assertSame(next.getClient(), client);
+                Assert.assertNull(client.getSymbolInfoCache());
+                Assert.assertNull(client.getIndicatorCache());
+                Assert.assertNull(client.getAccountCache());
+                Assert.assertEquals(client.getCodec(), WireCodec.JSON);
+                Assert.assertEquals(client.getSymbolNames(), List.of("EURUSD"));
+                client.enableAutoBatching(200, TimeUnit.MICROSECONDS, 16);
+            }
+            Assert.assertEquals(tiny.getMetrics().getReconnects(), 0);
+        }
+    }
+
+    @Test
+    public void testConcurrentLeases() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        try {
+            List<Future<String>> names = new ArrayList<>(THREAD_COUNT);
+            for (int i = 0; i < THREAD_COUNT; i++) {
+                names.add(executor.submit(() -> {
+                    try (MT4ClientPool.Lease lease = pool.lease()) {
+                        return lease.getClient().getAccount().getName();
+                    }
+                }));
+            }
+            for (Future<String> name : names) {
+                Assert.assertNotNull(name.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        logMetrics(pool.getMetrics());
+    }
+
+    private static void logMetrics(MT4ClientPool.Metrics metrics) {
+        TestBase.LOG.trace("Pool metrics: " + metrics);
+    }
+}
@@ -0,0 +1,137 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Tests of request id correlation, against a {@link MockServer}.
+ */
+public class TestCorrelation {
+
+    private static final int REQUEST_COUNT = 10;
+    private static final int SHORT_RESPONSE_TIMEOUT_MILLIS = 200;
+
+    private MockServer server;
+    private MT4AsyncClient mt4;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        // the bid of each symbol "S<n>" is n
+        server = new MockServer().on(Request.GET_SYMBOL_TICK, request -> JsonNodeFactory.instance.objectNode()
+                .put("time", 0)
+                .put("bid", Integer.parseInt(request.get("symbol").asText().substring(1)))
+                .put("ask", 0)
+                .put("last", 0)
+                .put("volume", 0));
+        mt4 = new MT4AsyncClient(server.getAddress(), 1000, 1000);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        mt4.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void testOutOfOrderResponses() throws ExecutionException, InterruptedException {
+        server.holdReplies(REQUEST_COUNT);
+        List<CompletableFuture<SymbolTick>> ticks = new ArrayList<>(REQUEST_COUNT);
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            ticks.add(mt4.getTick("S" + i));
+        }
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            Assert.assertEquals(ticks.get(i).get().bid, i);
+        }
+    }
+
+    @Test
+    public void testRequestIsNotModified() throws JsonProcessingException, MT4Exception {
+        ObjectNode request = MT4Client.buildSymbolTickRequest("S3");
+        ObjectNode original = request.deepCopy();
+        MT4Client blocking = mt4.blocking();
+        Assert.assertEquals(blocking.getResponse(request, SymbolTick.class).bid, 3);
+        Assert.assertEquals(request, original);
+
+        // the same node may be sent again, and is stamped with a new id
+        server.holdReplies(2);
+        CompletableFuture<SymbolTick> tick = CompletableFuture.supplyAsync(() -> {
+            try {
+                return blocking.getResponse(request, SymbolTick.class);
+            }
+            catch (JsonProcessingException | MT4Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Assert.assertEquals(blocking.getResponse(MT4Client.buildSymbolTickRequest("S4"), SymbolTick.class).bid, 4);
+        Assert.assertEquals(tick.join().bid, 3);
+        Assert.assertEquals(request, original);
+    }
+
+    @Test
+    public void testErrorResponseIsCorrelated() throws ExecutionException, InterruptedException {
+        server.holdReplies(2);
+        CompletableFuture<List<Order>> orders = mt4.getOrders();
+        CompletableFuture<SymbolTick> tick = mt4.getTick("S7");
+        Assert.assertEquals(tick.get().bid, 7);
+        try {
+            orders.get();
+            Assert.fail("Expected an MT4Exception.");
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof MT4Exception, "Unexpected cause: " + e.getCause());
+            Assert.assertEquals(((MT4Exception) e.getCause()).errorCode, MT4Exception.Code.ERR_UNKNOWN_COMMAND);
+        }
+    }
+
+    @Test
+    public void testUnansweredRequestTimesOut() throws ExecutionException, InterruptedException {
+        // the first reply is held back until the second request arrives, which is after the first has timed out
+        server.holdReplies(2);
+        CompletableFuture<SymbolTick> unanswered = mt4.getTick("S1");
+        try {
+            unanswered.get();
+            Assert.fail("Expected a TimeoutException.");
+        }
+        catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof TimeoutException, "Unexpected cause: " + e.getCause());
+        }
+
+        // the late response must not be handed to the next request
+        Assert.assertEquals(mt4.getTick("S2").get().bid, 2);
+    }
+
+    @Test
+    public void testLostResponseWithoutRequestId() throws ExecutionException, InterruptedException {
+        // the server answers in order without echoing request ids, and the first reply is lost
+        server.setEchoRequestIds(false);
+        server.dropReplies(1);
+        try (MT4AsyncClient uncorrelated = new MT4AsyncClient(server.getAddress(), 1000,
+                SHORT_RESPONSE_TIMEOUT_MILLIS)) {
+            CompletableFuture<SymbolTick> lost = uncorrelated.getTick("S1");
+            try {
+                lost.get();
+                Assert.fail("Expected a TimeoutException.");
+            }
+            catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof TimeoutException, "Unexpected cause: " + e.getCause());
+            }
+
+            // once the lost response is overdue by another timeout, the connection is reset rather than handing each
+            // response to the request before it
+            Thread.sleep(2 * SHORT_RESPONSE_TIMEOUT_MILLIS);
+            Assert.assertEquals(uncorrelated.getTick("S2").get().bid, 2);
+            Assert.assertEquals(uncorrelated.getTick("S3").get().bid, 3);
+        }
+    }
+}
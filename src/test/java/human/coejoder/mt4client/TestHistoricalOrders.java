@@ -0,0 +1,174 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Tests of paged, filtered and streamed historical orders, against a {@link MockServer}.
+ */
+public class TestHistoricalOrders {
+
+    private static final int ORDER_COUNT = 2500;
+    private static final long START_TIME = LocalDateTime.of(2020, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM.dd HH:mm:ss");
+
+    private MockServer server;
+    private MockServer legacy;
+
+    @BeforeClass
+    public void beforeClass() {
+        // each order closes a minute after the one before
+        server = new MockServer().on(Request.GET_HISTORICAL_ORDERS, request -> history(request, true));
+        legacy = new MockServer().on(Request.GET_HISTORICAL_ORDERS, request -> history(request, false));
+    }
+
+    @AfterClass
+    public void afterClass() {
+        server.close();
+        legacy.close();
+    }
+
+    private static long closeTime(int ticket) {
+        return START_TIME + ticket * 60L;
+    }
+
+    private static JsonNode history(JsonNode request, boolean filtered) {
+        int fromTicket = filtered ? request.path("from_ticket").asInt(1) : 1;
+        int toTicket = filtered ? request.path("to_ticket").asInt(ORDER_COUNT) : ORDER_COUNT;
+        long fromTime = filtered ? request.path("from_time").asLong(0) : 0;
+        long toTime = filtered ? request.path("to_time").asLong(Long.MAX_VALUE) : Long.MAX_VALUE;
+        int limit = filtered ? request.path("limit").asInt(Integer.MAX_VALUE) : Integer.MAX_VALUE;
+        ArrayNode orders = JsonNodeFactory.instance.arrayNode();
+        for (int ticket = Math.max(fromTicket, 1); ticket <= Math.min(toTicket, ORDER_COUNT); ticket++) {
+            long closeTime = closeTime(ticket);
+            if (closeTime >= fromTime && closeTime <= toTime && orders.size() < limit) {
+                orders.addObject()
+                        .put("ticket", ticket)
+                        .put("symbol", "EURUSD")
+                        .put("order_type", OrderType.OP_BUY.id)
+                        .put("lots", 0.1)
+                        .put("close_time", LocalDateTime.ofEpochSecond(closeTime, 0, ZoneOffset.UTC)
+                                .format(TIME_FORMAT));
+            }
+        }
+        return orders;
+    }
+
+    @Test
+    public void testPages() throws JsonProcessingException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            HistoryQuery query = HistoryQuery.Builder.newInstance()
+                    .setLimit(100)
+                    .build();
+            List<Order> first = mt4.getOrdersHistorical(query);
+            Assert.assertEquals(first.size(), 100);
+            Assert.assertEquals(first.get(0).getTicket(), 1);
+            List<Order> second = mt4.getOrdersHistorical(query.after(first.get(first.size() - 1)));
+            Assert.assertEquals(second.size(), 100);
+            Assert.assertEquals(second.get(0).getTicket(), 101);
+            Assert.assertEquals(second.get(99).getCloseTimeSeconds(), closeTime(200));
+        }
+    }
+
+    @Test
+    public void testTimeFilter() throws JsonProcessingException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            HistoryQuery query = HistoryQuery.Builder.newInstance()
+                    .setFromTime(closeTime(10))
+                    .setToTime(closeTime(19))
+                    .build();
+            List<Order> orders = mt4.getOrdersHistorical(query);
+            Assert.assertEquals(orders.size(), 10);
+            Assert.assertEquals(orders.get(0).getTicket(), 10);
+            Assert.assertEquals(orders.get(9).getTicket(), 19);
+        }
+    }
+
+    @Test
+    public void testStream() {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            int before = server.getRequestCount(Request.GET_HISTORICAL_ORDERS);
+            List<Integer> tickets = mt4.streamOrdersHistorical(HistoryQuery.Builder.newInstance().build())
+                    .map(Order::getTicket)
+                    .collect(Collectors.toList());
+            Assert.assertEquals(tickets.size(), ORDER_COUNT);
+            for (int i = 0; i < ORDER_COUNT; i++) {
+                Assert.assertEquals((int) tickets.get(i), i + 1);
+            }
+            Assert.assertEquals(server.getRequestCount(Request.GET_HISTORICAL_ORDERS) - before, 3);
+
+            // only the pages which are reached are fetched
+            before = server.getRequestCount(Request.GET_HISTORICAL_ORDERS);
+            HistoryQuery query = HistoryQuery.Builder.newInstance()
+                    .setFromTicket(2000)
+                    .build();
+            Assert.assertEquals(mt4.streamOrdersHistorical(query, 100).limit(150).count(), 150);
+            Assert.assertEquals(server.getRequestCount(Request.GET_HISTORICAL_ORDERS) - before, 2);
+        }
+    }
+
+    @Test
+    public void testServerIgnoresFilters() throws JsonProcessingException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(legacy.getAddress(), 1000, 1000)) {
+            HistoryQuery query = HistoryQuery.Builder.newInstance()
+                    .setFromTicket(11)
+                    .setToTicket(1000)
+                    .build();
+            Assert.assertEquals(mt4.streamOrdersHistorical(query, ORDER_COUNT).count(), 990);
+            Assert.assertEquals(mt4.streamOrdersHistorical(query, 100).distinct().count(), 990);
+            List<Order> page = mt4.getOrdersHistorical(query.withLimit(5));
+            Assert.assertEquals(page.size(), 5);
+            Assert.assertEquals(page.get(0).getTicket(), 11);
+        }
+    }
+
+    @Test
+    public void testServerIgnoresPaging() {
+        try (MT4Client mt4 = new MT4Client(legacy.getAddress(), 1000, 1000)) {
+            // the first response is longer than a page, so it holds the whole history
+            int before = legacy.getRequestCount(Request.GET_HISTORICAL_ORDERS);
+            Assert.assertEquals(mt4.streamOrdersHistorical(HistoryQuery.Builder.newInstance().build(), 100).count(),
+                    ORDER_COUNT);
+            Assert.assertEquals(legacy.getRequestCount(Request.GET_HISTORICAL_ORDERS) - before, 1);
+        }
+    }
+
+    @Test
+    public void testStreamError() {
+        try (MockServer failing = new MockServer()) {
+            failing.on(Request.GET_HISTORICAL_ORDERS, request -> {
+                throw new MockServer.Failure(MT4Exception.Code.ERR_NO_CONNECTION, "No connection.");
+            });
+            try (MT4Client mt4 = new MT4Client(failing.getAddress(), 1000, 1000)) {
+                IllegalStateException exc = Assert.expectThrows(IllegalStateException.class,
+                        () -> mt4.streamOrdersHistorical(HistoryQuery.Builder.newInstance().build()).count());
+                Assert.assertTrue(exc.getCause() instanceof MT4Exception);
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncPage() throws ExecutionException, InterruptedException {
+        try (MT4AsyncClient mt4 = new MT4AsyncClient(server.getAddress(), 1000, 1000)) {
+            List<Order> orders = mt4.getOrdersHistorical(HistoryQuery.Builder.newInstance()
+                    .setFromTicket(ORDER_COUNT - 1)
+                    .setLimit(10)
+                    .build()).get();
+            Assert.assertEquals(orders.size(), 2);
+            Assert.assertEquals(orders.get(1).getTicket(), ORDER_COUNT);
+        }
+    }
+}
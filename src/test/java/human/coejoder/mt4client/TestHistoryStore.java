@@ -0,0 +1,222 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Tests of the incremental sync of historical orders to a local store, against a {@link MockServer}.
+ */
+public class TestHistoryStore {
+
+    private static final long START_TIME = LocalDateTime.of(2020, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+
+    private final Map<Integer, Long> closeTimes = new ConcurrentSkipListMap<>();
+    private volatile JsonNode lastRequest;
+    private volatile int failFromTicket;
+    private volatile boolean ignoreFromTime;
+    private MockServer server;
+    private Path file;
+
+    @BeforeMethod
+    public void beforeMethod() throws IOException {
+        // each order closes a minute after the one before, except the first which is still open
+        closeTimes.clear();
+        for (int ticket = 2; ticket <= 51; ticket++) {
+            closeTimes.put(ticket, START_TIME + ticket * 60L);
+        }
+        failFromTicket = Integer.MAX_VALUE;
+        ignoreFromTime = false;
+        server = new MockServer().on(Request.GET_HISTORICAL_ORDERS, this::history);
+        file = Files.createTempFile("history", ".bin");
+        Files.delete(file);
+    }
+
+    @AfterMethod
+    public void afterMethod() throws IOException {
+        server.close();
+        Files.deleteIfExists(file);
+    }
+
+    private JsonNode history(JsonNode request) {
+        lastRequest = request;
+        int fromTicket = request.path("from_ticket").asInt(1);
+        long fromTime = ignoreFromTime ? 0 : request.path("from_time").asLong(0);
+        int limit = request.path("limit").asInt(Integer.MAX_VALUE);
+        if (fromTicket >= failFromTicket) {
+            throw new MockServer.Failure(MT4Exception.Code.ERR_NO_CONNECTION, "No connection.");
+        }
+        ArrayNode orders = JsonNodeFactory.instance.arrayNode();
+        closeTimes.forEach((ticket, closeTime) -> {
+            if (ticket >= fromTicket && closeTime >= fromTime && orders.size() < limit) {
+                ObjectNode order = orders.addObject()
+                        .put("ticket", ticket)
+                        .put("magic_number", 7)
+                        .put("order_type", OrderType.OP_SELL.id)
+                        .put("lots", 0.25)
+                        .put("open_price", 1.1)
+                        .put("close_price", 1.2)
+                        .put("open_time", Order.toTimeString(closeTime - 3600))
+                        .put("close_time", Order.toTimeString(closeTime))
+                        .put("profit", -ticket);
+
+                // the first closed order has no symbol, comment or expiration
+                if (ticket != 2) {
+                    order.put("symbol", "EURUSD")
+                            .put("expiration", Order.toTimeString(0))
+                            .put("comment", "order #" + ticket);
+                }
+            }
+        });
+        return orders;
+    }
+
+    @Test
+    public void testSyncAndRead() throws IOException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000);
+             HistoryStore store = new HistoryStore(file)) {
+            Assert.assertEquals(store.size(), 0);
+            Assert.assertEquals(store.sync(mt4), 50);
+            Assert.assertFalse(lastRequest.hasNonNull("from_time"));
+            Assert.assertEquals(store.getLastTicket(), 51);
+            Assert.assertEquals(store.getLastCloseTime(), START_TIME + 51 * 60L);
+        }
+
+        // reads are served from the file
+        server.close();
+        try (HistoryStore store = new HistoryStore(file)) {
+            Assert.assertEquals(store.size(), 50);
+            Order order = store.get(10).orElseThrow();
+            Assert.assertEquals(order.getTicket(), 10);
+            Assert.assertEquals(order.getMagicNumber(), 7);
+            Assert.assertEquals(order.getSymbol(), "EURUSD");
+            Assert.assertEquals(order.getOrderType(), OrderType.OP_SELL);
+            Assert.assertEquals(order.getLots(), 0.25);
+            Assert.assertEquals(order.getClosePrice(), 1.2);
+            Assert.assertEquals(order.getOpenTime(), Order.toTimeString(START_TIME + 600 - 3600));
+            Assert.assertEquals(order.getCloseTimeSeconds(), START_TIME + 600);
+            Assert.assertEquals(order.getProfit(), -10.0);
+            Assert.assertEquals(order.getComment(), "order #10");
+            Assert.assertEquals(order.getExpiration(), Order.toTimeString(0));
+            Assert.assertFalse(store.get(1).isPresent());
+
+            // missing values are read back as they were
+            Order bare = store.get(2).orElseThrow();
+            Assert.assertNull(bare.getSymbol());
+            Assert.assertNull(bare.getComment());
+            Assert.assertNull(bare.getExpiration());
+            Assert.assertEquals(bare.getOpenTime(), Order.toTimeString(START_TIME + 120 - 3600));
+
+            List<Order> range = store.getByCloseTime(START_TIME + 20 * 60L, START_TIME + 29 * 60L);
+            Assert.assertEquals(range.size(), 10);
+            Assert.assertEquals(range.get(0).getTicket(), 20);
+            Assert.assertEquals(range.get(9).getTicket(), 29);
+        }
+    }
+
+    @Test
+    public void testIncrementalSync() throws IOException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000);
+             HistoryStore store = new HistoryStore(file)) {
+            Assert.assertEquals(store.sync(mt4), 50);
+            Assert.assertEquals(store.sync(mt4), 0);
+            Assert.assertEquals(lastRequest.get("from_time").asLong(), START_TIME + 51 * 60L);
+
+            // a late order closed in the same second as the last one, and an old order closed after it
+            closeTimes.put(52, START_TIME + 51 * 60L);
+            closeTimes.put(1, START_TIME + 60 * 60L);
+            Assert.assertEquals(store.sync(mt4), 2);
+            Assert.assertEquals(store.size(), 52);
+            Assert.assertEquals(store.getLastCloseTime(), START_TIME + 60 * 60L);
+            List<Order> latest = store.getByCloseTime(START_TIME + 51 * 60L, Long.MAX_VALUE);
+            Assert.assertEquals(latest.size(), 3);
+            Assert.assertEquals(latest.get(0).getTicket(), 51);
+            Assert.assertEquals(latest.get(1).getTicket(), 52);
+            Assert.assertEquals(latest.get(2).getTicket(), 1);
+        }
+    }
+
+    @Test
+    public void testServerIgnoresCloseTime() throws IOException, MT4Exception {
+        ignoreFromTime = true;
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000);
+             HistoryStore store = new HistoryStore(file)) {
+            Assert.assertEquals(store.sync(mt4), 50);
+
+            // the first sync after the store has orders learns that the filter is ignored
+            closeTimes.put(52, START_TIME + 52 * 60L);
+            int before = server.getRequestCount(Request.GET_HISTORICAL_ORDERS);
+            Assert.assertEquals(store.sync(mt4), 1);
+            Assert.assertEquals(server.getRequestCount(Request.GET_HISTORICAL_ORDERS) - before, 2);
+            Assert.assertEquals(lastRequest.get("from_ticket").asInt(), 52);
+            Assert.assertFalse(lastRequest.hasNonNull("from_time"));
+
+            before = server.getRequestCount(Request.GET_HISTORICAL_ORDERS);
+            Assert.assertEquals(store.sync(mt4), 0);
+            Assert.assertEquals(server.getRequestCount(Request.GET_HISTORICAL_ORDERS) - before, 1);
+            Assert.assertEquals(lastRequest.get("from_ticket").asInt(), 53);
+            Assert.assertEquals(store.size(), 51);
+        }
+    }
+
+    @Test
+    public void testFailedSyncKeepsFetchedPages() throws IOException, MT4Exception {
+        // the second page fails
+        for (int ticket = 52; ticket <= MT4Client.DEFAULT_HISTORY_PAGE_SIZE + 100; ticket++) {
+            closeTimes.put(ticket, START_TIME + ticket * 60L);
+        }
+        failFromTicket = MT4Client.DEFAULT_HISTORY_PAGE_SIZE + 2;
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000);
+             HistoryStore store = new HistoryStore(file)) {
+            MT4Exception e = Assert.expectThrows(MT4Exception.class, () -> store.sync(mt4));
+            Assert.assertEquals(e.errorCode, MT4Exception.Code.ERR_NO_CONNECTION);
+            Assert.assertEquals(store.size(), MT4Client.DEFAULT_HISTORY_PAGE_SIZE);
+
+            failFromTicket = Integer.MAX_VALUE;
+            Assert.assertEquals(store.sync(mt4), 99);
+            Assert.assertEquals(store.getLastTicket(), MT4Client.DEFAULT_HISTORY_PAGE_SIZE + 100);
+            Assert.assertEquals(store.getByCloseTime(0, Long.MAX_VALUE).size(),
+                    MT4Client.DEFAULT_HISTORY_PAGE_SIZE + 99);
+        }
+        try (HistoryStore store = new HistoryStore(file)) {
+            Assert.assertEquals(store.get(500).orElseThrow().getTicket(), 500);
+            store.close();
+            Assert.expectThrows(IllegalStateException.class, () -> store.get(500));
+        }
+    }
+
+    @Test
+    public void testInterruptedAppendIsDiscarded() throws IOException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000);
+             HistoryStore store = new HistoryStore(file)) {
+            store.sync(mt4);
+        }
+        long length = Files.size(file);
+        Files.write(file, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+        try (HistoryStore store = new HistoryStore(file)) {
+            Assert.assertEquals(store.size(), 50);
+            Assert.assertEquals(Files.size(file), length);
+        }
+    }
+
+    @Test
+    public void testNotAStore() throws IOException {
+        Files.write(file, "not a history store".getBytes());
+        Assert.expectThrows(IOException.class, () -> new HistoryStore(file));
+    }
+}
@@ -0,0 +1,147 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Tests of {@link MT4Client#runIndicators(List)} and {@link MT4Client#runIndicatorSeries(Indicator, int, int)},
+ * against a {@link MockServer}.
+ */
+public class TestIndicatorBatch {
+
+    private static final String UNKNOWN_SYMBOL = "XYZ";
+    private static final String EMPTY_SYMBOL = "EMPTY";
+
+    private MockServer server;
+
+    @BeforeClass
+    public void beforeClass() {
+        // each indicator's value is its period; an unknown symbol fails only its own indicator, and an empty one has no
+        // value
+        server = new MockServer().on(Request.RUN_INDICATOR, request -> {
+            JsonNode argv = request.get("argv");
+            if (UNKNOWN_SYMBOL.equals(argv.get(0).asText())) {
+                throw new MockServer.Failure(MT4Exception.Code.ERR_UNKNOWN_SYMBOL, "Unknown symbol.");
+            }
+            else if (EMPTY_SYMBOL.equals(argv.get(0).asText())) {
+                return JsonNodeFactory.instance.nullNode();
+            }
+            return JsonNodeFactory.instance.numberNode(argv.get(2).asDouble());
+        }).on(Request.RUN_INDICATOR_SERIES, request -> {
+            // each value is its shift plus the indicator's period
+            ArrayNode series = JsonNodeFactory.instance.arrayNode();
+            double period = request.get("argv").get(request.get("argv").size() - 1).asDouble();
+            int fromShift = request.get("from_shift").asInt();
+            for (int i = 0; i < request.get("count").asInt(); i++) {
+                series.add(fromShift + i + period);
+            }
+            return series;
+        });
+    }
+
+    @AfterClass
+    public void afterClass() {
+        server.close();
+    }
+
+    @Test
+    public void testIndicatorsInOneRequest() throws JsonProcessingException, MT4Exception {
+        List<Indicator> funcs = new ArrayList<>();
+        for (int period = 1; period <= 100; period++) {
+            funcs.add(Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, period, 1));
+        }
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            int before = server.getRequestCount(Request.BATCH);
+            BatchResults<Double> results = mt4.runIndicators(funcs);
+            Assert.assertEquals(server.getRequestCount(Request.BATCH) - before, 1);
+            Assert.assertEquals(results.size(), funcs.size());
+            Assert.assertFalse(results.hasErrors());
+            double[] values = results.getValues();
+            for (int i = 0; i < values.length; i++) {
+                Assert.assertEquals(values[i], i + 1.0);
+                Assert.assertEquals((double) results.get(i), i + 1.0);
+            }
+            Assert.assertEquals(mt4.runIndicators(List.of()).size(), 0);
+        }
+    }
+
+    @Test
+    public void testPerItemErrors() throws JsonProcessingException, MT4Exception {
+        List<Indicator> funcs = List.of(
+                Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 14, 1),
+                Indicator.iATR(UNKNOWN_SYMBOL, StandardTimeframe.PERIOD_H1, 14, 1),
+                Indicator.iATR("GBPUSD", StandardTimeframe.PERIOD_H1, 20, 1));
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            BatchResults<Double> results = mt4.runIndicators(funcs);
+            Assert.assertTrue(results.hasErrors());
+            Assert.assertEquals((double) results.get(0), 14.0);
+            Assert.assertNull(results.getError(0));
+            Assert.assertTrue(Double.isNaN(results.getValues()[1]));
+            Assert.assertEquals(results.getError(1).errorCode, MT4Exception.Code.ERR_UNKNOWN_SYMBOL);
+            MT4Exception exc = Assert.expectThrows(MT4Exception.class, () -> results.get(1));
+            Assert.assertEquals(exc.errorCode, MT4Exception.Code.ERR_UNKNOWN_SYMBOL);
+            Assert.assertEquals((double) results.get(2), 20.0);
+        }
+    }
+
+    @Test
+    public void testNullValues() throws JsonProcessingException, MT4Exception {
+        List<Indicator> funcs = List.of(
+                Indicator.iATR(EMPTY_SYMBOL, StandardTimeframe.PERIOD_H1, 14, 1),
+                Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 20, 1));
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            BatchResults<Double> results = mt4.runIndicators(funcs);
+            Assert.assertFalse(results.hasErrors());
+            Assert.assertNull(results.get(0));
+            double[] values = results.getValues();
+            Assert.assertTrue(Double.isNaN(values[0]));
+            Assert.assertEquals(values[1], 20.0);
+        }
+    }
+
+    @Test
+    public void testAsyncIndicators() throws ExecutionException, InterruptedException, MT4Exception {
+        try (MT4AsyncClient mt4 = new MT4AsyncClient(server.getAddress(), 1000, 1000)) {
+            BatchResults<Double> results = mt4.runIndicators(List.of(
+                    Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 7, 1),
+                    Indicator.iATR(UNKNOWN_SYMBOL, StandardTimeframe.PERIOD_H1, 7, 1))).get();
+            Assert.assertEquals((double) results.get(0), 7.0);
+            Assert.assertEquals(results.getError(1).errorCode, MT4Exception.Code.ERR_UNKNOWN_SYMBOL);
+        }
+    }
+
+    @Test
+    public void testSeriesInOneRequest() throws JsonProcessingException, MT4Exception {
+        Indicator template = Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 14, 0);
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            int before = server.getRequestCount(Request.RUN_INDICATOR_SERIES);
+            double[] series = mt4.runIndicatorSeries(template, 5, 1000);
+            Assert.assertEquals(server.getRequestCount(Request.RUN_INDICATOR_SERIES) - before, 1);
+            Assert.assertEquals(series.length, 1000);
+            for (int i = 0; i < series.length; i++) {
+                Assert.assertEquals(series[i], 5 + i + 14.0);
+            }
+            Assert.assertEquals(mt4.runIndicatorSeries(template, 0, 0).length, 0);
+            Assert.expectThrows(IllegalArgumentException.class, () -> mt4.runIndicatorSeries(template, -1, 10));
+        }
+    }
+
+    @Test
+    public void testAsyncSeries() throws ExecutionException, InterruptedException {
+        Indicator template = Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 14, 0);
+        try (MT4AsyncClient mt4 = new MT4AsyncClient(server.getAddress(), 1000, 1000)) {
+            double[] series = mt4.runIndicatorSeries(template, 1, 3).get();
+            Assert.assertEquals(series, new double[]{15, 16, 17});
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tests of the {@link IndicatorCache}, against a {@link MockServer}.
+ */
+public class TestIndicatorCache {
+
+    private static final String UNKNOWN_SYMBOL = "XYZ";
+
+    private final AtomicLong now = new AtomicLong();
+    private final Map<String, Integer> computed = new ConcurrentHashMap<>();
+    private final AtomicLong serverBar = new AtomicLong();
+    private MockServer server;
+    private MT4Client mt4;
+    private IndicatorCache cache;
+
+    private static long millis(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute).toEpochSecond(ZoneOffset.UTC) * 1000;
+    }
+
+    @BeforeMethod
+    public void beforeMethod() {
+        // each indicator's value is its period, plus a thousand times the number of times it was computed before
+        computed.clear();
+        serverBar.set(-1);
+        server = new MockServer()
+                .on(Request.RUN_INDICATOR, request -> {
+                    JsonNode argv = request.get("argv");
+                    if (UNKNOWN_SYMBOL.equals(argv.get(0).asText())) {
+                        throw new MockServer.Failure(MT4Exception.Code.ERR_UNKNOWN_SYMBOL, "Unknown symbol.");
+                    }
+                    int before = computed.merge(argv.toString(), 1, Integer::sum) - 1;
+                    return JsonNodeFactory.instance.numberNode(argv.get(2).asDouble() + 1000 * before);
+                })
+                .on(Request.GET_OHLCV, request -> {
+                    // the server's current bar, which by default opened at the time predicted by the clock
+                    if (UNKNOWN_SYMBOL.equals(request.get("symbol").asText())) {
+                        throw new MockServer.Failure(MT4Exception.Code.ERR_UNKNOWN_SYMBOL, "Unknown symbol.");
+                    }
+                    long time = serverBar.get() >= 0 ? serverBar.get()
+                            : cache.barOpenTime(request.get("timeframe").asInt());
+                    ArrayNode bars = JsonNodeFactory.instance.arrayNode();
+                    bars.addObject()
+                            .put("time", time)
+                            .put("open", 1)
+                            .put("high", 1)
+                            .put("low", 1)
+                            .put("close", 1)
+                            .put("tick_volume", 1);
+                    return bars;
+                });
+        now.set(millis(2020, 9, 1, 12, 30));
+        cache = IndicatorCache.Builder.newInstance()
+                .setClock(now::get)
+                .build();
+        mt4 = new MT4Client(server.getAddress(), 1000, 1000);
+        mt4.setIndicatorCache(cache);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        mt4.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void testValueSemantics() {
+        Indicator ma = Indicator.iMA("EURUSD", StandardTimeframe.PERIOD_H1, 20, 0, SmoothingMethod.SMA,
+                AppliedPrice.PRICE_CLOSE, 1);
+        Assert.assertEquals(ma, Indicator.iMA("EURUSD", StandardTimeframe.PERIOD_H1, 20, 0, SmoothingMethod.SMA,
+                AppliedPrice.PRICE_CLOSE, 1));
+        Assert.assertEquals(ma.hashCode(), Indicator.iMA("EURUSD", StandardTimeframe.PERIOD_H1, 20, 0,
+                SmoothingMethod.SMA, AppliedPrice.PRICE_CLOSE, 1).hashCode());
+        Assert.assertNotEquals(ma, Indicator.iMA("EURUSD", StandardTimeframe.PERIOD_H1, 20, 0,
+                SmoothingMethod.SMA, AppliedPrice.PRICE_CLOSE, 2));
+        Assert.assertNotEquals(ma, Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 20, 1));
+
+        // changing the arguments given to the constructor doesn't change the indicator
+        ArrayNode arguments = JsonNodeFactory.instance.arrayNode()
+                .add("EURUSD")
+                .add(StandardTimeframe.PERIOD_H1.minutes)
+                .add(20L)
+                .add(1L);
+        Indicator atr = new Indicator("iATR", arguments);
+        int hashCode = atr.hashCode();
+        arguments.set(3, JsonNodeFactory.instance.numberNode(2L));
+        Assert.assertEquals(atr.hashCode(), hashCode);
+        Assert.assertEquals(atr, Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 20, 1));
+        Assert.assertTrue(IndicatorCache.isCacheable(ma));
+        Assert.assertFalse(IndicatorCache.isCacheable(Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 20, 0)));
+        Assert.assertFalse(IndicatorCache.isCacheable(
+                Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_CURRENT, 20, 1)));
+        Assert.assertFalse(IndicatorCache.isCacheable(Indicator.iATR(null, StandardTimeframe.PERIOD_H1, 20, 1)));
+    }
+
+    @Test
+    public void testClosedBarsAreCachedUntilRollover() throws JsonProcessingException, MT4Exception {
+        Indicator atr = Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 14, 1);
+        Assert.assertEquals(mt4.runIndicator(atr), 14.0);
+        now.set(millis(2020, 9, 1, 12, 59));
+        Assert.assertEquals(mt4.runIndicator(Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 14, 1)), 14.0);
+        Assert.assertEquals(server.getRequestCount(Request.RUN_INDICATOR), 1);
+        Assert.assertEquals(cache.getHits(), 1);
+        Assert.assertEquals(cache.getMisses(), 1);
+
+        // a new bar opens
+        now.set(millis(2020, 9, 1, 13, 0));
+        Assert.assertEquals(mt4.runIndicator(atr), 1014.0);
+        Assert.assertEquals(cache.getMisses(), 2);
+    }
+
+    @Test
+    public void testServerBarNotYetOpened() throws JsonProcessingException, MT4Exception {
+        Indicator atr = Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 14, 1);
+        Assert.assertEquals(mt4.runIndicator(atr), 14.0);
+
+        // the clock passed the hour, but the server's new bar forms only on its first tick
+        now.set(millis(2020, 9, 1, 13, 0));
+        serverBar.set(millis(2020, 9, 1, 12, 0) / 1000);
+        Assert.assertEquals(mt4.runIndicator(atr), 1014.0);
+        Assert.assertEquals(mt4.runIndicator(atr), 2014.0);
+        Assert.assertEquals(cache.getHits(), 0);
+        Assert.assertEquals(cache.getUnconfirmed(), 2);
+
+        // until the recheck interval passes, the server's bar isn't checked again
+        int checks = server.getRequestCount(Request.GET_OHLCV);
+        Assert.assertEquals(checks, 2);
+        serverBar.set(millis(2020, 9, 1, 13, 0) / 1000);
+        Assert.assertEquals(mt4.runIndicator(atr), 3014.0);
+        Assert.assertEquals(server.getRequestCount(Request.GET_OHLCV), checks);
+        now.addAndGet(IndicatorCache.BAR_RECHECK_MILLIS);
+        Assert.assertEquals(mt4.runIndicator(atr), 4014.0);
+        Assert.assertEquals(mt4.runIndicator(atr), 4014.0);
+        Assert.assertEquals(server.getRequestCount(Request.GET_OHLCV), checks + 1);
+        Assert.assertEquals(cache.getHits(), 1);
+    }
+
+    @Test
+    public void testCurrentBarIsLive() throws JsonProcessingException, MT4Exception {
+        Indicator atr = Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 14, 0);
+        Assert.assertEquals(mt4.runIndicator(atr), 14.0);
+        Assert.assertEquals(mt4.runIndicator(atr), 1014.0);
+        Assert.assertEquals(cache.getSize(), 0);
+        Assert.assertEquals(cache.getMisses(), 0);
+    }
+
+    @Test
+    public void testBatchRunsOnlyMisses() throws JsonProcessingException, MT4Exception {
+        mt4.runIndicator(Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 2, 1));
+        List<Indicator> funcs = List.of(
+                Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 1, 1),
+                Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 2, 1),
+                Indicator.iATR(UNKNOWN_SYMBOL, StandardTimeframe.PERIOD_H1, 3, 1),
+                Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_H1, 4, 0));
+        BatchResults<Double> results = mt4.runIndicators(funcs);
+        Assert.assertEquals((double) results.get(0), 1.0);
+        Assert.assertEquals((double) results.get(1), 2.0);
+        Assert.assertEquals(results.getError(2).errorCode, MT4Exception.Code.ERR_UNKNOWN_SYMBOL);
+        Assert.assertEquals((double) results.get(3), 4.0);
+
+        // errors and the current bar are not cached
+        results = mt4.runIndicators(funcs.subList(0, 2));
+        Assert.assertEquals(results.getValues(), new double[]{1.0, 2.0});
+        Assert.assertEquals(server.getRequestCount(Request.BATCH), 1);
+        Assert.assertEquals(server.getRequestCount(Request.RUN_INDICATOR), 4);
+        Assert.assertEquals(cache.getSize(), 2);
+    }
+
+    @Test
+    public void testAsync() throws ExecutionException, InterruptedException {
+        try (MT4AsyncClient async = new MT4AsyncClient(server.getAddress(), 1000, 1000)) {
+            async.setIndicatorCache(cache);
+            Indicator atr = Indicator.iATR("EURUSD", StandardTimeframe.PERIOD_D1, 14, 1);
+            Assert.assertEquals((double) async.runIndicator(atr).get(), 14.0);
+            Assert.assertEquals((double) async.runIndicator(atr).get(), 14.0);
+            Assert.assertEquals(async.runIndicators(List.of(atr)).get().getValues(), new double[]{14.0});
+            Assert.assertEquals(server.getRequestCount(Request.RUN_INDICATOR), 1);
+        }
+    }
+
+    @Test
+    public void testBarOpenTimes() {
+        IndicatorCache offset = IndicatorCache.Builder.newInstance()
+                .setServerTimeOffset(2, TimeUnit.HOURS)
+                .setClock(now::get)
+                .build();
+
+        // 2020.09.01 was a Tuesday
+        long serverTime = millis(2020, 9, 1, 14, 30) / 1000;
+        Assert.assertEquals(offset.barOpenTime(StandardTimeframe.PERIOD_M15.minutes), serverTime);
+        Assert.assertEquals(offset.barOpenTime(StandardTimeframe.PERIOD_H4.minutes), millis(2020, 9, 1, 12, 0) / 1000);
+        Assert.assertEquals(offset.barOpenTime(StandardTimeframe.PERIOD_D1.minutes), millis(2020, 9, 1, 0, 0) / 1000);
+        Assert.assertEquals(offset.barOpenTime(StandardTimeframe.PERIOD_W1.minutes), millis(2020, 8, 30, 0, 0) / 1000);
+        Assert.assertEquals(offset.barOpenTime(StandardTimeframe.PERIOD_MN1.minutes), millis(2020, 9, 1, 0, 0) / 1000);
+
+        // the server's day rolls over before UTC's
+        now.set(millis(2020, 9, 1, 23, 0));
+        Assert.assertEquals(offset.barOpenTime(StandardTimeframe.PERIOD_D1.minutes), millis(2020, 9, 2, 0, 0) / 1000);
+        Assert.assertEquals(cache.barOpenTime(StandardTimeframe.PERIOD_D1.minutes), millis(2020, 9, 1, 0, 0) / 1000);
+    }
+}
@@ -0,0 +1,132 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import static human.coejoder.mt4client.Allocations.allocatedBytes;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Tests and allocation benchmark of {@link Symbol#readTick(MutableTick)}.  No server is required.
+ */
+public class TestMutableTick {
+
+    private static final int WARMUP_ITERATIONS = 20000;
+    private static final int ITERATIONS = 10000;
+    private static final String SYMBOL_INFO = "{\"response\": {\"EURUSD\": {\"name\": \"EURUSD\", " +
+            "\"point\": 0.00001, \"digits\": 5, \"volume_min\": 0.01, \"volume_step\": 0.01, \"volume_max\": 100.0, " +
+            "\"trade_contract_size\": 100000.0, \"trade_tick_value\": 1.0, \"trade_tick_size\": 0.00001, " +
+            "\"trade_stops_level\": 0, \"trade_freeze_level\": 0}}}";
+    private static final String TICK = "{\"request_id\": 12, \"response\": {\"time\": 1600000000, " +
+            "\"bid\": 1.18203, \"ask\": 1.18211, \"last\": 0.0, \"volume\": 0}}";
+
+    private CannedConnection connection;
+    private MT4Client mt4;
+    private Symbol symbol;
+
+    @BeforeClass
+    public void beforeClass() throws JsonProcessingException, MT4Exception {
+        connection = new CannedConnection();
+        mt4 = new MT4Client(connection);
+        connection.response = SYMBOL_INFO.getBytes(UTF_8);
+        symbol = mt4.getSymbol("EURUSD");
+    }
+
+    @AfterClass
+    public void afterClass() {
+        mt4.shutdown();
+    }
+
+    @Test
+    public void testReadMatchesParser() throws JsonProcessingException, MT4Exception {
+        String[] responses = {
+                TICK,
+                "{\"response\":{\"time\":1,\"bid\":-0.5,\"ask\":1e-3,\"last\":12.5E2,\"volume\":7}}",
+                " {\n\t\"response\" : { \"ask\" : 0.1 , \"bid\" : 0.30000000000000004 } \r\n}",
+                "{\"response\": {\"time\": 2, \"bid\": 123456789012345678901234567890, " +
+                        "\"ask\": 1.7976931348623157e308}}",
+                "{\"response\": {\"bid\": 0.000000000000000000000000012345, \"ask\": 9007199254740993}}"
+        };
+        MutableTick tick = new MutableTick();
+        for (String response : responses) {
+            byte[] json = response.getBytes(UTF_8);
+            Assert.assertTrue(TickReader.read(json, tick), response);
+            SymbolTick expected = mt4.parseResponse(json, SymbolTick.class);
+            Assert.assertEquals(tick.getTime(), expected.time, response);
+            Assert.assertEquals(tick.getBid(), expected.bid, 0, response);
+            Assert.assertEquals(tick.getAsk(), expected.ask, 0, response);
+            Assert.assertEquals(tick.getLast(), expected.last, 0, response);
+            Assert.assertEquals(tick.getVolume(), expected.volume, response);
+        }
+    }
+
+    @Test
+    public void testOtherResponsesDeclined() {
+        String[] responses = {
+                "{\"error_code\": 4106, \"error_message\": \"Unknown symbol.\"}",
+                "{\"warning\": \"This is a test warning.\", \"response\": {\"bid\": 1.0}}",
+                "{\"response\": {\"bid\": 1.0, \"spread\": 2}}",
+                "{\"response\": {\"time\": 1.5}}",
+                "{\"response\": null}",
+                "{\"res\\u0070onse\": {\"bid\": 1.0}}",
+                "{}",
+                "[]",
+                ""
+        };
+        for (String response : responses) {
+            Assert.assertFalse(TickReader.read(response.getBytes(UTF_8), new MutableTick()), response);
+        }
+    }
+
+    @Test
+    public void testReadTick() throws JsonProcessingException, MT4Exception {
+        connection.response = TICK.getBytes(UTF_8);
+        MutableTick tick = symbol.readTick(new MutableTick());
+        Assert.assertEquals(tick.getTime(), 1600000000);
+        Assert.assertEquals(tick.getBid(), 1.18203);
+        Assert.assertEquals(tick.getAsk(), 1.18211);
+
+        connection.response = ("{\"warning\": \"This is a test warning.\", " +
+                "\"response\": {\"bid\": 1.5}}").getBytes(UTF_8);
+        Assert.assertEquals(symbol.readTick(tick).getBid(), 1.5);
+
+        connection.response = ("{\"error_code\": " + MT4Exception.Code.ERR_UNKNOWN_SYMBOL.id + "}").getBytes(UTF_8);
+        MT4Exception exc = Assert.expectThrows(MT4Exception.class, () -> symbol.readTick(tick));
+        Assert.assertEquals(exc.errorCode, MT4Exception.Code.ERR_UNKNOWN_SYMBOL);
+
+        // a null tick is reported, rather than left in the holder
+        connection.response = "{\"response\": null}".getBytes(UTF_8);
+        Assert.expectThrows(JsonMappingException.class, () -> symbol.readTick(tick));
+        Assert.assertEquals(tick.getBid(), 1.5);
+    }
+
+    /**
+     * Assert that reading a tick allocates nothing once warmed up.  The canned connection leaves out the socket, which
+     * allocates each received message.
+     */
+    @Test
+    public void benchmarkZeroAllocation() throws JsonProcessingException, MT4Exception {
+        connection.response = TICK.getBytes(UTF_8);
+        MutableTick tick = new MutableTick();
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            symbol.readTick(tick);
+        }
+
+        // reading the allocation counter may itself allocate
+        long start = allocatedBytes();
+        long overhead = allocatedBytes() - start;
+        start = allocatedBytes();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            symbol.readTick(tick);
+        }
+        long nanos = (System.nanoTime() - startNanos) / ITERATIONS;
+        long bytes = (allocatedBytes() - start - overhead) / ITERATIONS;
+        TestBase.LOG.trace(String.format("readTick: %d ns, %d bytes allocated per call", nanos, bytes));
+        Assert.assertEquals(bytes, 0, "Bytes allocated per call.");
+    }
+}
@@ -0,0 +1,114 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Tests of {@link RequestTemplate}.
+ */
+public class TestRequestTemplate {
+
+    private static final String SYMBOL_NAME = "EURUSD";
+
+    private MockServer server;
+
+    @BeforeClass
+    public void beforeClass() {
+        server = new MockServer()
+                .on(Request.GET_SYMBOL_INFO, request -> {
+                    ObjectNode symbols = JsonNodeFactory.instance.objectNode();
+                    symbols.putObject(SYMBOL_NAME)
+                            .put("name", SYMBOL_NAME)
+                            .put("point", 0.00001)
+                            .put("digits", 5)
+                            .put("volume_min", 0.01)
+                            .put("volume_step", 0.01)
+                            .put("volume_max", 100)
+                            .put("trade_contract_size", 100000)
+                            .put("trade_tick_value", 1)
+                            .put("trade_tick_size", 0.00001)
+                            .put("trade_stops_level", 0)
+                            .put("trade_freeze_level", 0);
+                    return symbols;
+                })
+                .on(Request.GET_SYMBOL_TICK, request -> JsonNodeFactory.instance.objectNode()
+                        .put("time", request.path(Request.REQUEST_ID).asInt(-1))
+                        .put("bid", SYMBOL_NAME.equals(request.path("symbol").asText()) ? 1.5 : 0)
+                        .put("ask", 1.75)
+                        .put("last", 0)
+                        .put("volume", 0));
+    }
+
+    @AfterClass
+    public void afterClass() {
+        server.close();
+    }
+
+    @Test
+    public void testEncodingIsReused() {
+        RequestTemplate template = new RequestTemplate(MT4Client.buildSymbolTickRequest(SYMBOL_NAME));
+        Assert.assertSame(template.encode(WireCodec.JSON), template.encode(WireCodec.JSON));
+    }
+
+    @Test
+    public void testTemplateIsImmutable() {
+        ObjectNode request = MT4Client.buildSymbolTickRequest(SYMBOL_NAME);
+        RequestTemplate template = new RequestTemplate(request);
+        request.put("symbol", "GBPUSD");
+        template.toObjectNode().put("symbol", "USDJPY");
+        Assert.assertEquals(template.toObjectNode(), MT4Client.buildSymbolTickRequest(SYMBOL_NAME));
+    }
+
+    @Test
+    public void testRequestIdIsPatchedIn() throws IOException {
+        RequestTemplate template = new RequestTemplate(MT4Client.buildSymbolTickRequest(SYMBOL_NAME));
+        RequestBuffer buffer = new RequestBuffer();
+        for (WireCodec codec : WireCodec.values()) {
+            buffer.setCodec(codec);
+            for (long requestId : new long[]{0, 7, 10, 1234567890123L, Long.MAX_VALUE}) {
+                buffer.serialize(template, requestId);
+                ObjectNode request = (ObjectNode) new ObjectMapper(codec.newFactory()).readTree(
+                        Arrays.copyOf(buffer.array(), buffer.size()));
+                Assert.assertEquals(request.remove(Request.REQUEST_ID).asLong(), requestId);
+                Assert.assertEquals(request, template.toObjectNode());
+            }
+        }
+    }
+
+    @Test
+    public void testSymbolTick() throws JsonProcessingException, MT4Exception {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            Symbol symbol = mt4.getSymbol(SYMBOL_NAME);
+            for (int i = 0; i < 3; i++) {
+                SymbolTick tick = symbol.getTick();
+                Assert.assertEquals(tick.bid, 1.5);
+                Assert.assertEquals(tick.time, -1, "REQ requests should not carry a request id.");
+            }
+        }
+    }
+
+    @Test
+    public void testSymbolTickWithRequestIds() throws ExecutionException, InterruptedException,
+            JsonProcessingException, MT4Exception {
+        try (MT4AsyncClient mt4 = new MT4AsyncClient(server.getAddress(), 1000, 1000)) {
+            Symbol symbol = mt4.getSymbol(SYMBOL_NAME).get();
+            int previousId = -1;
+            for (int i = 0; i < 3; i++) {
+                SymbolTick tick = symbol.getTick();
+                Assert.assertEquals(tick.bid, 1.5);
+                Assert.assertTrue(tick.time > previousId, "Request ids should increase.");
+                previousId = tick.time;
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static human.coejoder.mt4client.Allocations.allocatedBytes;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Tests and allocation benchmarks of {@link MT4Client} response decoding.  No server is required.
+ */
+public class TestResponseDecoding {
+
+    private static final int BAR_COUNT = 5000;
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int ITERATIONS = 50;
+
+    private MT4Client mt4;
+
+    @BeforeClass
+    public void beforeClass() {
+        mt4 = new MT4Client(new CannedConnection());
+    }
+
+    @AfterClass
+    public void afterClass() {
+        mt4.shutdown();
+    }
+
+    @Test
+    public void testResponse() throws JsonProcessingException, MT4Exception {
+        List<OHLCV> bars = mt4.parseResponse(ohlcvResponse(3), MT4Client.LIST_OF_OHLCV);
+        Assert.assertEquals(bars.size(), 3);
+        Assert.assertEquals(bars.get(2).time, 2);
+        Assert.assertEquals(bars.get(2).tick_volume, 20);
+    }
+
+    @Test
+    public void testIgnoredProperties() throws JsonProcessingException, MT4Exception {
+        String json = "{\"request_id\": 7, \"warning\": \"This is a test warning.\", \"extra\": {\"a\": [1, 2]}, " +
+                "\"response\": 1.5}";
+        double response = mt4.parseResponse(json.getBytes(UTF_8), Double.class);
+        Assert.assertEquals(response, 1.5);
+    }
+
+    @Test
+    public void testErrorAfterResponse() {
+        String json = "{\"response\": null, \"error_code\": " + MT4Exception.Code.ERR_INVALID_TICKET.id + ", " +
+                "\"error_message\": \"This is a test error message.\"}";
+        MT4Exception exc = Assert.expectThrows(MT4Exception.class,
+                () -> mt4.parseResponse(json.getBytes(UTF_8), Order.class));
+        Assert.assertEquals(exc.errorCode, MT4Exception.Code.ERR_INVALID_TICKET);
+        Assert.assertEquals(exc.message, "This is a test error message.");
+    }
+
+    @Test
+    public void testErrorAfterMalformedResponse() {
+        // the response is abandoned partway through a nested array, whose elements aren't bars
+        String json = "{\"response\": [{\"time\": 1}, [[\"a\"], {\"b\": [2]}], 3], \"error_code\": " +
+                MT4Exception.Code.ERR_INVALID_TICKET.id + ", \"error_message\": \"This is a test error message.\"}";
+        MT4Exception exc = Assert.expectThrows(MT4Exception.class,
+                () -> mt4.parseResponse(json.getBytes(UTF_8), MT4Client.LIST_OF_OHLCV));
+        Assert.assertEquals(exc.errorCode, MT4Exception.Code.ERR_INVALID_TICKET);
+        Assert.assertEquals(exc.message, "This is a test error message.");
+        Assert.assertEquals(exc.getSuppressed().length, 1);
+
+        // without an error, the bind failure is thrown
+        String noError = "{\"response\": \"not a number\", \"warning\": \"This is a test warning.\"}";
+        Assert.expectThrows(JsonProcessingException.class, () -> mt4.parseResponse(noError.getBytes(UTF_8),
+                Double.class));
+    }
+
+    @Test
+    public void testNotAnObject() {
+        Assert.expectThrows(JsonProcessingException.class, () -> mt4.parseResponse("[]".getBytes(UTF_8)));
+    }
+
+    /**
+     * Compare the bytes allocated per response by single-pass decoding from bytes against decoding a String, reading a
+     * tree and converting it.
+     */
+    @Test
+    public void benchmarkAllocation() throws JsonProcessingException, MT4Exception {
+        byte[] json = ohlcvResponse(BAR_COUNT);
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new ParameterNamesModule());
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            decodeTwoPass(objectMapper, json);
+            mt4.parseResponse(json, MT4Client.LIST_OF_OHLCV);
+        }
+
+        long start = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            decodeTwoPass(objectMapper, json);
+        }
+        long twoPass = (allocatedBytes() - start) / ITERATIONS;
+
+        start = allocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            mt4.parseResponse(json, MT4Client.LIST_OF_OHLCV);
+        }
+        long singlePass = (allocatedBytes() - start) / ITERATIONS;
+
+        TestBase.LOG.trace(String.format("Bytes allocated per %d-bar response: two-pass=%d, single-pass=%d (%.0f%%)",
+                BAR_COUNT, twoPass, singlePass, 100.0 * singlePass / twoPass));
+        Assert.assertTrue(singlePass < twoPass, "Single-pass decoding allocated more than two-pass.");
+    }
+
+    /**
+     * The decoding which {@link MT4Client} used to do, from a String received from the socket.
+     */
+    private static List<OHLCV> decodeTwoPass(ObjectMapper objectMapper, byte[] json) throws JsonProcessingException {
+        JsonNode response = objectMapper.readTree(new String(json, UTF_8));
+        return objectMapper.convertValue(response.get("response"), MT4Client.LIST_OF_OHLCV);
+    }
+
+    private static byte[] ohlcvResponse(int barCount) {
+        StringBuilder json = new StringBuilder("{\"response\": [");
+        for (int i = 0; i < barCount; i++) {
+            if (i > 0) {
+                json.append(", ");
+            }
+            json.append(String.format("{\"time\": %d, \"open\": %d, \"high\": %d, \"low\": %d, \"close\": %d, " +
+                    "\"tick_volume\": %d}", i, i + 1, i + 3, i, i + 2, i * 10));
+        }
+        return json.append("]}").toString().getBytes(UTF_8);
+    }
+}
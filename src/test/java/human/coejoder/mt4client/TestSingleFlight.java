@@ -0,0 +1,122 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Tests of the single-flight sharing of identical read-only requests, against a {@link MockServer}.
+ */
+public class TestSingleFlight {
+
+    private static final int REQUEST_COUNT = 10;
+    private static final long RESPONSE_DELAY_MILLIS = 200;
+
+    private MockServer server;
+    private MT4AsyncClient mt4;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        // responses are slow, so that identical requests arrive while the first is in flight
+        server = new MockServer().on(Request.GET_SYMBOL_TICK, request -> {
+            sleep();
+            return JsonNodeFactory.instance.objectNode()
+                    .put("time", 0)
+                    .put("bid", request.get("symbol").asText().length())
+                    .put("ask", 0)
+                    .put("last", 0)
+                    .put("volume", 0);
+        }).on(Request.DO_ORDER_CLOSE, request -> {
+            sleep();
+            return JsonNodeFactory.instance.nullNode();
+        });
+        mt4 = new MT4AsyncClient(server.getAddress(), 1000, 1000);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        mt4.shutdown();
+        server.close();
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(RESPONSE_DELAY_MILLIS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testIdenticalReadsShareOneRequest() throws ExecutionException, InterruptedException {
+        List<CompletableFuture<SymbolTick>> ticks = new ArrayList<>(REQUEST_COUNT);
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            ticks.add(mt4.getTick("EURUSD"));
+        }
+        for (CompletableFuture<SymbolTick> tick : ticks) {
+            Assert.assertEquals(tick.get().bid, 6.0);
+        }
+        Assert.assertEquals(server.getRequestCount(Request.GET_SYMBOL_TICK), 1);
+        Assert.assertEquals(mt4.getCoalescedRequests(), REQUEST_COUNT - 1);
+
+        // a completed request is not shared with later ones
+        Assert.assertEquals(mt4.getTick("EURUSD").get().bid, 6.0);
+        Assert.assertEquals(server.getRequestCount(Request.GET_SYMBOL_TICK), 2);
+    }
+
+    @Test
+    public void testDifferentReadsAreSent() throws ExecutionException, InterruptedException {
+        CompletableFuture<SymbolTick> first = mt4.getTick("EURUSD");
+        CompletableFuture<SymbolTick> second = mt4.getTick("EURUSD.m");
+        Assert.assertEquals(first.get().bid, 6.0);
+        Assert.assertEquals(second.get().bid, 8.0);
+        Assert.assertEquals(server.getRequestCount(Request.GET_SYMBOL_TICK), 2);
+    }
+
+    @Test
+    public void testCancelDoesNotAffectOthers() throws ExecutionException, InterruptedException {
+        CompletableFuture<SymbolTick> first = mt4.getTick("EURUSD");
+        CompletableFuture<SymbolTick> second = mt4.getTick("EURUSD");
+        first.cancel(false);
+        Assert.assertEquals(second.get().bid, 6.0);
+    }
+
+    @Test
+    public void testWritesAreNeverShared() throws ExecutionException, InterruptedException {
+        List<CompletableFuture<Void>> closes = new ArrayList<>(REQUEST_COUNT);
+        for (int i = 0; i < 3; i++) {
+            closes.add(mt4.orderClose(42));
+        }
+        for (CompletableFuture<Void> close : closes) {
+            close.get();
+        }
+        Assert.assertEquals(server.getRequestCount(Request.DO_ORDER_CLOSE), 3);
+        Assert.assertEquals(mt4.getCoalescedRequests(), 0);
+    }
+
+    @Test
+    public void testDisabled() throws ExecutionException, InterruptedException {
+        mt4.setSingleFlight(false);
+        CompletableFuture<SymbolTick> first = mt4.getTick("EURUSD");
+        CompletableFuture<SymbolTick> second = mt4.getTick("EURUSD");
+        Assert.assertEquals(first.get().bid, 6.0);
+        Assert.assertEquals(second.get().bid, 6.0);
+        Assert.assertEquals(server.getRequestCount(Request.GET_SYMBOL_TICK), 2);
+    }
+
+    @Test
+    public void testReadOnlyRequests() {
+        for (Request request : Request.values()) {
+            Assert.assertEquals(request.isReadOnly(), request.name().startsWith("GET_"), request.name());
+        }
+        Assert.assertFalse(Request.DO_ORDER_SEND.isReadOnly());
+    }
+}
@@ -0,0 +1,210 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests of the {@link SymbolInfoCache}, against a {@link MockServer}.
+ */
+public class TestSymbolInfoCache {
+
+    private MockServer server;
+    private MT4Client mt4;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        // each property is its id, plus the number of requests made for it so far
+        server = new MockServer()
+                .on(Request.GET_SYMBOL_INFO, request -> {
+                    ObjectNode symbols = JsonNodeFactory.instance.objectNode();
+                    for (JsonNode name : request.get("names")) {
+                        symbols.putObject(name.asText())
+                                .put("name", name.asText())
+                                .put("point", 0.00001)
+                                .put("digits", 5)
+                                .put("volume_min", 0.01)
+                                .put("volume_step", 0.01)
+                                .put("volume_max", 100)
+                                .put("trade_contract_size", 100000)
+                                .put("trade_tick_value", 1)
+                                .put("trade_tick_size", 0.00001)
+                                .put("trade_stops_level", 0)
+                                .put("trade_freeze_level", 0);
+                    }
+                    return symbols;
+                })
+                .on(Request.GET_SYMBOL_INFO_INTEGER, request -> JsonNodeFactory.instance.numberNode(
+                        request.get("property_id").asInt() + server.getRequestCount(Request.GET_SYMBOL_INFO_INTEGER)))
+                .on(Request.GET_SYMBOL_INFO_DOUBLE, request -> JsonNodeFactory.instance.numberNode(
+                        request.get("property_id").asInt() + server.getRequestCount(Request.GET_SYMBOL_INFO_DOUBLE)));
+        mt4 = new MT4Client(server.getAddress(), 1000, 1000);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        mt4.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void testSlowPropertiesAreCached() throws JsonProcessingException, MT4Exception {
+        SymbolInfoCache cache = SymbolInfoCache.Builder.newInstance().build();
+        mt4.setSymbolInfoCache(cache);
+        Symbol symbol = mt4.getSymbol("EURUSD");
+
+        double swapLong = symbol.getSwapLong();
+        Assert.assertEquals(symbol.getSwapLong(), swapLong);
+        Assert.assertEquals(symbol.getStartTime(), symbol.getStartTime());
+        Assert.assertEquals(server.getRequestCount(Request.GET_SYMBOL_INFO_DOUBLE), 1);
+        Assert.assertEquals(server.getRequestCount(Request.GET_SYMBOL_INFO_INTEGER), 1);
+        Assert.assertEquals(cache.getHits(), 2);
+        Assert.assertEquals(cache.getMisses(), 2);
+        Assert.assertEquals(cache.getSize(), 2);
+
+        // bid and ask stay live
+        Assert.assertNotEquals(symbol.getBid(), symbol.getBid());
+        Assert.assertEquals(cache.getMisses(), 2);
+
+        // another symbol has its own values
+        mt4.getSymbol("USDJPY").getSwapLong();
+        Assert.assertEquals(cache.getMisses(), 3);
+
+        cache.invalidate("EURUSD");
+        Assert.assertNotEquals(symbol.getSwapLong(), swapLong);
+        Assert.assertEquals(cache.getSize(), 2);
+    }
+
+    @Test
+    public void testPolicies() throws JsonProcessingException, MT4Exception, InterruptedException {
+        SymbolInfoCache cache = SymbolInfoCache.Builder.newInstance()
+                .setDefaultPolicy(SymbolInfoCache.Policy.FOREVER)
+                .setPolicy(SymbolInfoDouble.SYMBOL_SWAP_SHORT, SymbolInfoCache.Policy.ttl(50, TimeUnit.MILLISECONDS))
+                .setPolicy(SymbolInfoDouble.SYMBOL_MARGIN_INITIAL, SymbolInfoCache.Policy.LIVE)
+                .setPolicy(SymbolInfoDouble.SYMBOL_BID, SymbolInfoCache.Policy.FOREVER)
+                .build();
+        Assert.assertEquals(cache.getPolicy(SymbolInfoDouble.SYMBOL_ASK), SymbolInfoCache.Policy.LIVE);
+        Assert.assertEquals(cache.getPolicy(SymbolInfoInteger.SYMBOL_SWAP_MODE), SymbolInfoCache.Policy.FOREVER);
+        mt4.setSymbolInfoCache(cache);
+        Symbol symbol = mt4.getSymbol("EURUSD");
+
+        Assert.assertEquals(symbol.getBid(), symbol.getBid());
+        Assert.assertNotEquals(symbol.getMarginInitial(), symbol.getMarginInitial());
+        double swapShort = symbol.getSwapShort();
+        Assert.assertEquals(symbol.getSwapShort(), swapShort);
+        Thread.sleep(100);
+        Assert.assertNotEquals(symbol.getSwapShort(), swapShort);
+    }
+
+    @Test
+    public void testEviction() throws JsonProcessingException, MT4Exception {
+        SymbolInfoCache cache = SymbolInfoCache.Builder.newInstance()
+                .setMaxSize(2)
+                .build();
+        mt4.setSymbolInfoCache(cache);
+        Symbol symbol = mt4.getSymbol("EURUSD");
+        symbol.getSwapLong();
+        symbol.getSwapShort();
+        symbol.getSwapLong();
+        symbol.getMarginInitial();
+        Assert.assertEquals(cache.getSize(), 2);
+        Assert.assertEquals(cache.getEvictions(), 1);
+
+        // the least recently used value was evicted
+        symbol.getSwapLong();
+        Assert.assertEquals(cache.getHits(), 2);
+        symbol.getSwapShort();
+        Assert.assertEquals(cache.getMisses(), 4);
+    }
+
+    @Test
+    public void testConcurrentMissesShareLoad() throws ExecutionException, InterruptedException,
+            JsonProcessingException, MT4Exception {
+        SymbolInfoCache cache = SymbolInfoCache.Builder.newInstance().build();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SymbolInfoCache.Loader<Integer> loader = () -> {
+            loading.countDown();
+            awaitLatch(release);
+            return loads.incrementAndGet();
+        };
+        CompletableFuture<Integer> first = supplyAsync(cache, loader);
+        loading.await();
+        CompletableFuture<Integer> second = supplyAsync(cache, loader);
+        while (cache.getShared() == 0) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        Assert.assertEquals(first.get(), Integer.valueOf(1));
+        Assert.assertEquals(second.get(), Integer.valueOf(1));
+        Assert.assertEquals(loads.get(), 1);
+        Assert.assertEquals(cache.getMisses(), 1);
+        Assert.assertEquals(cache.get("EURUSD", SymbolInfoDouble.SYMBOL_SWAP_LONG, loader), Integer.valueOf(1));
+        Assert.assertEquals(cache.getHits(), 1);
+    }
+
+    @Test
+    public void testInvalidateDuringLoad() throws ExecutionException, InterruptedException, JsonProcessingException,
+            MT4Exception {
+        SymbolInfoCache cache = SymbolInfoCache.Builder.newInstance().build();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> stale = supplyAsync(cache, () -> {
+            loading.countDown();
+            awaitLatch(release);
+            return loads.incrementAndGet();
+        });
+        loading.await();
+        cache.invalidate("EURUSD");
+
+        // a miss after the invalidation doesn't wait for the stale value
+        Assert.assertEquals(cache.get("EURUSD", SymbolInfoDouble.SYMBOL_SWAP_LONG, () -> -1), Integer.valueOf(-1));
+        release.countDown();
+        Assert.assertEquals(stale.get(), Integer.valueOf(1));
+        Assert.assertEquals(cache.get("EURUSD", SymbolInfoDouble.SYMBOL_SWAP_LONG, loads::incrementAndGet),
+                Integer.valueOf(-1));
+        Assert.assertEquals(cache.getShared(), 0);
+    }
+
+    private static CompletableFuture<Integer> supplyAsync(SymbolInfoCache cache,
+                                                          SymbolInfoCache.Loader<Integer> loader) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return cache.get("EURUSD", SymbolInfoDouble.SYMBOL_SWAP_LONG, loader);
+            }
+            catch (JsonProcessingException | MT4Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static void awaitLatch(CountDownLatch latch) {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testDisabled() throws JsonProcessingException, MT4Exception {
+        Symbol symbol = mt4.getSymbol("EURUSD");
+        Assert.assertNotEquals(symbol.getSwapLong(), symbol.getSwapLong());
+        Assert.expectThrows(IllegalArgumentException.class,
+                () -> SymbolInfoCache.Builder.newInstance().setMaxSize(0).build());
+    }
+}
@@ -0,0 +1,153 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Tests of the persistent {@link SymbolRegistry}, against a {@link MockServer}.
+ */
+public class TestSymbolRegistry {
+
+    private final Map<String, Integer> digits = new ConcurrentSkipListMap<>();
+    private volatile double tickValue;
+    private MockServer server;
+    private MT4AsyncClient mt4;
+    private Path file;
+
+    @BeforeMethod
+    public void beforeMethod() throws IOException {
+        digits.clear();
+        digits.put("EURUSD", 5);
+        digits.put("USDJPY", 3);
+        tickValue = 1;
+        server = new MockServer()
+                .on(Request.GET_SYMBOLS, request -> {
+                    ArrayNode names = JsonNodeFactory.instance.arrayNode();
+                    digits.keySet().forEach(names::add);
+                    return names;
+                })
+                .on(Request.GET_SYMBOL_INFO, request -> {
+                    ObjectNode symbols = JsonNodeFactory.instance.objectNode();
+                    for (JsonNode name : request.get("names")) {
+                        Integer symbolDigits = digits.get(name.asText());
+                        if (symbolDigits != null) {
+                            symbols.putObject(name.asText())
+                                    .put("name", name.asText())
+                                    .put("point", Math.pow(10, -symbolDigits))
+                                    .put("digits", symbolDigits)
+                                    .put("volume_min", 0.01)
+                                    .put("volume_step", 0.01)
+                                    .put("volume_max", 100)
+                                    .put("trade_contract_size", 100000)
+                                    .put("trade_tick_value", tickValue)
+                                    .put("trade_tick_size", Math.pow(10, -symbolDigits))
+                                    .put("trade_stops_level", 10)
+                                    .put("trade_freeze_level", 0);
+                        }
+                    }
+                    return symbols;
+                })
+                .on(Request.GET_SYMBOL_INFO_DOUBLE, request -> JsonNodeFactory.instance.numberNode(tickValue));
+        mt4 = new MT4AsyncClient(server.getAddress(), 1000, 1000);
+        file = Files.createTempFile("symbols", ".json");
+        Files.delete(file);
+    }
+
+    @AfterMethod
+    public void afterMethod() throws IOException {
+        mt4.shutdown();
+        server.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testColdStartFromFile() throws ExecutionException, InterruptedException {
+        SymbolRegistry registry = new SymbolRegistry(mt4, file);
+        Assert.assertTrue(registry.getSymbols().isEmpty());
+        Assert.assertTrue(registry.revalidate().get());
+        Assert.assertEquals(registry.getSymbols().size(), 2);
+        Assert.assertTrue(Files.exists(file));
+
+        // a new registry serves the symbols without asking the server
+        int before = server.getRequestCount(Request.GET_SYMBOL_INFO);
+        SymbolRegistry restarted = new SymbolRegistry(mt4, file);
+        Symbol symbol = restarted.get("USDJPY").orElseThrow();
+        Assert.assertEquals(symbol.getDigits(), 3);
+        Assert.assertEquals(symbol.getPoint(), 0.001);
+        Assert.assertEquals(symbol.getTradeStopsLevel(), 10);
+        Assert.assertSame(restarted.getSymbol("EURUSD").get(), restarted.get("EURUSD").orElseThrow());
+        Assert.assertEquals(server.getRequestCount(Request.GET_SYMBOL_INFO), before);
+
+        // nothing changed, so the file is not rewritten
+        Assert.assertFalse(restarted.revalidate().get());
+    }
+
+    @Test
+    public void testRevalidateReplacesChanges() throws ExecutionException, InterruptedException {
+        SymbolRegistry registry = new SymbolRegistry(mt4, file);
+        registry.revalidate().get();
+        Symbol eurusd = registry.get("EURUSD").orElseThrow();
+
+        digits.put("USDJPY", 2);
+        digits.remove("EURUSD");
+        digits.put("GBPUSD", 5);
+        Assert.assertTrue(registry.revalidate().get());
+        Assert.assertFalse(registry.get("EURUSD").isPresent());
+        Assert.assertEquals(registry.get("USDJPY").orElseThrow().getDigits(), 2);
+        Assert.assertEquals(registry.get("GBPUSD").orElseThrow().getDigits(), 5);
+        Assert.assertEquals(eurusd.getDigits(), 5);
+
+        SymbolRegistry restarted = new SymbolRegistry(mt4, file);
+        Assert.assertEquals(restarted.getSymbols().keySet(), registry.getSymbols().keySet());
+        Assert.assertEquals(restarted.get("USDJPY").orElseThrow().getDigits(), 2);
+    }
+
+    @Test
+    public void testTickValueIsNotPersisted() throws ExecutionException, InterruptedException, IOException,
+            MT4Exception {
+        SymbolRegistry registry = new SymbolRegistry(mt4, file);
+        registry.revalidate().get();
+        Assert.assertEquals(registry.get("USDJPY").orElseThrow().getTradeTickValue(), 1.0);
+        Assert.assertFalse(Files.readString(file).contains("trade_tick_value"));
+
+        // the tick value moves with the exchange rate, which doesn't change the symbol
+        tickValue = 0.75;
+        Assert.assertFalse(registry.revalidate().get());
+        Assert.assertEquals(registry.get("USDJPY").orElseThrow().getTradeTickValue(), 0.75);
+
+        // a symbol loaded from the file has no tick value until revalidated, but can fetch the current one
+        Symbol restarted = new SymbolRegistry(mt4, file).get("USDJPY").orElseThrow();
+        Assert.assertEquals(restarted.getTradeTickValue(), 0.0);
+        Assert.assertEquals(restarted.fetchTradeTickValue(), 0.75);
+    }
+
+    @Test
+    public void testFetchUnregistered() throws ExecutionException, InterruptedException {
+        SymbolRegistry registry = new SymbolRegistry(mt4, file);
+        Assert.assertEquals(registry.getSymbol("EURUSD").get().getDigits(), 5);
+        Assert.assertNull(registry.getSymbol("XAUUSD").get());
+        Assert.assertEquals(new SymbolRegistry(mt4, file).getSymbols().keySet(), Map.of("EURUSD", 0).keySet());
+    }
+
+    @Test
+    public void testUnreadableFileIsIgnored() throws IOException, ExecutionException, InterruptedException {
+        Files.write(file, "{not json".getBytes());
+        SymbolRegistry registry = new SymbolRegistry(mt4, file);
+        Assert.assertTrue(registry.getSymbols().isEmpty());
+        Assert.assertTrue(registry.revalidate().get());
+        Assert.assertEquals(new SymbolRegistry(mt4, file).getSymbols().size(), 2);
+    }
+}
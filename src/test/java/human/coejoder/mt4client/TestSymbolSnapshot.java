@@ -0,0 +1,102 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.EnumSet;
+
+/**
+ * Tests of {@link Symbol#snapshot(EnumSet, EnumSet)}, against a {@link MockServer}.
+ */
+public class TestSymbolSnapshot {
+
+    private static final String SYMBOL_NAME = "EURUSD";
+
+    private MockServer server;
+    private MT4Client mt4;
+    private Symbol symbol;
+
+    @BeforeClass
+    public void beforeClass() throws JsonProcessingException, MT4Exception {
+        // each integer property is its id times ten, and each double property is its id divided by ten
+        server = new MockServer()
+                .on(Request.GET_SYMBOL_INFO, request -> {
+                    ObjectNode symbols = JsonNodeFactory.instance.objectNode();
+                    symbols.putObject(SYMBOL_NAME)
+                            .put("name", SYMBOL_NAME)
+                            .put("point", 0.00001)
+                            .put("digits", 5)
+                            .put("volume_min", 0.01)
+                            .put("volume_step", 0.01)
+                            .put("volume_max", 100)
+                            .put("trade_contract_size", 100000)
+                            .put("trade_tick_value", 1)
+                            .put("trade_tick_size", 0.00001)
+                            .put("trade_stops_level", 0)
+                            .put("trade_freeze_level", 0);
+                    return symbols;
+                })
+                .on(Request.GET_SYMBOL_INFO_SNAPSHOT, request -> {
+                    ObjectNode values = JsonNodeFactory.instance.objectNode();
+                    ArrayNode integers = values.putArray("integers");
+                    for (JsonNode id : request.get("integer_property_ids")) {
+                        integers.add(id.asLong() * 10);
+                    }
+                    ArrayNode doubles = values.putArray("doubles");
+                    for (JsonNode id : request.get("double_property_ids")) {
+                        doubles.add(id.asDouble() / 10);
+                    }
+                    return values;
+                });
+        mt4 = new MT4Client(server.getAddress(), 1000, 1000);
+        symbol = mt4.getSymbol(SYMBOL_NAME);
+    }
+
+    @AfterClass
+    public void afterClass() {
+        mt4.shutdown();
+        server.close();
+    }
+
+    @Test
+    public void testSnapshotInOneRequest() throws JsonProcessingException, MT4Exception {
+        EnumSet<SymbolInfoInteger> integerProperties = EnumSet.of(SymbolInfoInteger.SYMBOL_SPREAD,
+                SymbolInfoInteger.SYMBOL_SELECT, SymbolInfoInteger.SYMBOL_TRADE_MODE);
+        EnumSet<SymbolInfoDouble> doubleProperties = EnumSet.of(SymbolInfoDouble.SYMBOL_ASK,
+                SymbolInfoDouble.SYMBOL_BID, SymbolInfoDouble.SYMBOL_SWAP_LONG);
+        int before = server.getRequestCount(Request.GET_SYMBOL_INFO_SNAPSHOT);
+        SymbolSnapshot snapshot = symbol.snapshot(integerProperties, doubleProperties);
+        Assert.assertEquals(server.getRequestCount(Request.GET_SYMBOL_INFO_SNAPSHOT) - before, 1);
+
+        Assert.assertEquals(snapshot.getSymbol(), SYMBOL_NAME);
+        for (SymbolInfoInteger prop : integerProperties) {
+            Assert.assertEquals(snapshot.getInteger(prop), prop.id * 10L, prop.toString());
+        }
+        for (SymbolInfoDouble prop : doubleProperties) {
+            Assert.assertEquals(snapshot.getDouble(prop), prop.id / 10.0, prop.toString());
+        }
+        Assert.assertFalse(snapshot.getBoolean(SymbolInfoInteger.SYMBOL_SELECT));
+        Assert.assertEquals(snapshot.getIntegerProperties(), integerProperties);
+        Assert.assertEquals(snapshot.getDoubleProperties(), doubleProperties);
+    }
+
+    @Test
+    public void testSnapshotIsImmutable() throws JsonProcessingException, MT4Exception {
+        EnumSet<SymbolInfoInteger> integerProperties = EnumSet.of(SymbolInfoInteger.SYMBOL_SPREAD);
+        SymbolSnapshot snapshot = symbol.snapshot(integerProperties, EnumSet.noneOf(SymbolInfoDouble.class));
+        integerProperties.add(SymbolInfoInteger.SYMBOL_TIME);
+        snapshot.getIntegerProperties().add(SymbolInfoInteger.SYMBOL_DIGITS);
+        Assert.assertTrue(snapshot.contains(SymbolInfoInteger.SYMBOL_SPREAD));
+        Assert.assertFalse(snapshot.contains(SymbolInfoInteger.SYMBOL_TIME));
+        Assert.assertFalse(snapshot.contains(SymbolInfoInteger.SYMBOL_DIGITS));
+        Assert.expectThrows(IllegalArgumentException.class, () -> snapshot.getInteger(SymbolInfoInteger.SYMBOL_TIME));
+        Assert.expectThrows(IllegalArgumentException.class, () -> snapshot.getDouble(SymbolInfoDouble.SYMBOL_BID));
+    }
+}
@@ -0,0 +1,84 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Tests of {@link MT4Client#getTicks(String...)}, against a {@link MockServer}.
+ */
+public class TestSymbolTicks {
+
+    private static final int SYMBOL_COUNT = 150;
+
+    private MockServer server;
+
+    @BeforeClass
+    public void beforeClass() {
+        // the bid of each symbol "S<n>" is n
+        server = new MockServer().on(Request.GET_SYMBOL_TICKS, request -> {
+            ObjectNode ticks = JsonNodeFactory.instance.objectNode();
+            for (JsonNode name : request.get("names")) {
+                if (!name.asText().startsWith("S")) {
+                    throw new MockServer.Failure(MT4Exception.Code.ERR_UNKNOWN_SYMBOL, "Unknown symbol: " + name);
+                }
+                ticks.putObject(name.asText())
+                        .put("time", 0)
+                        .put("bid", Integer.parseInt(name.asText().substring(1)))
+                        .put("ask", 0)
+                        .put("last", 0)
+                        .put("volume", 0);
+            }
+            return ticks;
+        });
+    }
+
+    @AfterClass
+    public void afterClass() {
+        server.close();
+    }
+
+    @Test
+    public void testTicksInOneRequest() throws JsonProcessingException, MT4Exception {
+        String[] symbols = new String[SYMBOL_COUNT];
+        for (int i = 0; i < SYMBOL_COUNT; i++) {
+            symbols[i] = "S" + i;
+        }
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            int before = server.getRequestCount(Request.GET_SYMBOL_TICKS);
+            Map<String, SymbolTick> ticks = mt4.getTicks(symbols);
+            Assert.assertEquals(server.getRequestCount(Request.GET_SYMBOL_TICKS) - before, 1);
+            Assert.assertEquals(ticks.size(), SYMBOL_COUNT);
+            for (int i = 0; i < SYMBOL_COUNT; i++) {
+                Assert.assertEquals(ticks.get("S" + i).bid, i);
+            }
+            Assert.assertTrue(mt4.getTicks().isEmpty());
+        }
+    }
+
+    @Test
+    public void testUnknownSymbol() {
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000)) {
+            MT4Exception exc = Assert.expectThrows(MT4Exception.class, () -> mt4.getTicks("S1", "XYZ"));
+            Assert.assertEquals(exc.errorCode, MT4Exception.Code.ERR_UNKNOWN_SYMBOL);
+        }
+    }
+
+    @Test
+    public void testAsyncTicks() throws ExecutionException, InterruptedException {
+        try (MT4AsyncClient mt4 = new MT4AsyncClient(server.getAddress(), 1000, 1000)) {
+            Map<String, SymbolTick> ticks = mt4.getTicks("S3", "S4").get();
+            Assert.assertEquals(ticks.size(), 2);
+            Assert.assertEquals(ticks.get("S3").bid, 3);
+            Assert.assertEquals(ticks.get("S4").bid, 4);
+        }
+    }
+}
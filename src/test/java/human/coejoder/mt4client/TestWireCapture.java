@@ -0,0 +1,104 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Tests of {@link WireCapture}, against a {@link MockServer}.
+ */
+public class TestWireCapture {
+
+    private static final String SYMBOL_NAME = "EURUSD";
+
+    private MockServer server;
+
+    @BeforeClass
+    public void beforeClass() {
+        server = new MockServer().on(Request.GET_SYMBOL_TICK, request -> {
+            if (!SYMBOL_NAME.equals(request.path("symbol").asText())) {
+                throw new MockServer.Failure(MT4Exception.Code.ERR_UNKNOWN_SYMBOL, "Unknown symbol.");
+            }
+            return JsonNodeFactory.instance.objectNode()
+                    .put("time", 0)
+                    .put("bid", 1.5)
+                    .put("ask", 1.75)
+                    .put("last", 0)
+                    .put("volume", 0);
+        });
+    }
+
+    @AfterClass
+    public void afterClass() {
+        server.close();
+    }
+
+    @Test
+    public void testFailuresBypassSampling() throws IOException, MT4Exception {
+        Path file = Files.createTempFile("wire-capture", ".log");
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000);
+             WireCapture capture = new WireCapture(file, 16, 0)) {
+            mt4.setWireCapture(capture);
+            for (int i = 0; i < 3; i++) {
+                mt4.getResponse(MT4Client.buildSymbolTickRequest(SYMBOL_NAME), SymbolTick.class);
+            }
+            Assert.expectThrows(MT4Exception.class,
+                    () -> mt4.getResponse(MT4Client.buildSymbolTickRequest("GBPUSD"), SymbolTick.class));
+            Assert.assertEquals(capture.getCaptured(), 1);
+        }
+        List<String> lines = Files.readAllLines(file, UTF_8);
+        Assert.assertEquals(lines.size(), 2);
+        Assert.assertTrue(lines.get(0).contains("#0 FAILED_REQUEST "), lines.get(0));
+        Assert.assertTrue(lines.get(0).contains("GBPUSD"), lines.get(0));
+        Assert.assertTrue(lines.get(1).contains("#0 FAILED_RESPONSE "), lines.get(1));
+        Assert.assertTrue(lines.get(1).contains(String.valueOf(MT4Exception.Code.ERR_UNKNOWN_SYMBOL.id)),
+                lines.get(1));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testEverythingSampled() throws IOException, ExecutionException, InterruptedException,
+            JsonProcessingException, MT4Exception {
+        Path file = Files.createTempFile("wire-capture", ".log");
+        try (MT4AsyncClient mt4 = new MT4AsyncClient(server.getAddress(), 1000, 1000);
+             WireCapture capture = new WireCapture(file, 16, 1)) {
+            mt4.setWireCapture(capture);
+            mt4.getTick(SYMBOL_NAME).get();
+            mt4.getTick(SYMBOL_NAME).get();
+            Assert.assertEquals(capture.getCaptured(), 2);
+        }
+        List<String> lines = Files.readAllLines(file, UTF_8);
+        Assert.assertEquals(lines.size(), 4);
+        Assert.assertTrue(lines.get(2).contains("#1 REQUEST "), lines.get(2));
+        Assert.assertTrue(lines.get(3).contains("#1 RESPONSE "), lines.get(3));
+        Assert.assertTrue(lines.get(3).contains("1.75"), lines.get(3));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testOverflowIsCounted() throws IOException {
+        Path file = Files.createTempFile("wire-capture", ".log");
+        byte[] request = "{\"action\": \"GET_SYMBOL_TICK\"}".getBytes(UTF_8);
+        WireCapture capture = new WireCapture(file, 2, 1);
+        try (capture) {
+            for (int i = 0; i < 100000; i++) {
+                capture.record(WireCodec.JSON, request, null, false);
+            }
+        }
+        long written = Files.readAllLines(file, UTF_8).size() / 2;
+        Assert.assertTrue(capture.getDropped() > 0, "Some records should be overwritten.");
+        Assert.assertEquals(written + capture.getDropped(), capture.getCaptured());
+        Files.delete(file);
+    }
+}
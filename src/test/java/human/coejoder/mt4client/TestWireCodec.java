@@ -0,0 +1,129 @@
+package human.coejoder.mt4client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import static human.coejoder.mt4client.Allocations.allocatedBytes;
+
+/**
+ * Tests and benchmarks of {@link WireCodec wire codecs}, against a {@link MockServer}.
+ */
+public class TestWireCodec {
+
+    private static final int BAR_COUNT = 5000;
+    private static final int WARMUP_ITERATIONS = 50;
+    private static final int ITERATIONS = 50;
+
+    private MockServer server;
+
+    @BeforeClass
+    public void beforeClass() {
+        server = new MockServer()
+                .on(Request.GET_OHLCV, request -> ohlcv(request.get("limit").asInt()))
+                .on(Request.GET_SYMBOL_TICK, request -> JsonNodeFactory.instance.objectNode()
+                        .put("time", 1)
+                        .put("bid", 1.5)
+                        .put("ask", 1.75)
+                        .put("last", 0)
+                        .put("volume", 0));
+    }
+
+    @AfterClass
+    public void afterClass() {
+        server.close();
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        server.setSupportedCodecs(WireCodec.values());
+    }
+
+    @Test
+    public void testNegotiatedCodecs() throws JsonProcessingException, MT4Exception {
+        for (WireCodec codec : WireCodec.values()) {
+            try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000, codec)) {
+                Assert.assertEquals(mt4.getCodec(), codec);
+                List<OHLCV> bars = mt4.getOHLCV("EURUSD", StandardTimeframe.PERIOD_H1, 100, 1000);
+                Assert.assertEquals(bars.size(), 100);
+                Assert.assertEquals(bars.get(99).time, 99);
+                Assert.assertEquals(bars.get(99).tick_volume, 990);
+            }
+        }
+    }
+
+    @Test
+    public void testUnsupportedCodecFallsBack() throws JsonProcessingException, MT4Exception {
+        server.setSupportedCodecs();
+        try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000, WireCodec.CBOR)) {
+            Assert.assertEquals(mt4.getCodec(), WireCodec.JSON);
+            Assert.assertEquals(mt4.getOHLCV("EURUSD", StandardTimeframe.PERIOD_H1, 10, 1000).size(), 10);
+        }
+    }
+
+    @Test
+    public void testAsyncClientCodec() throws JsonProcessingException, ExecutionException, InterruptedException {
+        try (MT4AsyncClient mt4 = new MT4AsyncClient(server.getAddress(), 1000, 1000, WireCodec.CBOR,
+                ForkJoinPool.commonPool())) {
+            Assert.assertEquals(mt4.getCodec(), WireCodec.CBOR);
+            Assert.assertEquals(mt4.getTick("EURUSD").get().ask, 1.75);
+        }
+    }
+
+    /**
+     * Compare the encoded size of a large response, and the time and bytes allocated to decode it, for each codec.
+     */
+    @Test
+    public void benchmarkCodecs() throws JsonProcessingException, MT4Exception {
+        ObjectNode response = JsonNodeFactory.instance.objectNode();
+        response.set("response", ohlcv(BAR_COUNT));
+        Map<WireCodec, Integer> sizes = new EnumMap<>(WireCodec.class);
+        for (WireCodec codec : WireCodec.values()) {
+            byte[] rawResponse = new ObjectMapper(codec.newFactory()).writeValueAsBytes(response);
+            sizes.put(codec, rawResponse.length);
+            try (MT4Client mt4 = new MT4Client(server.getAddress(), 1000, 1000, codec)) {
+                for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                    mt4.parseResponse(rawResponse, MT4Client.LIST_OF_OHLCV);
+                }
+                long startBytes = allocatedBytes();
+                long startNanos = System.nanoTime();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    mt4.parseResponse(rawResponse, MT4Client.LIST_OF_OHLCV);
+                }
+                long nanos = (System.nanoTime() - startNanos) / ITERATIONS;
+                long bytes = (allocatedBytes() - startBytes) / ITERATIONS;
+                TestBase.LOG.trace(String.format("%s: %d bars in %d bytes, decoded in %d us allocating %d bytes",
+                        codec, BAR_COUNT, rawResponse.length, nanos / 1000, bytes));
+            }
+        }
+        Assert.assertTrue(sizes.get(WireCodec.CBOR) < sizes.get(WireCodec.JSON), "CBOR is not smaller than JSON.");
+    }
+
+    private static ArrayNode ohlcv(int barCount) {
+        ArrayNode bars = JsonNodeFactory.instance.arrayNode(barCount);
+        for (int i = 0; i < barCount; i++) {
+            bars.addObject()
+                    .put("time", i)
+                    .put("open", i + 1)
+                    .put("high", i + 3)
+                    .put("low", i)
+                    .put("close", i + 2)
+                    .put("tick_volume", i * 10);
+        }
+        return bars;
+    }
+
+}